@@ -0,0 +1,54 @@
+import java.io.File
+import java.net.URL
+
+import com.typesafe.config.ConfigFactory
+import org.opalj.AnalysisMode
+import org.opalj.ai.analyses.cg.CallGraph
+import org.opalj.ai.analyses.cg.ComputedCallGraph
+import org.opalj.br.Method
+import org.opalj.br.analyses.Project
+import org.opalj.br.instructions.INVOKESTATIC
+import org.opalj.fpcf.analysis.cg.cha.CHACallGraphKey
+import org.opalj.log.LogContext
+
+/**
+ * Implements the benchmarked phases the same way `AnalysisTests` runs the analysis.
+ */
+class IDEPhases extends benchmarks.Phases {
+
+    type ICFG = OpalICFG
+
+    type Solver = DebuggableIDESolver
+
+    def isSource(i: INVOKESTATIC) = i.name == "source" && i.declaringClass.fqn == "util/SourceAndSink"
+
+    def isSink(i: INVOKESTATIC) = i.name == "sink" && i.declaringClass.fqn == "util/SourceAndSink"
+
+    def loadProject(corpus: File, logContext: LogContext): Project[URL] = {
+        val analysisModeConfig = ConfigFactory.parseString(s"${AnalysisMode.ConfigKey} = library with open packages assumption")
+        Project(corpus, logContext, analysisModeConfig.withFallback(ConfigFactory.load()))
+    }
+
+    def callGraph(project: Project[URL]): CallGraph = {
+        val ComputedCallGraph(callGraph, _, _) = project.get(CHACallGraphKey)
+        callGraph
+    }
+
+    def icfg(callGraph: CallGraph): OpalICFG = new OpalICFG(callGraph)
+
+    def solve(
+        project:               Project[URL],
+        icfg:                  OpalICFG,
+        entryPoint:            Method,
+        edgeFunctionCacheSize: Int,
+        valueComputation:      Boolean): DebuggableIDESolver = {
+        val seeds = entryPoint.body.get.collectWithIndex {
+            case (pc, i: INVOKESTATIC) if isSource(i) ⇒ MInstruction(i, pc, entryPoint)
+        }
+
+        val problem = new TabulationProblem(project, icfg, seeds, isSink, valueComputation, edgeFunctionCacheSize)
+        val solver = new DebuggableIDESolver(problem)
+        solver.solve()
+        solver
+    }
+}
@@ -0,0 +1,69 @@
+package benchmarks
+
+import java.io.File
+import java.net.URL
+
+import org.opalj.ai.analyses.cg.CallGraph
+import org.opalj.br.Method
+import org.opalj.br.analyses.Project
+import org.opalj.log.ConsoleOPALLogger
+import org.opalj.log.DefaultLogContext
+import org.opalj.log.LogContext
+import org.opalj.log.OPALLogger
+
+/**
+ * The phases of the IDE analysis that are measured by the benchmarks.
+ *
+ * JMH does not support benchmarks in the empty package, but the analysis is defined there and
+ * cannot be referred to from a named package; hence, the phases are implemented by the
+ * class `IDEPhases` in the empty package, which is instantiated reflectively.
+ */
+trait Phases {
+
+    type ICFG <: AnyRef
+
+    type Solver <: AnyRef
+
+    /** Loads the project; its messages are logged to the given, already registered context. */
+    def loadProject(corpus: File, logContext: LogContext): Project[URL]
+
+    def callGraph(project: Project[URL]): CallGraph
+
+    def icfg(callGraph: CallGraph): ICFG
+
+    /**
+     * @param edgeFunctionCacheSize The size of the caches of composed and joined edge
+     *        functions; 0 disables the caches.
+     * @param valueComputation If true, the solver also computes the receiver types.
+     */
+    def solve(
+        project:               Project[URL],
+        icfg:                  ICFG,
+        entryPoint:            Method,
+        edgeFunctionCacheSize: Int,
+        valueComputation:      Boolean): Solver
+}
+
+object Phases {
+
+    def apply(): Phases = Class.forName("IDEPhases").newInstance().asInstanceOf[Phases]
+
+    /**
+     * Registers a context that logs to the console; the benchmarks register one per trial
+     * and load all projects with it.
+     */
+    def registerLogContext(): LogContext = {
+        val logContext = new DefaultLogContext
+        OPALLogger.register(logContext, new ConsoleOPALLogger)
+        logContext
+    }
+
+    /** The compiled testcases; set by the build. */
+    def corpus: File = new File(sys.props.getOrElse("apsa.testcases", "../testcases/target/scala-2.10/test-classes"))
+
+    /** The method `foo` of the given testcase class, which calls the source. */
+    def entryPoint(project: Project[URL], className: String): Method = {
+        val classFile = project.allClassFiles.find(_.thisType.fqn == className).get
+        classFile.methods.find(_.name == "foo").get
+    }
+}
@@ -7,9 +7,54 @@ import heros.solver.IDESolver
 import heros.IDETabulationProblem
 import heros.EdgeFunction
 
+/**
+ * @param metrics If defined, the flow function applications are recorded (see [[SolverMetrics]]).
+ */
 class DebuggableIDESolver(
-    val tabulationProblem: IDETabulationProblem[MInstruction, Fact, Method, ReceiverTypes, OpalICFG])
-        extends IDESolver[MInstruction, Fact, Method, ReceiverTypes, OpalICFG](tabulationProblem) {
+    val tabulationProblem: TabulationProblem,
+    val metrics: Option[SolverMetrics] = None)
+        extends IDESolver[MInstruction, Fact, Method, ReceiverTypes, OpalICFG](
+            metrics.map(_.instrument(tabulationProblem)).getOrElse(tabulationProblem)) {
+
+    def pathEdgesCount(method: Method): Int = {
+        var count = 0
+        method.body.get.foreach { case (pc, instr) ⇒ count += jumpFn.lookupByTarget(MInstruction(instr, pc, method)).size() }
+        count
+    }
+
+    /**
+     * The snapshot of the recorded metrics including the number of path edges of each method
+     * of the project and the number of distinct target facts of the path edges per class;
+     * `None` if no metrics are recorded.
+     */
+    def metricsSnapshot(): Option[SolverMetricsSnapshot] = {
+        metrics.map { metrics ⇒
+            val project = tabulationProblem.interproceduralCFG().project
+            val facts = new java.util.HashSet[Fact]
+            val pathEdgesPerMethod = project.allMethodsWithBody.iterator.map { m ⇒
+                var count = 0
+                m.body.get.foreach {
+                    case (pc, instr) ⇒
+                        val edges = jumpFn.lookupByTarget(MInstruction(instr, pc, m))
+                        edges.foreach(cell ⇒ facts.add(cell.getColumnKey))
+                        count += edges.size()
+                }
+                (m, count)
+            }.filter(_._2 > 0).toMap
+            val factsByClass = facts.toSeq.groupBy(_.getClass.getSimpleName).map { case (c, fs) ⇒ (c, fs.size) }
+            metrics.snapshot(pathEdgesPerMethod, factsByClass)
+        }
+    }
+
+    /**
+     * Solves the problem; afterwards, the metrics are emitted as a [[SolverMetricsEvent]] if
+     * metrics are recorded and the event is enabled.
+     */
+    override def solve(): Unit = {
+        super.solve()
+        if (metrics.isDefined && new SolverMetricsEvent().isEnabled())
+            metricsSnapshot().foreach(_.commitEvent())
+    }
 
     def hasPathEdges(method: Method): Boolean = {
         method.body.exists(_.exists { case (pc, instr) ⇒ !jumpFn.lookupByTarget(MInstruction(instr, pc, method)).isEmpty() })
@@ -1,4 +1,5 @@
 import org.opalj.br.analyses.Project
+import org.opalj.br.analyses.SomeProject
 import java.io.File
 
 import org.opalj.ai.analyses.cg.ComputedCallGraph
@@ -38,6 +39,8 @@ case class MInstruction(i: Instruction, pc: Int, m: Method)
 
 class OpalICFG(cg: CallGraph) extends InterproceduralCFG[MInstruction, Method] {
 
+    def project: SomeProject = cg.project
+
     //    val cfgs: ConcurrentHashMap[Method, CFG] = {
     //        val cfgs = new ConcurrentHashMap[Method, CFG]
     //        cg.project.parForeachMethodWithBody() { methodInfo ⇒
@@ -1,3 +1,6 @@
+import java.util.Arrays
+import java.util.concurrent.ConcurrentHashMap
+
 import org.opalj.br.ObjectType
 import heros.EdgeFunction
 import heros.edgefunc.AllTop
@@ -6,16 +9,220 @@ import scala.None
 import org.opalj.br.ClassHierarchy
 
 class ReceiverTypes(
-        upperTypeOfRegister: Map[Int, ObjectType] = Map.empty) {
+        val upperTypes: RegisterTypes = RegisterTypes.empty) {
 
-    def meet(map: Map[Int, ObjectType], classHierarchy: ClassHierarchy): ReceiverTypes = {
-        val m = Utility.meet(upperTypeOfRegister, map, classHierarchy)
+    def meet(types: RegisterTypes, lattice: TypeLattice): ReceiverTypes = {
+        val m = upperTypes.meet(types, lattice)
         m.map(new ReceiverTypes(_)).getOrElse(Top)
     }
+
+    def join(other: ReceiverTypes, lattice: TypeLattice): ReceiverTypes = {
+        if (other eq Top)
+            this
+        else
+            new ReceiverTypes(upperTypes.join(other.upperTypes, lattice))
+    }
+
+    override def equals(other: Any): Boolean = other match {
+        case that: ReceiverTypes ⇒ (that ne Top) && (this ne Top) && upperTypes == that.upperTypes
+        case _                   ⇒ false
+    }
+
+    override def hashCode: Int = upperTypes.hashCode
+
+    override def toString(): String = upperTypes.toString()
 }
 
+/**
+ * The receiver types of an unreachable statement or of infeasible type constraints.
+ */
 object Top extends ReceiverTypes {
 
+    override def meet(types: RegisterTypes, lattice: TypeLattice): ReceiverTypes = Top
+
+    override def join(other: ReceiverTypes, lattice: TypeLattice): ReceiverTypes = other
+
+    override def equals(other: Any): Boolean = this eq other.asInstanceOf[AnyRef]
+
+    override def hashCode: Int = -1
+
+    override def toString(): String = "Top"
+}
+
+/**
+ * Subtype tests and upper bounds of object types that are identified by their ids; the results
+ * are memoized.
+ */
+class TypeLattice(val classHierarchy: ClassHierarchy) {
+
+    final val NoType = -1
+
+    private[this] val types = new ConcurrentHashMap[Integer, ObjectType]
+
+    private[this] val meets = new ConcurrentHashMap[java.lang.Long, Integer]
+
+    private[this] val joins = new ConcurrentHashMap[java.lang.Long, Integer]
+
+    def id(tpe: ObjectType): Int = {
+        val id = tpe.id
+        if (!types.containsKey(id)) types.putIfAbsent(id, tpe)
+        id
+    }
+
+    def objectType(id: Int): ObjectType = types.get(id)
+
+    private[this] def key(typeId1: Int, typeId2: Int): java.lang.Long = {
+        if (typeId1 < typeId2)
+            (typeId1.toLong << 32) | typeId2
+        else
+            (typeId2.toLong << 32) | typeId1
+    }
+
+    /**
+     * The id of the more specific type if one type is a subtype of the other; `NoType` otherwise.
+     */
+    def meet(typeId1: Int, typeId2: Int): Int = {
+        if (typeId1 == typeId2)
+            return typeId1;
+
+        val k = key(typeId1, typeId2)
+        val cached = meets.get(k)
+        if (cached ne null)
+            return cached.intValue;
+
+        val s = Utility.subtype(objectType(typeId1), objectType(typeId2), classHierarchy)
+        val typeId = s.map(id).getOrElse(NoType)
+        meets.put(k, typeId)
+        typeId
+    }
+
+    /**
+     * The id of the least upper bound of both types.
+     */
+    def join(typeId1: Int, typeId2: Int): Int = {
+        if (typeId1 == typeId2)
+            return typeId1;
+
+        val k = key(typeId1, typeId2)
+        val cached = joins.get(k)
+        if (cached ne null)
+            return cached.intValue;
+
+        val upperBound = classHierarchy.joinObjectTypesUntilSingleUpperBound(objectType(typeId1), objectType(typeId2), true)
+        val typeId = id(upperBound)
+        joins.put(k, typeId)
+        typeId
+    }
+}
+
+/**
+ * An immutable mapping of register indices to (the ids of) the registers' upper type bounds.
+ * The mapping is stored as two parallel arrays that are sorted by the register index.
+ */
+final class RegisterTypes private (
+        private[this] val registers: Array[Int],
+        private[this] val typeIds: Array[Int]) {
+
+    def size: Int = registers.length
+
+    def isEmpty: Boolean = registers.length == 0
+
+    def register(index: Int): Int = registers(index)
+
+    def typeId(index: Int): Int = typeIds(index)
+
+    /**
+     * Combines the constraints of both mappings; if a register is mapped by both, the more
+     * specific type is used. Returns `None` if the types of a register are unrelated.
+     */
+    def meet(that: RegisterTypes, lattice: TypeLattice): Option[RegisterTypes] = {
+        if (that.isEmpty) return Some(this);
+        if (this.isEmpty) return Some(that);
+
+        val newRegisters = new Array[Int](this.size + that.size)
+        val newTypeIds = new Array[Int](this.size + that.size)
+        var i = 0
+        var j = 0
+        var n = 0
+        while (i < this.size || j < that.size) {
+            if (j == that.size || (i < this.size && this.register(i) < that.register(j))) {
+                newRegisters(n) = this.register(i); newTypeIds(n) = this.typeId(i); i += 1
+            } else if (i == this.size || that.register(j) < this.register(i)) {
+                newRegisters(n) = that.register(j); newTypeIds(n) = that.typeId(j); j += 1
+            } else {
+                val typeId = lattice.meet(this.typeId(i), that.typeId(j))
+                if (typeId == lattice.NoType)
+                    return None;
+                newRegisters(n) = this.register(i); newTypeIds(n) = typeId; i += 1; j += 1
+            }
+            n += 1
+        }
+        Some(RegisterTypes.create(newRegisters, newTypeIds, n))
+    }
+
+    /**
+     * Keeps the registers that are mapped by both mappings; a register is mapped to the least
+     * upper bound of both types.
+     */
+    def join(that: RegisterTypes, lattice: TypeLattice): RegisterTypes = {
+        if (this eq that) return this;
+
+        val newRegisters = new Array[Int](Math.min(this.size, that.size))
+        val newTypeIds = new Array[Int](newRegisters.length)
+        var i = 0
+        var j = 0
+        var n = 0
+        while (i < this.size && j < that.size) {
+            if (this.register(i) < that.register(j)) {
+                i += 1
+            } else if (that.register(j) < this.register(i)) {
+                j += 1
+            } else {
+                newRegisters(n) = this.register(i)
+                newTypeIds(n) = lattice.join(this.typeId(i), that.typeId(j))
+                n += 1; i += 1; j += 1
+            }
+        }
+        RegisterTypes.create(newRegisters, newTypeIds, n)
+    }
+
+    def toMap(lattice: TypeLattice): Map[Int, ObjectType] = {
+        (0 until size).map(i ⇒ registers(i) → lattice.objectType(typeIds(i))).toMap
+    }
+
+    override def equals(other: Any): Boolean = other match {
+        case that: RegisterTypes ⇒
+            (this eq that) || (this.size == that.size && {
+                var i = 0
+                while (i < size && this.register(i) == that.register(i) && this.typeId(i) == that.typeId(i)) i += 1
+                i == size
+            })
+        case _ ⇒ false
+    }
+
+    override val hashCode: Int = 31 * Arrays.hashCode(registers) + Arrays.hashCode(typeIds)
+
+    override def toString(): String = {
+        (0 until size).map(i ⇒ s"${registers(i)} -> #${typeIds(i)}").mkString("RegisterTypes(", ", ", ")")
+    }
+}
+
+object RegisterTypes {
+
+    val empty: RegisterTypes = new RegisterTypes(new Array[Int](0), new Array[Int](0))
+
+    def apply(registerIndex: Int, typeId: Int): RegisterTypes = {
+        new RegisterTypes(Array(registerIndex), Array(typeId))
+    }
+
+    private def create(registers: Array[Int], typeIds: Array[Int], size: Int): RegisterTypes = {
+        if (size == 0)
+            empty
+        else if (size == registers.length)
+            new RegisterTypes(registers, typeIds)
+        else
+            new RegisterTypes(Arrays.copyOf(registers, size), Arrays.copyOf(typeIds, size))
+    }
 }
 
 object Utility {
@@ -30,86 +237,160 @@ object Utility {
         else
             None
     }
+}
 
-    def meet(map1: Map[Int, ObjectType], map2: Map[Int, ObjectType], classHierarchy: ClassHierarchy): Option[Map[Int, ObjectType]] = {
-        val r = for (
-            key ← (map1.keySet ++ map2.keySet)
-        ) yield {
-            if (map1.contains(key)) {
-                if (map2.contains(key)) {
-                    val s = subtype(map1(key), map2(key), classHierarchy)
-                    if (s.isDefined)
-                        key -> s.get
-                    else
-                        return None
-                } else
-                    key -> map1(key)
-            } else
-                key -> map2(key)
-        }
-        Some(r.toMap)
-    }
+/**
+ * An edge function that constrains the types of registers.
+ *
+ * The functions are interned by [[MapRegisterToTypeFunctions]], hence, two functions are equal
+ * iff they are identical.
+ */
+final class MapRegisterToTypeFunction private (
+        val upperTypes: RegisterTypes,
+        val functions: MapRegisterToTypeFunctions,
+        val id: Int) extends EdgeFunction[ReceiverTypes] {
 
-    def join(map1: Map[Int, ObjectType], map2: Map[Int, ObjectType], classHierarchy: ClassHierarchy): Map[Int, ObjectType] = {
-        val r = for (
-            key ← (map1.keySet ++ map2.keySet) if map1.contains(key) && map2.contains(key)
-        ) yield {
-            key -> classHierarchy.joinObjectTypesUntilSingleUpperBound(map1(key), map2(key), true)
-        }
-        r.toMap
-    }
-}
+    def lattice: TypeLattice = functions.lattice
 
-case class MapRegisterToTypeFunction(
-        upperTypeOfRegister: Map[Int, ObjectType],
-        classHierarchy: ClassHierarchy) extends EdgeFunction[ReceiverTypes] {
+    def upperTypeOfRegister: Map[Int, ObjectType] = upperTypes.toMap(lattice)
 
     def composeWith(edgeFn: heros.EdgeFunction[ReceiverTypes]): heros.EdgeFunction[ReceiverTypes] = {
         edgeFn match {
             case top: AllTop[ReceiverTypes]      ⇒ top
             case id: EdgeIdentity[ReceiverTypes] ⇒ this
-            case MapRegisterToTypeFunction(map, _) ⇒
-                val m = Utility.meet(map, upperTypeOfRegister, classHierarchy)
-                if (m.isDefined)
-                    MapRegisterToTypeFunction(m.get, classHierarchy)
-                else
-                    new AllTop(Top)
+            case that: MapRegisterToTypeFunction ⇒
+                functions.composeCache(that, this) {
+                    val m = that.upperTypes.meet(upperTypes, lattice)
+                    if (m.isDefined)
+                        functions(m.get)
+                    else
+                        new AllTop(Top)
+                }
         }
     }
 
-    def computeTarget(rec: ReceiverTypes): ReceiverTypes = rec.meet(upperTypeOfRegister, classHierarchy)
+    def computeTarget(rec: ReceiverTypes): ReceiverTypes = rec.meet(upperTypes, lattice)
 
-    def equalTo(edgeFn: heros.EdgeFunction[ReceiverTypes]): Boolean = equals(edgeFn)
+    def equalTo(edgeFn: heros.EdgeFunction[ReceiverTypes]): Boolean = this eq edgeFn
 
     def joinWith(edgeFn: heros.EdgeFunction[ReceiverTypes]): heros.EdgeFunction[ReceiverTypes] = {
         edgeFn match {
-            case top: AllTop[ReceiverTypes]        ⇒ top
-            case id: EdgeIdentity[ReceiverTypes]   ⇒ id
-            case MapRegisterToTypeFunction(map, _) ⇒ MapRegisterToTypeFunction(Utility.join(map, upperTypeOfRegister, classHierarchy), classHierarchy)
+            case top: AllTop[ReceiverTypes]      ⇒ top
+            case id: EdgeIdentity[ReceiverTypes] ⇒ id
+            case that: MapRegisterToTypeFunction ⇒
+                functions.joinCache(that, this) { functions(that.upperTypes.join(upperTypes, lattice)) }
         }
     }
 
+    override def hashCode: Int = id
+
     override def toString(): String = {
         upperTypeOfRegister.toString()
     }
 }
 
 object MapRegisterToTypeFunction {
-    def apply(registerIndex: Int, receiverType: ObjectType, classHierarchy: ClassHierarchy): MapRegisterToTypeFunction = {
-        MapRegisterToTypeFunction(Map(registerIndex -> receiverType), classHierarchy)
+
+    private val nextId = new java.util.concurrent.atomic.AtomicInteger(0)
+
+    /** Only to be used by [[MapRegisterToTypeFunctions]] which interns the created functions. */
+    def create(upperTypes: RegisterTypes, functions: MapRegisterToTypeFunctions) = {
+        new MapRegisterToTypeFunction(upperTypes, functions, nextId.getAndIncrement())
+    }
+
+    def unapply(fn: MapRegisterToTypeFunction): Some[(RegisterTypes, TypeLattice)] = Some((fn.upperTypes, fn.lattice))
+}
+
+/**
+ * Interns the [[MapRegisterToTypeFunction]]s and caches the results of composing and joining
+ * them.
+ *
+ * The caches are keyed by the ids of the interned functions. A cache is cleared when it
+ * contains more than `maxCacheSize` entries; the interned functions themselves are never
+ * evicted, because equality of functions is identity.
+ *
+ * @param maxCacheSize The maximum number of entries of the composition and of the join cache;
+ *        0 disables the caches.
+ */
+class MapRegisterToTypeFunctions(val lattice: TypeLattice, val maxCacheSize: Int = 1 << 16) {
+
+    private[this] val functions = new ConcurrentHashMap[RegisterTypes, MapRegisterToTypeFunction]
+
+    class Cache(name: String) {
+
+        private[this] val results = new ConcurrentHashMap[java.lang.Long, EdgeFunction[ReceiverTypes]]
+        private[this] val hits = new java.util.concurrent.atomic.AtomicLong
+        private[this] val misses = new java.util.concurrent.atomic.AtomicLong
+        private[this] val clears = new java.util.concurrent.atomic.AtomicLong
+
+        def apply(
+            fn1: MapRegisterToTypeFunction,
+            fn2: MapRegisterToTypeFunction)(
+            compute: ⇒ EdgeFunction[ReceiverTypes]): EdgeFunction[ReceiverTypes] = {
+            if (maxCacheSize == 0)
+                return compute;
+
+            val key: java.lang.Long = (fn1.id.toLong << 32) | fn2.id
+            val cached = results.get(key)
+            if (cached ne null) {
+                hits.incrementAndGet()
+                cached
+            } else {
+                misses.incrementAndGet()
+                val result = compute
+                if (results.size() >= maxCacheSize) {
+                    results.clear()
+                    clears.incrementAndGet()
+                }
+                results.put(key, result)
+                result
+            }
+        }
+
+        def statistics: EdgeFunctionCacheStatistics = {
+            EdgeFunctionCacheStatistics(name, hits.get, misses.get, clears.get, results.size())
+        }
     }
+
+    val composeCache = new Cache("composeWith")
+
+    val joinCache = new Cache("joinWith")
+
+    /**
+     * Returns the canonical function for the given register types.
+     */
+    def apply(upperTypes: RegisterTypes): MapRegisterToTypeFunction = {
+        val fn = functions.get(upperTypes)
+        if (fn ne null)
+            fn
+        else {
+            val newFn = MapRegisterToTypeFunction.create(upperTypes, this)
+            val otherFn = functions.putIfAbsent(upperTypes, newFn)
+            if (otherFn ne null) otherFn else newFn
+        }
+    }
+
+    def apply(registerIndex: Int, receiverType: ObjectType): MapRegisterToTypeFunction = {
+        apply(RegisterTypes(registerIndex, lattice.id(receiverType)))
+    }
+
+    def numberOfFunctions: Int = functions.size()
+
+    def statistics: Seq[EdgeFunctionCacheStatistics] = Seq(composeCache.statistics, joinCache.statistics)
 }
 
+case class EdgeFunctionCacheStatistics(name: String, hits: Long, misses: Long, clears: Long, size: Int)
+
 object MapSingleRegister {
     /**
      * Assumes MapRegisterToTypeFunction maps a single register identified by its index to some type and returns both values as a pair.
      * If the assumption does not hold it returns None.
      */
     def unapply(mapFn: MapRegisterToTypeFunction): Option[Tuple2[Int, ObjectType]] = {
-        if (mapFn.upperTypeOfRegister.size == 1) {
-            val key = mapFn.upperTypeOfRegister.keys.last
-            Some((key, mapFn.upperTypeOfRegister(key)))
+        val types = mapFn.upperTypes
+        if (types.size == 1) {
+            Some((types.register(0), mapFn.lattice.objectType(types.typeId(0))))
         } else
             None
     }
-}
\ No newline at end of file
+}
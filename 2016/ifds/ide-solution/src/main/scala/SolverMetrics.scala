@@ -0,0 +1,38 @@
+import java.util.{ Map ⇒ JMap }
+import java.util.{ Set ⇒ JSet }
+
+import heros.IDETabulationProblem
+import org.opalj.br.Method
+
+/**
+ * The metrics of an IDE solver run (see [[AbstractSolverMetrics]]); the edge functions are not
+ * wrapped, the statistics of their caches are provided by [[MapRegisterToTypeFunctions]].
+ */
+class SolverMetrics(countSummaryReuses: Boolean = false)
+        extends AbstractSolverMetrics[(Method, Fact)](countSummaryReuses) {
+
+    protected[this] def calleeEntry(problem: TabulationProblem, callee: Method): Fact ⇒ (Method, Fact) = {
+        fact ⇒ (callee, fact)
+    }
+
+    /**
+     * Wraps the flow functions of the given problem such that their applications are recorded.
+     */
+    def instrument(problem: TabulationProblem): IDETabulationProblem[MInstruction, Fact, Method, ReceiverTypes, OpalICFG] = {
+        val instrumentedFlowFunctions = instrumentFlowFunctions(problem)
+        new IDETabulationProblem[MInstruction, Fact, Method, ReceiverTypes, OpalICFG] {
+            def flowFunctions() = instrumentedFlowFunctions
+            def edgeFunctions() = problem.edgeFunctions()
+            def joinLattice() = problem.joinLattice()
+            def allTopFunction() = problem.allTopFunction()
+            def initialSeeds(): JMap[MInstruction, JSet[Fact]] = problem.initialSeeds()
+            def interproceduralCFG(): OpalICFG = problem.interproceduralCFG()
+            def zeroValue(): Fact = problem.zeroValue()
+            def followReturnsPastSeeds(): Boolean = problem.followReturnsPastSeeds()
+            def autoAddZero(): Boolean = problem.autoAddZero()
+            def numThreads(): Int = problem.numThreads()
+            def computeValues(): Boolean = problem.computeValues()
+            def recordEdges(): Boolean = problem.recordEdges()
+        }
+    }
+}
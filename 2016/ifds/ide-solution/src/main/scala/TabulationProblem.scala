@@ -47,11 +47,24 @@ import heros.edgefunc.EdgeIdentity
 import org.opalj.br.analyses.Project
 import java.net.URL
 
+/**
+ * @param valueComputation If true, the solver also computes the receiver types at each statement
+ *        (phase II of the IDE algorithm).
+ * @param edgeFunctionCacheSize The size of the caches of composed and joined edge functions;
+ *        0 disables the caches.
+ */
 class TabulationProblem(
     project: Project[URL],
     icfg: OpalICFG,
     seeds: Iterable[MInstruction],
-    isSink: INVOKESTATIC ⇒ Boolean) extends IDETabulationProblem[MInstruction, Fact, Method, ReceiverTypes, OpalICFG] {
+    isSink: INVOKESTATIC ⇒ Boolean,
+    valueComputation: Boolean = false,
+    edgeFunctionCacheSize: Int = 1 << 16,
+    val findings: FindingCollector = new FindingCollector()) extends IDETabulationProblem[MInstruction, Fact, Method, ReceiverTypes, OpalICFG] {
+
+  val typeLattice = new TypeLattice(project.classHierarchy)
+
+  val receiverTypeFunctions = new MapRegisterToTypeFunctions(typeLattice, edgeFunctionCacheSize)
 
   implicit def ctToStackEntry(tpe: Type): StackEntry = {
     StackEntry(tpe.computationalType.category)
@@ -65,7 +78,7 @@ class TabulationProblem(
 
   def autoAddZero(): Boolean = false
 
-  def computeValues(): Boolean = false
+  def computeValues(): Boolean = valueComputation
 
   def flowFunctions() = new FlowFunctions[MInstruction, Fact, Method] {
 
@@ -189,7 +202,7 @@ class TabulationProblem(
         callSite.i match {
           case i: INVOKESTATIC if isSink(i) ⇒ fact match {
             case f @ OperandStackFact(0, _) ⇒
-              println("reached sink"); kill()
+              findings.report(Finding(callSite.m, callSite.pc, f)); kill()
             case _ ⇒ kill()
           }
 
@@ -273,7 +286,7 @@ class TabulationProblem(
               val receiverType = project.classFile(destinationMethod).thisType
               val receiver = fact.opStack(destinationMethod.parametersCount - 1)
               if (receiver.associatedRegister.isDefined) {
-                MapRegisterToTypeFunction(receiver.associatedRegister.get, receiverType, project.classHierarchy)
+                receiverTypeFunctions(receiver.associatedRegister.get, receiverType)
               } else
                 EdgeIdentity.v()
             case _ => EdgeIdentity.v()
@@ -291,7 +304,11 @@ class TabulationProblem(
 
     def bottomElement() = new ReceiverTypes()
 
-    def join(left: ReceiverTypes, right: ReceiverTypes): ReceiverTypes = ???
+    def join(left: ReceiverTypes, right: ReceiverTypes): ReceiverTypes = {
+      if (left eq Top) right
+      else if (right eq Top) left
+      else left.join(right, typeLattice)
+    }
   }
 }
 
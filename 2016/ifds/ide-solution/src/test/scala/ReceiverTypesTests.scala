@@ -0,0 +1,87 @@
+import org.scalatest.FunSpec
+import org.scalatest.Matchers
+import org.opalj.br.ClassHierarchy
+import org.opalj.br.ObjectType
+
+import heros.edgefunc.AllTop
+
+class ReceiverTypesTests extends FunSpec with Matchers {
+
+    val lattice = new TypeLattice(ClassHierarchy.preInitializedClassHierarchy)
+
+    def types(mapping: (Int, ObjectType)*): RegisterTypes = {
+        mapping.map { case (r, t) ⇒ RegisterTypes(r, lattice.id(t)) }.foldLeft(RegisterTypes.empty) { (types, single) ⇒
+            types.meet(single, lattice).get
+        }
+    }
+
+    describe("the join of register types") {
+
+        it("should map each register to the least upper bound of both types") {
+            val left = types(1 → ObjectType.ArithmeticException, 2 → ObjectType.Exception)
+            val right = types(1 → ObjectType.NullPointerException, 2 → ObjectType.Error)
+            left.join(right, lattice).toMap(lattice) should be(
+                Map(1 → ObjectType.RuntimeException, 2 → ObjectType.Throwable)
+            )
+        }
+
+        it("should only keep the registers that are mapped by both") {
+            val left = types(1 → ObjectType.Exception, 3 → ObjectType.Error, 5 → ObjectType.Throwable)
+            val right = types(0 → ObjectType.Exception, 3 → ObjectType.Error, 4 → ObjectType.Throwable)
+            left.join(right, lattice) should be(types(3 → ObjectType.Error))
+            left.join(RegisterTypes.empty, lattice) should be theSameInstanceAs RegisterTypes.empty
+        }
+
+        it("should be commutative and idempotent") {
+            val left = types(1 → ObjectType.ArithmeticException, 2 → ObjectType.Exception)
+            val right = types(1 → ObjectType.RuntimeException, 2 → ObjectType.Throwable)
+            left.join(right, lattice) should be(right.join(left, lattice))
+            left.join(left, lattice) should be theSameInstanceAs left
+        }
+    }
+
+    describe("the meet of register types") {
+
+        it("should map each register to the more specific type") {
+            val left = types(1 → ObjectType.RuntimeException)
+            val right = types(1 → ObjectType.ArithmeticException, 2 → ObjectType.Error)
+            left.meet(right, lattice).get.toMap(lattice) should be(
+                Map(1 → ObjectType.ArithmeticException, 2 → ObjectType.Error)
+            )
+        }
+
+        it("should be undefined for unrelated types") {
+            types(1 → ObjectType.Exception).meet(types(1 → ObjectType.Error), lattice) should be(None)
+        }
+    }
+
+    describe("receiver types") {
+
+        it("should use Top as the neutral element of the join") {
+            val receiverTypes = new ReceiverTypes(types(1 → ObjectType.Exception))
+            Top.join(receiverTypes, lattice) should be theSameInstanceAs receiverTypes
+            receiverTypes.join(Top, lattice) should be theSameInstanceAs receiverTypes
+        }
+
+        it("should be equal if the register types are equal") {
+            new ReceiverTypes(types(1 → ObjectType.Exception)) should be(new ReceiverTypes(types(1 → ObjectType.Exception)))
+            new ReceiverTypes() should not be (Top)
+        }
+    }
+
+    describe("the edge functions") {
+
+        val functions = new MapRegisterToTypeFunctions(lattice)
+
+        it("should join to the interned function of the joined register types") {
+            val fn1 = functions(1, ObjectType.ArithmeticException)
+            val fn2 = functions(1, ObjectType.NullPointerException)
+            fn1.joinWith(fn2) should be theSameInstanceAs functions(1, ObjectType.RuntimeException)
+            fn1.joinWith(fn2) should be theSameInstanceAs fn2.joinWith(fn1)
+        }
+
+        it("should compose to AllTop if the types are unrelated") {
+            functions(1, ObjectType.Exception).composeWith(functions(1, ObjectType.Error)) shouldBe an[AllTop[_]]
+        }
+    }
+}
@@ -0,0 +1,110 @@
+import java.io.File
+import java.util.Collections
+import java.util.{ List ⇒ JList }
+
+import scala.collection.JavaConverters._
+
+import com.typesafe.config.ConfigFactory
+import org.opalj.AnalysisMode
+import org.opalj.ai.analyses.cg.CallGraph
+import org.opalj.ai.analyses.cg.ComputedCallGraph
+import org.opalj.br.Method
+import org.opalj.br.analyses.Project
+import org.opalj.br.analyses.SomeProject
+import org.opalj.br.instructions.INVOKESTATIC
+import org.opalj.fpcf.analysis.cg.cha.CHACallGraphKey
+import org.opalj.log.LogContext
+
+/**
+ * Implements the benchmarked phases the same way `AnalysisTests` runs the analysis.
+ */
+class IFDSPhases extends benchmarks.Phases {
+
+    type ICFG = OpalICFG
+
+    type Solver = DebuggableIFDSSolver
+
+    def isSource(i: INVOKESTATIC) = i.name == "source" && i.declaringClass.fqn == "util/SourceAndSink"
+
+    def isSink(i: INVOKESTATIC) = i.name == "sink" && i.declaringClass.fqn == "util/SourceAndSink"
+
+    def loadProject(corpus: File, logContext: LogContext): SomeProject = {
+        val analysisModeConfig = ConfigFactory.parseString(s"${AnalysisMode.ConfigKey} = library with open packages assumption")
+        Project(corpus, logContext, analysisModeConfig.withFallback(ConfigFactory.load()))
+    }
+
+    def callGraph(project: SomeProject): CallGraph = {
+        val ComputedCallGraph(callGraph, _, _) = project.get(CHACallGraphKey)
+        callGraph
+    }
+
+    def icfg(callGraph: CallGraph, aiCacheSize: Int, entryPoints: Seq[Method]): OpalICFG = {
+        if (aiCacheSize == 0) {
+            val icfg = new OpalICFG(callGraph)
+            icfg.project.allMethodsWithBody.foreach(icfg.cfg)
+            icfg.callIndex
+            icfg
+        } else {
+            val icfg = OpalICFG.withLazyAI(callGraph, aiCacheSize)
+            val reachable = new java.util.HashSet[Method]
+            var worklist = entryPoints.toList
+            while (worklist.nonEmpty) {
+                val m = worklist.head
+                worklist = worklist.tail
+                if (m.body.isDefined && reachable.add(m)) {
+                    icfg.cfg(m)
+                    callGraph.calls(m).valuesIterator.foreach(callees ⇒ worklist = callees ++: worklist)
+                }
+            }
+            icfg
+        }
+    }
+
+    def controlFlowQueries(icfg: OpalICFG): Int = {
+        var count = 0
+        icfg.project.allMethodsWithBody.foreach { m ⇒
+            icfg.nodes.nodesOf(m).foreach { node ⇒
+                if (node ne null)
+                    count += icfg.getSuccsOf(node).size + icfg.getPredsOf(node).size
+            }
+        }
+        count
+    }
+
+    def controlFlowQueriesFromAI(icfg: OpalICFG): Int = {
+        def predsOf(instr: MInstruction): JList[MInstruction] = {
+            if (instr.pc == 0)
+                return Collections.emptyList()
+
+            icfg.aiResults(instr.m).domain.predecessorsOf(instr.pc).mapToList { predPC ⇒
+                icfg.node(predPC, instr.m)
+            }.asJava
+        }
+
+        def succsOf(instr: MInstruction): JList[MInstruction] = {
+            val pcs = icfg.aiResults(instr.m).domain.successorsOf(instr.pc, regularSuccessorOnly = false)
+            pcs.map { succPc ⇒
+                icfg.node(succPc, instr.m)
+            }.toList.asJava
+        }
+
+        var count = 0
+        icfg.project.allMethodsWithBody.foreach { m ⇒
+            icfg.nodes.nodesOf(m).foreach { node ⇒
+                if (node ne null)
+                    count += succsOf(node).size + predsOf(node).size
+            }
+        }
+        count
+    }
+
+    def solve(icfg: OpalICFG, entryPoint: Method): DebuggableIFDSSolver = {
+        val seeds = entryPoint.body.get.collectWithIndex {
+            case (pc, i: INVOKESTATIC) if isSource(i) ⇒ icfg.node(pc, entryPoint)
+        }
+
+        val solver = new DebuggableIFDSSolver(new TabulationProblem(icfg, seeds, isSink))
+        solver.solve()
+        solver
+    }
+}
@@ -0,0 +1,137 @@
+package benchmarks
+
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Level
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import org.openjdk.jmh.annotations.Warmup
+import org.opalj.ai.analyses.cg.CallGraph
+import org.opalj.br.Method
+import org.opalj.br.analyses.SomeProject
+import org.opalj.log.LogContext
+import org.opalj.log.OPALLogger
+
+/*
+ * The benchmarks measure the phases of the analysis of the testcases separately; each phase's
+ * input is computed once per trial (or per invocation if the phase caches its result in the
+ * project). Run them using:
+ *
+ *   sbt "benchmarks/jmh:run -prof gc -prof benchmarks.PeakHeapProfiler"
+ *
+ * The gc profiler reports the allocation rate (·gc.alloc.rate.norm is the number of bytes
+ * allocated per operation), the PeakHeapProfiler the peak heap usage of each iteration.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+abstract class PhaseBenchmark {
+
+    val phases: Phases = Phases()
+
+    /** Registered once per trial instead of once per loaded project. */
+    val logContext: LogContext = Phases.registerLogContext()
+
+    @TearDown(Level.Trial)
+    def unregisterLogContext(): Unit = OPALLogger.unregister(logContext)
+}
+
+class ProjectLoadBenchmark extends PhaseBenchmark {
+
+    @Benchmark
+    def loadProject(): SomeProject = phases.loadProject(Phases.corpus, logContext)
+}
+
+class CallGraphBenchmark extends PhaseBenchmark {
+
+    var project: SomeProject = _
+
+    // the call graph is cached by the project
+    @Setup(Level.Invocation)
+    def loadProject(): Unit = project = phases.loadProject(Phases.corpus, logContext)
+
+    @Benchmark
+    def chaCallGraph(): CallGraph = phases.callGraph(project)
+}
+
+class ICFGBenchmark extends PhaseBenchmark {
+
+    /**
+     * 0: eager abstract interpretation of all methods; otherwise the size of the lazy AI cache
+     * and only the methods reachable from the testcases' entry points are analyzed.
+     */
+    @Param(Array("0", "64"))
+    var aiCacheSize: Int = _
+
+    var callGraph: CallGraph = _
+
+    var entryPoints: Seq[Method] = _
+
+    @Setup(Level.Trial)
+    def computeCallGraph(): Unit = {
+        val project = phases.loadProject(Phases.corpus, logContext)
+        callGraph = phases.callGraph(project)
+        entryPoints = Phases.entryPoints(project)
+    }
+
+    @Benchmark
+    def createICFG(): AnyRef = phases.icfg(callGraph, aiCacheSize, entryPoints)
+}
+
+class ControlFlowQueryBenchmark extends PhaseBenchmark {
+
+    var icfg: phases.ICFG = _
+
+    @Setup(Level.Trial)
+    def createICFG(): Unit = icfg = phases.icfg(phases.callGraph(phases.loadProject(Phases.corpus, logContext)), 0, Nil)
+
+    @Benchmark
+    def methodCFG(): Int = phases.controlFlowQueries(icfg)
+
+    @Benchmark
+    def aiDomain(): Int = phases.controlFlowQueriesFromAI(icfg)
+}
+
+class SolverBenchmark extends PhaseBenchmark {
+
+    @Param(Array(
+        "tests/Assignments",
+        "tests/Arrays",
+        "tests/Category2Values",
+        "tests/CorrelatedCalls",
+        "tests/InstanceField",
+        "tests/InterproceduralInstanceBasedEdges",
+        "tests/InterproceduralStaticEdges",
+        "tests/MultipleInstanceFields",
+        "tests/Sanitization",
+        "tests/StaticField"
+    ))
+    var testcase: String = _
+
+    var icfg: phases.ICFG = _
+
+    var entryPoint: Method = _
+
+    @Setup(Level.Trial)
+    def createICFG(): Unit = {
+        val project = phases.loadProject(Phases.corpus, logContext)
+        entryPoint = Phases.entryPoint(project, testcase)
+        icfg = phases.icfg(phases.callGraph(project), 0, Seq(entryPoint))
+    }
+
+    @Benchmark
+    def solve(): AnyRef = phases.solve(icfg, entryPoint)
+}
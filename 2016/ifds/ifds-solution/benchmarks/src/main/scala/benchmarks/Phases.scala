@@ -0,0 +1,87 @@
+package benchmarks
+
+import java.io.File
+
+import org.opalj.ai.analyses.cg.CallGraph
+import org.opalj.br.Method
+import org.opalj.br.analyses.SomeProject
+import org.opalj.log.ConsoleOPALLogger
+import org.opalj.log.DefaultLogContext
+import org.opalj.log.LogContext
+import org.opalj.log.OPALLogger
+
+/**
+ * The phases of the IFDS analysis that are measured by the benchmarks.
+ *
+ * JMH does not support benchmarks in the empty package, but the analysis is defined there and
+ * cannot be referred to from a named package; hence, the phases are implemented by the
+ * class `IFDSPhases` in the empty package, which is instantiated reflectively.
+ */
+trait Phases {
+
+    type ICFG <: AnyRef
+
+    type Solver <: AnyRef
+
+    /** Loads the project; its messages are logged to the given, already registered context. */
+    def loadProject(corpus: File, logContext: LogContext): SomeProject
+
+    def callGraph(project: SomeProject): CallGraph
+
+    /**
+     * Creates the ICFG and computes the control flow of the analyzed methods.
+     *
+     * @param aiCacheSize The number of cached abstract interpretation results; 0 runs the
+     *        abstract interpretation of all methods upfront and builds the call index.
+     *        Otherwise, only the control flow of the methods that are reachable from the entry
+     *        points is computed; the call index is built when the solver queries it first.
+     * @param entryPoints The methods whose reachable methods are analyzed if `aiCacheSize` is
+     *        not 0.
+     */
+    def icfg(callGraph: CallGraph, aiCacheSize: Int, entryPoints: Seq[Method]): ICFG
+
+    /** Queries the successors and predecessors of all statements; returns their number. */
+    def controlFlowQueries(icfg: ICFG): Int
+
+    /**
+     * Answers the same queries as `controlFlowQueries` directly from the abstract
+     * interpretation's results, i.e., without the per-method control flow snapshots.
+     */
+    def controlFlowQueriesFromAI(icfg: ICFG): Int
+
+    def solve(icfg: ICFG, entryPoint: Method): Solver
+}
+
+object Phases {
+
+    def apply(): Phases = Class.forName("IFDSPhases").newInstance().asInstanceOf[Phases]
+
+    /**
+     * Registers a context that logs to the console; the benchmarks register one per trial
+     * and load all projects with it.
+     */
+    def registerLogContext(): LogContext = {
+        val logContext = new DefaultLogContext
+        OPALLogger.register(logContext, new ConsoleOPALLogger)
+        logContext
+    }
+
+    /** The compiled testcases; set by the build. */
+    def corpus: File = new File(sys.props.getOrElse("apsa.testcases", "../testcases/target/scala-2.10/test-classes"))
+
+    /** The method `foo` of the given testcase class, which calls the source. */
+    def entryPoint(project: SomeProject, className: String): Method = {
+        val classFile = project.allClassFiles.find(_.thisType.fqn == className).get
+        classFile.methods.find(_.name == "foo").get
+    }
+
+    /** The methods `foo` of all testcase classes. */
+    def entryPoints(project: SomeProject): Seq[Method] = {
+        for {
+            classFile ← project.allClassFiles.toSeq
+            if classFile.thisType.fqn.startsWith("tests/")
+            m ← classFile.methods
+            if m.name == "foo" && m.body.isDefined
+        } yield m
+    }
+}
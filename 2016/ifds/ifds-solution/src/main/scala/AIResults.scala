@@ -0,0 +1,108 @@
+import java.util.LinkedHashMap
+import java.util.{ Map ⇒ JMap }
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+import org.opalj.ai.AIResult
+import org.opalj.ai.BaseAI
+import org.opalj.ai.Domain
+import org.opalj.ai.domain.RecordCFG
+import org.opalj.ai.domain.RecordDefUse
+import org.opalj.ai.domain.l1.DefaultDomainWithCFGAndDefUse
+import org.opalj.br.Method
+import org.opalj.br.analyses.SomeProject
+
+/**
+ * Provides the result of the abstract interpretation of a method; the ICFG derives the
+ * intra-procedural control flow from the recorded CFG and def-use information.
+ */
+trait AIResults {
+
+    def apply(m: Method): AIResults.MethodAIResult
+}
+
+object AIResults {
+
+    type MethodAIResult = AIResult { val domain: Domain with RecordCFG with RecordDefUse }
+
+    def compute(project: SomeProject, m: Method): MethodAIResult = {
+        val c = project.classFile(m)
+        BaseAI(c, m, new DefaultDomainWithCFGAndDefUse(project, c, m))
+    }
+}
+
+/**
+ * Runs the abstract interpretation for all methods with a body upfront.
+ */
+class EagerAIResults(project: SomeProject) extends AIResults {
+
+    private[this] val aiCFGs: ConcurrentHashMap[Method, AIResults.MethodAIResult] = {
+        val aiCFGs = new ConcurrentHashMap[Method, AIResults.MethodAIResult]
+        project.parForeachMethodWithBody() { methodInfo ⇒
+            val c = methodInfo.classFile
+            val m = methodInfo.method
+            val aiResult = BaseAI(c, m, new DefaultDomainWithCFGAndDefUse(project, c, m))
+            aiCFGs.put(m, aiResult)
+        }
+        aiCFGs
+    }
+
+    def apply(m: Method): AIResults.MethodAIResult = aiCFGs.get(m)
+}
+
+/**
+ * Runs the abstract interpretation of a method when its result is requested for the first time.
+ * At most `maxSize` results are kept; the least recently used result is evicted first and is
+ * recomputed if it is requested again.
+ *
+ * The abstract interpretation is performed outside of the cache's lock. Hence, if two threads
+ * request the same method concurrently, the method may be analyzed twice; only the first
+ * result that is stored is returned to both threads.
+ */
+class LazyAIResults(project: SomeProject, val maxSize: Int) extends AIResults {
+
+    require(maxSize > 0, s"the cache size has to be positive: $maxSize")
+
+    private[this] val hits = new AtomicLong
+    private[this] val misses = new AtomicLong
+    private[this] val evictions = new AtomicLong
+
+    private[this] val cache = new LinkedHashMap[Method, AIResults.MethodAIResult](16, 0.75f, /*accessOrder=*/ true) {
+        override def removeEldestEntry(eldest: JMap.Entry[Method, AIResults.MethodAIResult]): Boolean = {
+            val evict = size() > maxSize
+            if (evict) evictions.incrementAndGet()
+            evict
+        }
+    }
+
+    def apply(m: Method): AIResults.MethodAIResult = {
+        val cached = cache.synchronized { cache.get(m) }
+        if (cached ne null) {
+            hits.incrementAndGet()
+            return cached;
+        }
+
+        misses.incrementAndGet()
+        val aiResult = AIResults.compute(project, m)
+        cache.synchronized {
+            val other = cache.get(m)
+            if (other ne null) {
+                other
+            } else {
+                cache.put(m, aiResult)
+                aiResult
+            }
+        }
+    }
+
+    def size: Int = cache.synchronized { cache.size() }
+
+    def statistics: AICacheStatistics = AICacheStatistics(hits.get, misses.get, evictions.get)
+}
+
+case class AICacheStatistics(hits: Long, misses: Long, evictions: Long) {
+
+    override def toString() = {
+        s"AICache(hits=$hits, misses=$misses, evictions=$evictions)"
+    }
+}
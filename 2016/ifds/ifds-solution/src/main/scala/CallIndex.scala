@@ -0,0 +1,201 @@
+import java.util.AbstractList
+import java.util.Collections
+import java.util.IdentityHashMap
+import java.util.{ Collection ⇒ JCollection }
+
+import org.opalj.ai.analyses.cg.CallGraph
+import org.opalj.br.Method
+
+/**
+ * An index of the call graph's edges that answers the ICFG's caller and callee queries with
+ * precomputed, immutable collections.
+ *
+ * All methods of the project get a dense id. The call sites calling a method and the methods
+ * called by a call site are stored as int arrays (node ids and method ids, respectively); the
+ * collections returned by `callersOf` and `calleesOf` are views of these arrays that are created
+ * once while building the index.
+ */
+class CallIndex private (
+        private[this] val methods: Array[Method],
+        private[this] val methodIds: IdentityHashMap[Method, Integer],
+        private[this] val callers: Array[JCollection[MInstruction]],
+        private[this] val callees: Array[JCollection[Method]],
+        val statistics: CallIndexStatistics) {
+
+    def methodId(m: Method): Int = methodIds.get(m).intValue
+
+    def method(id: Int): Method = methods(id)
+
+    /** The call sites that call the given method. */
+    def callersOf(m: Method): JCollection[MInstruction] = {
+        val id = methodIds.get(m)
+        if (id eq null) Collections.emptyList[MInstruction]() else callers(id.intValue)
+    }
+
+    /** The methods that are called by the given call site. */
+    def calleesOf(callSite: MInstruction): JCollection[Method] = {
+        val id = callSite.id
+        if (id >= callees.length) {
+            Collections.emptyList[Method]()
+        } else {
+            val methods = callees(id)
+            if (methods eq null) Collections.emptyList[Method]() else methods
+        }
+    }
+}
+
+object CallIndex {
+
+    /**
+     * Creates the index of the given call graph; the call graph is queried in parallel for all
+     * methods with a body.
+     */
+    def apply(cg: CallGraph, nodeTable: MInstruction.NodeTable): CallIndex = {
+        val startTime = System.nanoTime()
+        val project = cg.project
+
+        val allMethods = project.allClassFiles.flatMap(_.methods).toArray
+        val methodIds = numberMethods(allMethods, nodeTable)
+
+        val callerIds = new Array[Array[Int]](allMethods.length)
+        val callSiteIds = new Array[Array[Int]](allMethods.length)
+        val calleeIds = new Array[Array[Array[Int]]](allMethods.length)
+        project.parForeachMethodWithBody() { methodInfo ⇒
+            val m = methodInfo.method
+            val id = methodIds.get(m).intValue
+            val nodes = nodeTable.nodesOf(m)
+
+            callerIds(id) = cg.calledBy(m).iterator.flatMap { e ⇒
+                val (caller, pcs) = e
+                val callerNodes = nodeTable.nodesOf(caller)
+                pcs.mapToList { pc ⇒ callerNodes(pc).id }
+            }.toArray
+
+            val callSites = cg.calls(m)
+            callSiteIds(id) = callSites.keysIterator.map(pc ⇒ nodes(pc).id).toArray
+            calleeIds(id) = callSites.valuesIterator.map { methods ⇒
+                methods.iterator.map(callee ⇒ methodIds.get(callee).intValue).toArray
+            }.toArray
+        }
+
+        build(allMethods, methodIds, nodeTable, callerIds, callSiteIds, calleeIds, startTime)
+    }
+
+    /**
+     * Assigns the ids to the methods (the index in the given array) and registers the methods'
+     * nodes; the node ids are used to index the callees.
+     */
+    def numberMethods(allMethods: Array[Method], nodeTable: MInstruction.NodeTable): IdentityHashMap[Method, Integer] = {
+        val methodIds = new IdentityHashMap[Method, Integer](allMethods.length * 2)
+        var i = 0
+        while (i < allMethods.length) {
+            val m = allMethods(i)
+            methodIds.put(m, Integer.valueOf(i))
+            if (m.body.isDefined) nodeTable.nodesOf(m)
+            i += 1
+        }
+        methodIds
+    }
+
+    /**
+     * Creates the index from the per-method call information.
+     *
+     * @param nodeTable The table of the nodes referenced by `callerIds` and `callSiteIds`.
+     * @param callerIds Per method: the ids of the nodes calling the method.
+     * @param callSiteIds Per method: the node ids of the method's call sites.
+     * @param calleeIds Per method and call site (in the order of `callSiteIds`): the ids of the
+     *        called methods.
+     */
+    def build(
+        allMethods:  Array[Method],
+        methodIds:   IdentityHashMap[Method, Integer],
+        nodeTable:   MInstruction.NodeTable,
+        callerIds:   Array[Array[Int]],
+        callSiteIds: Array[Array[Int]],
+        calleeIds:   Array[Array[Array[Int]]],
+        startTime:   Long): CallIndex = {
+        // concatenate the per-method arrays
+        val allCallerIds = new Array[Int](callerIds.iterator.filter(_ ne null).map(_.length).sum)
+        val allCalleeIds = new Array[Int](calleeIds.iterator.filter(_ ne null).flatMap(_.iterator).map(_.length).sum)
+        val callers = new Array[JCollection[MInstruction]](allMethods.length)
+        val callees = new Array[JCollection[Method]](nodeTable.numberOfIds)
+        var callerCount = 0
+        var calleeCount = 0
+        var callSitesCount = 0
+        var m = 0
+        while (m < allMethods.length) {
+            val ids = callerIds(m)
+            if ((ids eq null) || ids.length == 0) {
+                callers(m) = Collections.emptyList[MInstruction]()
+            } else {
+                System.arraycopy(ids, 0, allCallerIds, callerCount, ids.length)
+                callers(m) = new NodesView(nodeTable, allCallerIds, callerCount, callerCount + ids.length)
+                callerCount += ids.length
+            }
+            val callSites = callSiteIds(m)
+            if (callSites ne null) {
+                var c = 0
+                while (c < callSites.length) {
+                    val targetIds = calleeIds(m)(c)
+                    System.arraycopy(targetIds, 0, allCalleeIds, calleeCount, targetIds.length)
+                    callees(callSites(c)) = new MethodsView(allMethods, allCalleeIds, calleeCount, calleeCount + targetIds.length)
+                    calleeCount += targetIds.length
+                    c += 1
+                }
+                callSitesCount += callSites.length
+            }
+            m += 1
+        }
+
+        val statistics = CallIndexStatistics(
+            buildTime = System.nanoTime() - startTime,
+            methods = allMethods.length,
+            callSites = callSitesCount,
+            callEdges = calleeCount,
+            estimatedBytes = estimatedBytes(allMethods.length, callees.length, callSitesCount, callerCount, calleeCount)
+        )
+        new CallIndex(allMethods, methodIds, callers, callees, statistics)
+    }
+
+    /**
+     * Estimates the memory used by the index assuming compressed references: the views and the
+     * arrays that store the ids (the method to id map is not taken into account).
+     */
+    private[this] def estimatedBytes(methods: Int, nodes: Int, callSites: Int, callerIds: Int, calleeIds: Int): Long = {
+        val arrayHeader = 16L
+        val reference = 4L
+        val view = 24L
+        (arrayHeader + methods * reference) + // callers
+            (arrayHeader + nodes * reference) + // callees
+            (arrayHeader + callerIds * 4L) + (arrayHeader + calleeIds * 4L) +
+            (methods + callSites) * view
+    }
+
+    private class NodesView(
+            nodeTable: MInstruction.NodeTable,
+            ids:       Array[Int],
+            from:      Int,
+            to:        Int) extends AbstractList[MInstruction] {
+        def get(index: Int): MInstruction = {
+            if (index < 0 || index >= to - from) throw new IndexOutOfBoundsException(index.toString)
+            nodeTable.byId(ids(from + index))
+        }
+        def size(): Int = to - from
+    }
+
+    private class MethodsView(methods: Array[Method], ids: Array[Int], from: Int, to: Int) extends AbstractList[Method] {
+        def get(index: Int): Method = {
+            if (index < 0 || index >= to - from) throw new IndexOutOfBoundsException(index.toString)
+            methods(ids(from + index))
+        }
+        def size(): Int = to - from
+    }
+}
+
+case class CallIndexStatistics(buildTime: Long, methods: Int, callSites: Int, callEdges: Int, estimatedBytes: Long) {
+
+    override def toString() = {
+        f"CallIndex(methods=$methods, call sites=$callSites, call edges=$callEdges, "+
+            f"build time=${buildTime / 1000000.0d}%.1f ms, size≈${estimatedBytes / 1024}%d KiB)"
+    }
+}
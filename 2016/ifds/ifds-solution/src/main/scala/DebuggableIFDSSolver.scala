@@ -1,4 +1,8 @@
 import heros.solver.IFDSSolver
+import heros.solver.IFDSSolver.BinaryDomain
+import heros.EdgeFunction
+import heros.edgefunc.EdgeIdentity
+import com.google.common.collect.HashBasedTable
 import org.opalj.br.Method
 import heros.IFDSTabulationProblem
 import org.opalj.br.analyses.Project
@@ -6,18 +10,121 @@ import java.net.URL
 import scala.collection.JavaConversions._
 import org.opalj.br.instructions.Instruction
 
+/**
+ * @param metrics If defined, the flow function applications are recorded (see [[SolverMetrics]]).
+ */
 class DebuggableIFDSSolver(
-    val tabulationProblem: IFDSTabulationProblem[MInstruction, Fact, Method, OpalICFG])
-        extends IFDSSolver[MInstruction, Fact, Method, OpalICFG](tabulationProblem) {
+    val tabulationProblem: TabulationProblem,
+    val metrics: Option[SolverMetrics] = None)
+        extends IFDSSolver[MInstruction, Fact, Method, OpalICFG](
+            metrics.map(_.instrument(tabulationProblem)).getOrElse(tabulationProblem)) {
+
+    private[this] def icfg: OpalICFG = tabulationProblem.interproceduralCFG()
+
+    def pathEdgesCount(method: Method): Int = {
+        val nodes = icfg.nodes.nodesOf(method)
+        nodes.iterator.filter(_ ne null).map(node ⇒ jumpFn.lookupByTarget(node).size()).sum
+    }
+
+    /**
+     * The snapshot of the recorded metrics including the number of path edges of each method
+     * of the project; `None` if no metrics are recorded.
+     */
+    def metricsSnapshot(): Option[SolverMetricsSnapshot] = {
+        metrics.map { metrics ⇒
+            val project = icfg.project
+            val pathEdgesPerMethod = project.allMethodsWithBody.iterator.map { m ⇒ (m, pathEdgesCount(m)) }.filter(_._2 > 0).toMap
+            metrics.snapshot(pathEdgesPerMethod, tabulationProblem.factTable.countsByClass)
+        }
+    }
+
+    /**
+     * Solves the problem; afterwards, the metrics are emitted as a [[SolverMetricsEvent]] if
+     * metrics are recorded and the event is enabled.
+     */
+    override def solve(): Unit = {
+        super.solve()
+        if (metrics.isDefined && new SolverMetricsEvent().isEnabled())
+            metricsSnapshot().foreach(_.commitEvent())
+    }
+
+    /**
+     * Adds the end summaries that a previous run computed for the method, i.e., for each fact
+     * `d1` at the method's start point the facts at the method's exit statements (given by
+     * their pcs). The self-loop path edge of each `d1` is added, too; hence, the solver does not
+     * analyze the method again for `d1`, but only applies the summaries at the call sites.
+     *
+     * Has to be called before the problem is solved.
+     */
+    def preseedSummaries(method: Method, summaries: Map[Fact, Set[(Int, Fact)]]): Unit = {
+        val startPoint = icfg.node(0, method)
+        val factTable = tabulationProblem.factTable
+        summaries.foreach {
+            case (entryFact, exits) ⇒
+                val d1 = factTable.intern(entryFact)
+                jumpFn.addFunction(d1, startPoint, d1, EdgeIdentity.v[BinaryDomain]())
+                val summary = HashBasedTable.create[MInstruction, Fact, EdgeFunction[BinaryDomain]]()
+                exits.foreach {
+                    case (pc, exitFact) ⇒
+                        summary.put(icfg.node(pc, method), factTable.intern(exitFact), EdgeIdentity.v[BinaryDomain]())
+                }
+                endSummary.put(startPoint, d1, summary)
+        }
+    }
+
+    /**
+     * The facts the method was analyzed for, i.e., the facts `d1` of the self-loop path edges
+     * at its start point; the zero fact is excluded, it only reaches a start point if a seed is
+     * the first statement.
+     */
+    def entryFacts(method: Method): Set[Fact] = {
+        jumpFn.lookupByTarget(icfg.node(0, method)).iterator.collect {
+            case cell if (cell.getRowKey eq cell.getColumnKey) && (cell.getRowKey ne Zero) ⇒ cell.getRowKey
+        }.toSet
+    }
+
+    /** The facts at the method's exit statements (with their pcs) if the method is entered with `d1`. */
+    def endSummaries(method: Method, d1: Fact): Set[(Int, Fact)] = {
+        val summary = endSummary.get(icfg.node(0, method), d1)
+        if (summary eq null)
+            Set.empty
+        else
+            summary.cellSet.iterator.map(cell ⇒ (cell.getRowKey.pc, cell.getColumnKey)).toSet
+    }
+
+    /** Returns true if a call site propagated `d1` into the method while the problem was solved. */
+    def isCalledWith(method: Method, d1: Fact): Boolean = {
+        val callSites = incoming.get(icfg.node(0, method), d1)
+        (callSites ne null) && !callSites.isEmpty
+    }
+
+    /**
+     * The facts at the start point of the node's method that lead to the given fact at the node,
+     * i.e., the sources of the path edges that end in `(node, fact)`.
+     */
+    def sourceFacts(node: MInstruction, fact: Fact): Set[Fact] = jumpFn.reverseLookup(node, fact).keySet.toSet
+
+    /**
+     * The callee entries: for each fact `d1` that a callee was entered with, the caller and the
+     * caller's fact at its start point that lead to the call.
+     */
+    def calleeEntries(): Iterator[(Method, Fact, Method, Fact)] = {
+        for {
+            cell ← incoming.cellSet.iterator
+            (callSite, callSiteFacts) ← cell.getValue.iterator
+            callSiteFact ← callSiteFacts.iterator
+            callerFact ← sourceFacts(callSite, callSiteFact).iterator
+        } yield (callSite.m, callerFact, cell.getRowKey.m, cell.getColumnKey)
+    }
 
     def hasPathEdges(method: Method): Boolean = {
-        method.body.exists(_.exists { case (pc, instr) ⇒ !jumpFn.lookupByTarget(MInstruction(instr, pc, method)).isEmpty() })
+        method.body.exists(_.exists { case (pc, _) ⇒ !jumpFn.lookupByTarget(icfg.node(pc, method)).isEmpty() })
     }
 
     def printPathEdges(method: Method) = {
         method.body.get.foreach {
             case (pc, instr) ⇒
-                val edges = jumpFn.lookupByTarget(MInstruction(instr, pc, method)).map { cell ⇒
+                val edges = jumpFn.lookupByTarget(icfg.node(pc, method)).map { cell ⇒
                     cell.getRowKey+" -> "+cell.getColumnKey
                 }
                 println(f"$pc%2d: ${instr.toString().replaceAll("\n", " ")}%-70.70s \t${edges.mkString(", ")}%s")
@@ -37,7 +144,7 @@ class DebuggableIFDSSolver(
                 if(pops > incomingFact.opStack.size)
                     returnedFact
                 else {
-                    returnedFact.copy(returnedFact.opStack ++ incomingFact.opStack.drop(pops))
+                    tabulationProblem.factTable.intern(returnedFact.copy(returnedFact.opStack ++ incomingFact.opStack.drop(pops)))
                 }
                     
             case _ => returnedFact
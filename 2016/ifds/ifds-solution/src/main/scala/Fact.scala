@@ -3,11 +3,90 @@ import org.opalj.br.ComputationalTypeCategory
 import org.opalj.br.Category2ComputationalTypeCategory
 import org.opalj.br.Category1ComputationalTypeCategory
 import org.opalj.br.ComputationalType
+import java.util.Arrays
+import java.util.concurrent.ConcurrentHashMap
 
 trait Fact {
 
 }
 
+/**
+ * Hash-conses the facts of an analysis: the canonical instance of a fact has a dense id and a
+ * singleton [[FactSet]] that can be shared by all flow functions that generate the fact.
+ *
+ * The table is owned by the [[TabulationProblem]]; hence, the facts are released together with
+ * the problem. `Zero` always has the id 0.
+ */
+final class FactTable {
+
+    private[this] val ids = new ConcurrentHashMap[Fact, Integer]
+
+    @volatile private[this] var factsById = new Array[Fact](1024)
+
+    @volatile private[this] var singletons = new Array[FactSet](1024)
+
+    private[this] var nextId = 0
+
+    register(Zero)
+
+    /**
+     * Returns the id of the given fact; the fact is interned if necessary.
+     */
+    def id(fact: Fact): Int = {
+        val id = ids.get(fact)
+        if (id ne null) id.intValue else register(fact)
+    }
+
+    /**
+     * Returns the id of the given fact or -1 if the fact was not interned; in contrast to `id`,
+     * the table is not changed.
+     */
+    def lookup(fact: Fact): Int = {
+        val id = ids.get(fact)
+        if (id ne null) id.intValue else -1
+    }
+
+    /**
+     * Returns the canonical instance of the given fact.
+     */
+    def intern[F <: Fact](fact: F): F = factsById(id(fact)).asInstanceOf[F]
+
+    /** The interned fact with the given id. */
+    def byId(id: Int): Fact = factsById(id)
+
+    /** The set that contains only the given fact. */
+    def singleton(fact: Fact): FactSet = singletons(id(fact))
+
+    /** The set that contains only the fact with the given id. */
+    def singletonById(id: Int): FactSet = singletons(id)
+
+    /** The number of interned facts. */
+    def size: Int = synchronized { nextId }
+
+    /** The number of interned facts per class. */
+    def countsByClass: Map[String, Int] = {
+        (0 until size).groupBy(id ⇒ byId(id).getClass.getSimpleName).mapValues(_.size).toMap
+    }
+
+    private[this] def register(fact: Fact): Int = synchronized {
+        val registeredId = ids.get(fact)
+        if (registeredId ne null)
+            return registeredId.intValue;
+
+        val id = nextId
+        if (id == factsById.length) {
+            factsById = Arrays.copyOf(factsById, id * 2)
+            singletons = Arrays.copyOf(singletons, id * 2)
+        }
+        // the arrays are published by the put below
+        factsById(id) = fact
+        singletons(id) = FactSet.newSingleton(this, id)
+        nextId = id + 1
+        ids.put(fact, Integer.valueOf(id))
+        id
+    }
+}
+
 object Zero extends Fact {
     override def toString() = "Zero"
 }
@@ -60,6 +139,8 @@ object UnknownCTC2Value extends StackEntry(Category2ComputationalTypeCategory, N
  */
 case class OperandStackFact(stackIndex: Int, opStack: List[StackEntry]) extends FactWithOperandStack {
 
+    override val hashCode: Int = scala.runtime.ScalaRunTime._hashCode(this)
+
     def copy(opStack: List[StackEntry]): OperandStackFact = OperandStackFact(stackIndex, opStack)
 
     def pop() = OperandStackFact(stackIndex - 1, opStack.tail)
@@ -76,6 +157,8 @@ case class OperandStackFact(stackIndex: Int, opStack: List[StackEntry]) extends
  */
 case class RegisterFact(registerIndex: Int, opStack: List[StackEntry]) extends FactWithOperandStack {
 
+    override val hashCode: Int = scala.runtime.ScalaRunTime._hashCode(this)
+
     def copy(opStack: List[StackEntry]): RegisterFact = RegisterFact(registerIndex, opStack)
 
     def pop() = RegisterFact(registerIndex, opStack.tail)
@@ -97,6 +180,8 @@ case class FieldBasedFact(
         fieldName: String,
         opStack: List[StackEntry]) extends FactWithOperandStack {
 
+    override val hashCode: Int = scala.runtime.ScalaRunTime._hashCode(this)
+
     def copy(opStack: List[StackEntry]): FieldBasedFact = FieldBasedFact(declaringClass, fieldName, opStack)
 
     def pop() = FieldBasedFact(declaringClass, fieldName, opStack.tail)
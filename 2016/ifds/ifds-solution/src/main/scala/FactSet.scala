@@ -0,0 +1,74 @@
+import java.util.AbstractSet
+import java.util.Arrays
+import java.util.Iterator
+import java.util.NoSuchElementException
+
+/**
+ * An immutable set of interned facts that is represented by the sorted array of the facts' ids
+ * in a [[FactTable]].
+ *
+ * Flow functions typically generate at most a handful of facts, hence, a sorted array is more
+ * compact than a hash set and lookups use binary search. Use `FactSet.empty` and
+ * `FactTable.singleton` to share the most common sets.
+ */
+final class FactSet private (
+        private[this] val table: FactTable,
+        private[this] val ids:   Array[Int]) extends AbstractSet[Fact] {
+
+    override def size(): Int = ids.length
+
+    override def isEmpty(): Boolean = ids.length == 0
+
+    /** Looks up the fact's id; the fact is not interned. */
+    override def contains(o: Any): Boolean = o match {
+        case f: Fact if ids.length > 0 ⇒
+            val id = table.lookup(f)
+            id >= 0 && Arrays.binarySearch(ids, id) >= 0
+        case _ ⇒ false
+    }
+
+    def iterator(): Iterator[Fact] = new Iterator[Fact] {
+        private[this] var index = 0
+        def hasNext(): Boolean = index < ids.length
+        def next(): Fact = {
+            if (index >= ids.length) throw new NoSuchElementException
+            val fact = table.byId(ids(index))
+            index += 1
+            fact
+        }
+    }
+}
+
+object FactSet {
+
+    val empty: FactSet = new FactSet(null, new Array[Int](0))
+
+    /**
+     * Creates the singleton set of the fact with the given id; used by `FactTable`, all
+     * other code should use `FactTable.singleton`.
+     */
+    def newSingleton(table: FactTable, id: Int): FactSet = new FactSet(table, Array(id))
+
+    /**
+     * Interns the given facts and returns the set of the canonical instances.
+     */
+    def apply(table: FactTable, facts: Fact*): FactSet = facts.length match {
+        case 0 ⇒ empty
+        case 1 ⇒ table.singleton(facts.head)
+        case n ⇒
+            val ids = new Array[Int](n)
+            var i = 0
+            facts.foreach { fact ⇒ ids(i) = table.id(fact); i += 1 }
+            Arrays.sort(ids)
+            var distinct = 1
+            i = 1
+            while (i < n) {
+                if (ids(i) != ids(distinct - 1)) { ids(distinct) = ids(i); distinct += 1 }
+                i += 1
+            }
+            if (distinct == 1)
+                table.singletonById(ids(0))
+            else
+                new FactSet(table, if (distinct == n) ids else Arrays.copyOf(ids, distinct))
+    }
+}
@@ -0,0 +1,444 @@
+import java.io.BufferedOutputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.FilterOutputStream
+import java.io.OutputStream
+import java.io.RandomAccessFile
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.security.MessageDigest
+import java.util.Arrays
+import java.util.HashMap
+import java.util.IdentityHashMap
+
+import org.opalj.ai.analyses.cg.CallGraph
+import org.opalj.br.ClassFile
+import org.opalj.br.Method
+import org.opalj.br.analyses.SomeProject
+import org.opalj.br.instructions.MethodInvocationInstruction
+
+/**
+ * A memory-mapped snapshot of an ICFG: the per-method control flow (see [[MethodCFG]]) and the
+ * call graph's edges. A snapshot is only used if it was created for the same input files,
+ * library files, call graph algorithm and analysis mode; see [[ICFGSnapshot.hash]].
+ *
+ * Loading a snapshot only maps the file and reads the method table; a method's control flow is
+ * decoded when it is requested for the first time and the call index is built when it is
+ * requested for the first time.
+ *
+ * File format (all values are big-endian):
+ * {{{
+ * header:      magic: Int, version: Int, hash: 32 Bytes (see `ICFGSnapshot.hash`),
+ *              methodTableOffset: Long, callsOffset: Long
+ * cfgs:        per method with body: codeSize: Int,
+ *              succOffsets: Int[codeSize + 1], succPCs: Int[succOffsets(codeSize)],
+ *              predOffsets: Int[codeSize + 1], predPCs: Int[predOffsets(codeSize)]
+ * calls:       callSitesCount: Int,
+ *              per call site: caller: Int, pc: Int, calleesCount: Int, callees: Int[calleesCount]
+ * methodTable: methodsCount: Int,
+ *              per method: cfgOffset: Long (-1 if the method has no body),
+ *                          keyLength: Int, key: UTF-8 Bytes[keyLength]
+ * }}}
+ * Callers and callees are referenced by their index in the method table.
+ */
+class ICFGSnapshot private (
+        val file: File,
+        private[this] val buffer: MappedFile,
+        private[this] val methods: Array[Method],
+        private[this] val cfgOffsets: Array[Long],
+        private[this] val methodIndexes: IdentityHashMap[Method, Integer],
+        private[this] val callsOffset: Long) {
+
+    /**
+     * The snapshot of the method's control flow; `None` if the snapshot does not contain the method.
+     */
+    def cfg(m: Method, nodeTable: MInstruction.NodeTable): Option[MethodCFG] = {
+        val index = methodIndexes.get(m)
+        if ((index eq null) || cfgOffsets(index.intValue) < 0)
+            return None;
+
+        var position = cfgOffsets(index.intValue)
+        def readInts(length: Int): Array[Int] = {
+            val values = new Array[Int](length)
+            var i = 0
+            while (i < length) { values(i) = buffer.getInt(position); position += 4; i += 1 }
+            values
+        }
+        val codeSize = readInts(1)(0)
+        val succOffsets = readInts(codeSize + 1)
+        val succPCs = readInts(succOffsets(codeSize))
+        val predOffsets = readInts(codeSize + 1)
+        val predPCs = readInts(predOffsets(codeSize))
+        Some(MethodCFG(m, nodeTable, succOffsets, succPCs, predOffsets, predPCs))
+    }
+
+    /**
+     * Creates the call index from the stored call graph edges.
+     */
+    def callIndex(project: SomeProject, nodeTable: MInstruction.NodeTable): CallIndex = {
+        val startTime = System.nanoTime()
+        val allMethods = project.allClassFiles.flatMap(_.methods).toArray
+        val methodIds = CallIndex.numberMethods(allMethods, nodeTable)
+        def methodId(index: Int): Int = {
+            val m = methods(index)
+            if (m eq null) -1 else methodIds.get(m).intValue
+        }
+
+        val callers = Array.fill(allMethods.length)(new IntArrayBuilder)
+        val callSites = Array.fill(allMethods.length)(new IntArrayBuilder)
+        val callees = Array.fill(allMethods.length)(List.empty[Array[Int]])
+        var position = callsOffset
+        var remainingCallSites = buffer.getInt(position); position += 4
+        while (remainingCallSites > 0) {
+            val caller = methodId(buffer.getInt(position))
+            val pc = buffer.getInt(position + 4)
+            val calleesCount = buffer.getInt(position + 8)
+            position += 12
+            if (caller >= 0) {
+                val callSite = nodeTable.nodesOf(allMethods(caller))(pc).id
+                val calleeIds = new IntArrayBuilder
+                var i = 0
+                while (i < calleesCount) {
+                    val callee = methodId(buffer.getInt(position + i * 4))
+                    if (callee >= 0) {
+                        calleeIds += callee
+                        callers(callee) += callSite
+                    }
+                    i += 1
+                }
+                callSites(caller) += callSite
+                callees(caller) = calleeIds.result :: callees(caller)
+            }
+            position += calleesCount * 4
+            remainingCallSites -= 1
+        }
+
+        CallIndex.build(
+            allMethods,
+            methodIds,
+            nodeTable,
+            callers.map(_.result),
+            callSites.map(_.result),
+            callees.map(_.reverse.toArray),
+            startTime
+        )
+    }
+}
+
+object ICFGSnapshot {
+
+    final val Magic = 0x41505341 // "APSA"
+
+    final val Version = 2
+
+    /**
+     * Returns the ICFG stored in the snapshot file if the snapshot was created for the given
+     * input files and configuration; otherwise, the call graph is computed, the ICFG is created
+     * and a new snapshot is written.
+     *
+     * The control flow of the methods that are not contained in the snapshot is computed on
+     * demand and is cached as described by [[OpalICFG.withLazyAI]].
+     *
+     * @param inputs The project's application class files (jars or directories).
+     * @param libraries The project's library class files.
+     * @param callGraphAlgorithm The name of the algorithm that computes `callGraph`, e.g., "CHA".
+     */
+    def loadOrCreate(
+        file:               File,
+        inputs:             Seq[File],
+        libraries:          Seq[File],
+        callGraphAlgorithm: String,
+        project:            SomeProject,
+        aiCacheSize:        Int = 1024)(callGraph: ⇒ CallGraph): OpalICFG = {
+        val snapshotHash = hash(inputs, libraries, s"callGraph=$callGraphAlgorithm;analysisMode=${project.analysisMode}")
+        load(file, snapshotHash, project) match {
+            case Some(snapshot) ⇒
+                OpalICFG.fromSnapshot(project, snapshot, aiCacheSize)
+            case None ⇒
+                val cg = callGraph
+                val icfg = new OpalICFG(cg)
+                write(file, snapshotHash, icfg)
+                icfg
+        }
+    }
+
+    /**
+     * Maps the snapshot file; returns `None` if the file does not exist or if it was not
+     * created with the given hash.
+     */
+    def load(file: File, snapshotHash: Array[Byte], project: SomeProject): Option[ICFGSnapshot] = {
+        if (!file.isFile)
+            return None;
+
+        val buffer = new MappedFile(file)
+        val storedHash = new Array[Byte](32)
+        if (buffer.length < 56 || buffer.getInt(0) != Magic || buffer.getInt(4) != Version)
+            return None;
+        buffer.get(8, storedHash)
+        if (!Arrays.equals(storedHash, snapshotHash))
+            return None;
+        val methodTableOffset = buffer.getLong(40)
+        val callsOffset = buffer.getLong(48)
+        if (methodTableOffset <= 0L || callsOffset <= 0L) // the snapshot was not written completely
+            return None;
+
+        val methodsByKey = new HashMap[String, Method]
+        project.allClassFiles.foreach { cf ⇒ cf.methods.foreach(m ⇒ methodsByKey.put(key(cf, m), m)) }
+
+        var position = methodTableOffset
+        val methodsCount = buffer.getInt(position); position += 4
+        val methods = new Array[Method](methodsCount)
+        val cfgOffsets = new Array[Long](methodsCount)
+        val methodIndexes = new IdentityHashMap[Method, Integer](methodsCount * 2)
+        var i = 0
+        while (i < methodsCount) {
+            cfgOffsets(i) = buffer.getLong(position)
+            val keyBytes = new Array[Byte](buffer.getInt(position + 8))
+            buffer.get(position + 12, keyBytes)
+            position += 12 + keyBytes.length
+            val m = methodsByKey.get(new String(keyBytes, StandardCharsets.UTF_8))
+            if (m ne null) {
+                methods(i) = m
+                methodIndexes.put(m, Integer.valueOf(i))
+            }
+            i += 1
+        }
+
+        Some(new ICFGSnapshot(file, buffer, methods, cfgOffsets, methodIndexes, callsOffset))
+    }
+
+    /**
+     * Writes the snapshot of the given ICFG. The control flow of all methods with a body is
+     * computed if it is not yet available.
+     *
+     * The snapshot is written to a temporary file that then atomically replaces the given file;
+     * hence, other runs that have mapped the old snapshot are not affected.
+     */
+    def write(file: File, snapshotHash: Array[Byte], icfg: OpalICFG): Unit = {
+        val project = icfg.project
+        val classFiles = project.allClassFiles.toArray
+        val methods = classFiles.flatMap(cf ⇒ cf.methods.map(m ⇒ (cf, m)))
+        val methodIndexes = new IdentityHashMap[Method, Integer](methods.length * 2)
+        methods.iterator.zipWithIndex.foreach { case ((_, m), i) ⇒ methodIndexes.put(m, Integer.valueOf(i)) }
+        val cfgOffsets = Array.fill(methods.length)(-1L)
+
+        val tmpFile = File.createTempFile(file.getName, ".tmp", file.getAbsoluteFile.getParentFile)
+        try {
+            val raf = new RandomAccessFile(tmpFile, "rw")
+            try {
+                val counter = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(raf.getFD)))
+                val out = new DataOutputStream(counter)
+                out.writeInt(Magic)
+                out.writeInt(Version)
+                out.write(snapshotHash)
+                out.writeLong(0L) // methodTableOffset; patched below
+                out.writeLong(0L) // callsOffset; patched below
+
+                methods.iterator.zipWithIndex.foreach {
+                    case ((_, m), i) if m.body.isDefined ⇒
+                        cfgOffsets(i) = counter.count
+                        val cfg = icfg.cfg(m)
+                        val codeSize = cfg.codeSize
+                        out.writeInt(codeSize)
+                        def writeAdjacency(count: Int ⇒ Int, targetPC: (Int, Int) ⇒ Int): Unit = {
+                            var offset = 0
+                            var pc = 0
+                            while (pc <= codeSize) {
+                                out.writeInt(offset)
+                                if (pc < codeSize) offset += count(pc)
+                                pc += 1
+                            }
+                            pc = 0
+                            while (pc < codeSize) {
+                                var i = 0
+                                while (i < count(pc)) { out.writeInt(targetPC(pc, i)); i += 1 }
+                                pc += 1
+                            }
+                        }
+                        writeAdjacency(cfg.successorsCount, cfg.successorPC)
+                        writeAdjacency(cfg.predecessorsCount, cfg.predecessorPC)
+                    case _ ⇒
+                }
+
+                val callsOffset = counter.count
+                val callSites = for {
+                    (_, m) ← methods.iterator
+                    if m.body.isDefined
+                    node ← icfg.nodes.nodesOf(m).iterator
+                    if (node ne null) && node.i.isInstanceOf[MethodInvocationInstruction]
+                    callees = icfg.getCalleesOfCallAt(node)
+                    if !callees.isEmpty()
+                } yield (node, callees)
+                val callSitesBuffer = callSites.toArray
+                out.writeInt(callSitesBuffer.length)
+                callSitesBuffer.foreach {
+                    case (node, callees) ⇒
+                        out.writeInt(methodIndexes.get(node.m).intValue)
+                        out.writeInt(node.pc)
+                        out.writeInt(callees.size())
+                        val it = callees.iterator()
+                        while (it.hasNext()) out.writeInt(methodIndexes.get(it.next()).intValue)
+                }
+
+                val methodTableOffset = counter.count
+                out.writeInt(methods.length)
+                methods.iterator.zipWithIndex.foreach {
+                    case ((cf, m), i) ⇒
+                        val keyBytes = key(cf, m).getBytes(StandardCharsets.UTF_8)
+                        out.writeLong(cfgOffsets(i))
+                        out.writeInt(keyBytes.length)
+                        out.write(keyBytes)
+                }
+                out.flush()
+
+                raf.seek(40)
+                raf.writeLong(methodTableOffset)
+                raf.writeLong(callsOffset)
+                raf.getFD.sync()
+            } finally {
+                raf.close()
+            }
+            Files.move(tmpFile.toPath, file.toPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+        } finally {
+            tmpFile.delete() // only exists if the snapshot was not written completely
+        }
+    }
+
+    /**
+     * The SHA-256 hash of the snapshot's configuration and of the given files' contents;
+     * directories are traversed recursively, the relative paths of the contained files are
+     * hashed, too. The hash distinguishes whether a file belongs to the application or to the
+     * libraries.
+     *
+     * @param configuration Further settings that determine the snapshot's content, e.g., the
+     *        call graph algorithm and the analysis mode.
+     */
+    def hash(inputs: Seq[File], libraries: Seq[File], configuration: String): Array[Byte] = {
+        val digest = MessageDigest.getInstance("SHA-256")
+        val buffer = new Array[Byte](64 * 1024)
+        def update(file: File, path: String): Unit = {
+            if (file.isDirectory) {
+                file.listFiles().sortBy(_.getName).foreach(f ⇒ update(f, path+"/"+f.getName))
+            } else {
+                digest.update(path.getBytes(StandardCharsets.UTF_8))
+                val in = new FileInputStream(file)
+                try {
+                    var read = in.read(buffer)
+                    while (read >= 0) { digest.update(buffer, 0, read); read = in.read(buffer) }
+                } finally {
+                    in.close()
+                }
+            }
+        }
+        digest.update(Version.toByte)
+        digest.update(configuration.getBytes(StandardCharsets.UTF_8))
+        inputs.foreach(input ⇒ update(input, "application:"+input.getName))
+        libraries.foreach(library ⇒ update(library, "library:"+library.getName))
+        digest.digest()
+    }
+
+    /** The key that identifies the method across runs and, hence, across projects. */
+    def key(cf: ClassFile, m: Method): String = {
+        cf.thisType.fqn+"."+m.name+m.descriptor.toJVMDescriptor
+    }
+}
+
+/**
+ * A read-only memory mapping of a file of arbitrary size. A single mapping is limited to 2 GB;
+ * hence, the file is mapped in chunks of `chunkSize` bytes. Values that span two chunks are read
+ * byte by byte.
+ */
+final class MappedFile(file: File, chunkSize: Int = MappedFile.ChunkSize) {
+
+    private[this] val chunks: Array[MappedByteBuffer] = {
+        val raf = new RandomAccessFile(file, "r")
+        try {
+            val channel = raf.getChannel
+            val length = raf.length()
+            val count = ((length + chunkSize - 1) / chunkSize).toInt
+            Array.tabulate(count) { i ⇒
+                val start = i.toLong * chunkSize
+                channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(chunkSize.toLong, length - start))
+            }
+        } finally {
+            raf.close()
+        }
+    }
+
+    val length: Long = chunks.iterator.map(_.limit().toLong).sum
+
+    def getByte(position: Long): Byte = chunks((position / chunkSize).toInt).get((position % chunkSize).toInt)
+
+    def getInt(position: Long): Int = {
+        val chunk = chunks((position / chunkSize).toInt)
+        val offset = (position % chunkSize).toInt
+        if (offset + 4 <= chunk.limit())
+            chunk.getInt(offset)
+        else
+            ((getByte(position) & 0xff) << 24) | ((getByte(position + 1) & 0xff) << 16) |
+                ((getByte(position + 2) & 0xff) << 8) | (getByte(position + 3) & 0xff)
+    }
+
+    def getLong(position: Long): Long = {
+        val chunk = chunks((position / chunkSize).toInt)
+        val offset = (position % chunkSize).toInt
+        if (offset + 8 <= chunk.limit())
+            chunk.getLong(offset)
+        else
+            (getInt(position).toLong << 32) | (getInt(position + 4) & 0xffffffffL)
+    }
+
+    /** Reads `bytes.length` bytes starting at the given position; thread-safe. */
+    def get(position: Long, bytes: Array[Byte]): Unit = {
+        var i = 0
+        while (i < bytes.length) {
+            val chunk = chunks(((position + i) / chunkSize).toInt).duplicate()
+            val offset = ((position + i) % chunkSize).toInt
+            val n = Math.min(bytes.length - i, chunk.limit() - offset)
+            chunk.position(offset)
+            chunk.get(bytes, i, n)
+            i += n
+        }
+    }
+}
+
+object MappedFile {
+
+    final val ChunkSize = 1 << 30
+}
+
+/**
+ * Counts the written bytes; in contrast to `DataOutputStream.size`, the count does not overflow
+ * at 2 GB.
+ */
+class CountingOutputStream(out: OutputStream) extends FilterOutputStream(out) {
+
+    var count: Long = 0L
+
+    override def write(b: Int): Unit = { out.write(b); count += 1 }
+
+    override def write(b: Array[Byte], off: Int, len: Int): Unit = { out.write(b, off, len); count += len }
+}
+
+/**
+ * A minimal growable int array.
+ */
+class IntArrayBuilder {
+
+    private[this] var values = new Array[Int](4)
+
+    private[this] var size = 0
+
+    def +=(value: Int): Unit = {
+        if (size == values.length) values = Arrays.copyOf(values, size * 2)
+        values(size) = value
+        size += 1
+    }
+
+    def result: Array[Int] = Arrays.copyOf(values, size)
+}
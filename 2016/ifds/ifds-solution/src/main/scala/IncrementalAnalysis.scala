@@ -0,0 +1,316 @@
+import java.io.File
+import java.nio.charset.StandardCharsets.UTF_8
+import java.nio.file.Files
+import java.security.MessageDigest
+import java.util.Base64
+
+import scala.collection.JavaConverters._
+
+import org.opalj.br.Category1ComputationalTypeCategory
+import org.opalj.br.Category2ComputationalTypeCategory
+import org.opalj.br.Method
+import org.opalj.br.ObjectType
+import org.opalj.br.analyses.SomeProject
+import org.opalj.br.instructions.INVOKESTATIC
+
+/**
+ * The results of the analysis of a method that are stored between runs; all maps are keyed by
+ * the fact `d1` the method was entered with.
+ *
+ * @param fingerprint See `IncrementalAnalysis.fingerprint`.
+ * @param summaries The facts at the method's exit statements (exit pc, fact).
+ * @param calleeEntries The callees (`IncrementalAnalysis.key`) and the facts they were entered with.
+ * @param findings The findings in the method (pc of the sink's invocation, source fact).
+ */
+case class MethodState(
+        fingerprint:   String,
+        summaries:     Map[Fact, Set[(Int, Fact)]]    = Map.empty,
+        calleeEntries: Map[Fact, Set[(String, Fact)]] = Map.empty,
+        findings:      Map[Fact, Set[(Int, Fact)]]    = Map.empty) {
+
+    def merge(that: MethodState): MethodState = {
+        def mergeMaps[T](m1: Map[Fact, Set[T]], m2: Map[Fact, Set[T]]): Map[Fact, Set[T]] = {
+            m2.foldLeft(m1) { case (m, (d1, values)) ⇒ m.updated(d1, m.getOrElse(d1, Set.empty) ++ values) }
+        }
+        MethodState(
+            fingerprint,
+            mergeMaps(summaries, that.summaries),
+            mergeMaps(calleeEntries, that.calleeEntries),
+            mergeMaps(findings, that.findings)
+        )
+    }
+}
+
+/**
+ * The state of a run of the [[IncrementalAnalysis]]; the methods are identified by their keys
+ * (see `IncrementalAnalysis.key`).
+ *
+ * File format (one entry per line, the values are separated by tabs):
+ * {{{
+ * M <method> <fingerprint>
+ * S <method> <d1> <exit pc> <fact at the exit>
+ * C <method> <d1> <callee> <fact the callee is entered with>
+ * F <method> <d1> <pc of the sink's invocation> <source fact>
+ * }}}
+ * The facts are encoded by [[FactEncoding]].
+ */
+case class AnalysisState(methods: Map[String, MethodState]) {
+
+    def save(file: File): Unit = {
+        import FactEncoding.encode
+        val lines = methods.iterator.flatMap {
+            case (m, state) ⇒
+                Iterator(s"M\t$m\t${state.fingerprint}") ++
+                    state.summaries.iterator.flatMap {
+                        case (d1, exits) ⇒ exits.iterator.map { case (pc, d2) ⇒ s"S\t$m\t${encode(d1)}\t$pc\t${encode(d2)}" }
+                    } ++
+                    state.calleeEntries.iterator.flatMap {
+                        case (d1, callees) ⇒ callees.iterator.map { case (callee, d2) ⇒ s"C\t$m\t${encode(d1)}\t$callee\t${encode(d2)}" }
+                    } ++
+                    state.findings.iterator.flatMap {
+                        case (d1, findings) ⇒ findings.iterator.map { case (pc, source) ⇒ s"F\t$m\t${encode(d1)}\t$pc\t${encode(source)}" }
+                    }
+        }
+        Files.write(file.toPath, lines.toIterable.asJava, UTF_8)
+    }
+}
+
+object AnalysisState {
+
+    /**
+     * Loads the state; `None` if the file does not exist. The entries of a method have to follow
+     * the method's fingerprint (`M` line), as written by `save`.
+     */
+    def load(file: File): Option[AnalysisState] = {
+        if (!file.exists())
+            return None;
+
+        import FactEncoding.decode
+        def add[T](map: Map[Fact, Set[T]], d1: Fact, value: T) = map.updated(d1, map.getOrElse(d1, Set.empty[T]) + value)
+
+        val methods = scala.collection.mutable.Map.empty[String, MethodState]
+        def stateOf(m: String): MethodState = {
+            methods.getOrElse(m, throw new IllegalArgumentException(s"no fingerprint for $m"))
+        }
+        Files.readAllLines(file.toPath, UTF_8).asScala.iterator.zipWithIndex.foreach {
+            case (line, index) ⇒
+                try {
+                    line.split('\t') match {
+                        case Array("M", m, fingerprint) ⇒
+                            methods(m) = MethodState(fingerprint)
+                        case Array("S", m, d1, pc, d2) ⇒
+                            val state = stateOf(m)
+                            methods(m) = state.copy(summaries = add(state.summaries, decode(d1), (pc.toInt, decode(d2))))
+                        case Array("C", m, d1, callee, d2) ⇒
+                            val state = stateOf(m)
+                            methods(m) = state.copy(calleeEntries = add(state.calleeEntries, decode(d1), (callee, decode(d2))))
+                        case Array("F", m, d1, pc, source) ⇒
+                            val state = stateOf(m)
+                            methods(m) = state.copy(findings = add(state.findings, decode(d1), (pc.toInt, decode(source))))
+                        case _ ⇒
+                            throw new IllegalArgumentException("unknown entry")
+                    }
+                } catch {
+                    case e: IllegalArgumentException ⇒
+                        throw new IllegalStateException(s"$file:${index + 1}: corrupt state (${e.getMessage}): $line", e)
+                }
+        }
+        Some(AnalysisState(methods.toMap))
+    }
+}
+
+/**
+ * Encodes facts as strings without tabs and line breaks, e.g., `R 1 [1:0,2]` is a register
+ * fact for register 1 with an operand stack of a category 1 value loaded from register 0 and
+ * a category 2 value.
+ */
+object FactEncoding {
+
+    private[this] def encode(stack: List[StackEntry]): String = {
+        stack.map { entry ⇒
+            val category = if (entry.ctc == Category2ComputationalTypeCategory) "2" else "1"
+            entry.associatedRegister.map(category+":"+_).getOrElse(category)
+        }.mkString("[", ",", "]")
+    }
+
+    private[this] def decodeStack(stack: String): List[StackEntry] = {
+        if (!stack.startsWith("[") || !stack.endsWith("]"))
+            throw new IllegalArgumentException(s"unknown operand stack: $stack")
+
+        stack.substring(1, stack.length - 1).split(',').iterator.filter(_.nonEmpty).map { entry ⇒
+            val ctc = if (entry.startsWith("2")) Category2ComputationalTypeCategory else Category1ComputationalTypeCategory
+            val register = entry.indexOf(':')
+            StackEntry(ctc, if (register < 0) None else Some(entry.substring(register + 1).toInt))
+        }.toList
+    }
+
+    def encode(fact: Fact): String = fact match {
+        case Zero                                          ⇒ "Z"
+        case OperandStackFact(index, stack)                ⇒ s"O $index ${encode(stack)}"
+        case RegisterFact(index, stack)                    ⇒ s"R $index ${encode(stack)}"
+        case FieldBasedFact(declaringClass, field, stack) ⇒ s"F ${declaringClass.fqn} $field ${encode(stack)}"
+    }
+
+    def decode(fact: String): Fact = fact.split(' ') match {
+        case Array("Z")                               ⇒ Zero
+        case Array("O", index, stack)                 ⇒ OperandStackFact(index.toInt, decodeStack(stack))
+        case Array("R", index, stack)                 ⇒ RegisterFact(index.toInt, decodeStack(stack))
+        case Array("F", declaringClass, field, stack) ⇒ FieldBasedFact(ObjectType(declaringClass), field, decodeStack(stack))
+        case _                                        ⇒ throw new IllegalArgumentException(s"unknown fact: $fact")
+    }
+}
+
+/**
+ * Runs the taint analysis incrementally: the results of the methods that are not affected by
+ * the changes since the previous run are taken from the previous run.
+ *
+ * A method is changed if its code or the methods called by its call sites changed; a method is
+ * affected if it (transitively) calls a changed method. The end summaries of all other methods
+ * only depend on unchanged code; hence, they are preseeded in the solver (see
+ * `DebuggableIFDSSolver.preseedSummaries`) and the solver does not analyze these methods again
+ * for the facts it analyzed them for before. The analysis then starts from the seeds as usual.
+ *
+ * The findings in a preseeded method are not reported by the solver; hence, the findings of
+ * each method are stored per fact `d1` the method was entered with. They are reported again if
+ * `d1` is propagated into the method in this run, or if the method is entered with `d1` by
+ * another preseeded method whose findings are reported again.
+ *
+ * The first run, i.e., the run without a state file, analyzes all methods.
+ */
+object IncrementalAnalysis {
+
+    /**
+     * @param solver The solver of this run; its problem's findings include the reused findings.
+     * @param changed The changed methods.
+     * @param affected The methods that are analyzed again, i.e., the changed methods and their
+     *        (transitive) callers.
+     * @param preseededSummaries The number of end summaries (method, `d1`) taken from the state.
+     */
+    case class Result(
+            solver:             DebuggableIFDSSolver,
+            changed:            Set[Method],
+            affected:           Set[Method],
+            preseededSummaries: Int) {
+
+        def changedMethods: Int = changed.size
+
+        def affectedMethods: Int = affected.size
+    }
+
+    /** The key of a method that identifies the method across runs (see `ICFGSnapshot.key`). */
+    def key(project: SomeProject, m: Method): String = ICFGSnapshot.key(project.classFile(m), m)
+
+    /**
+     * Hashes the method's code and the methods called by its call sites.
+     */
+    def fingerprint(icfg: OpalICFG, m: Method): String = {
+        val digest = MessageDigest.getInstance("SHA-256")
+        val code = m.body.get
+        code.foreach {
+            case (pc, instruction) ⇒
+                digest.update(s"$pc:$instruction;".getBytes(UTF_8))
+                val node = icfg.node(pc, m)
+                if (icfg.isCallStmt(node)) {
+                    val callees = icfg.getCalleesOfCallAt(node).asScala.map(key(icfg.project, _)).toList.sorted
+                    digest.update(callees.mkString("->", ",", ";").getBytes(UTF_8))
+                }
+        }
+        code.exceptionHandlers.foreach { handler ⇒ digest.update(handler.toString.getBytes(UTF_8)) }
+        Base64.getEncoder.encodeToString(digest.digest())
+    }
+
+    /**
+     * Solves the taint problem for the given seeds, reusing the results stored in the state file
+     * by the previous run; afterwards, the state file is replaced by the state of this run.
+     */
+    def run(
+        icfg:      OpalICFG,
+        seeds:     Iterable[MInstruction],
+        isSink:    INVOKESTATIC ⇒ Boolean,
+        stateFile: File,
+        findings:  FindingCollector     = new FindingCollector()): Result = {
+        val project = icfg.project
+        val methods = project.allMethodsWithBody.map(m ⇒ key(project, m) → m).toMap
+        val fingerprints = methods.map { case (k, m) ⇒ k → fingerprint(icfg, m) }
+        val previousMethods = AnalysisState.load(stateFile).map(_.methods).getOrElse(Map.empty)
+
+        val changed = methods.collect {
+            case (k, m) if !previousMethods.get(k).exists(_.fingerprint == fingerprints(k)) ⇒ m
+        }
+        val affected = transitiveCallers(icfg, changed)
+
+        val problem = new TabulationProblem(icfg, seeds, isSink, findings)
+        val solver = new DebuggableIFDSSolver(problem)
+        val preseeded = methods.collect {
+            case (k, m) if !affected.contains(m) && previousMethods.contains(k) ⇒
+                solver.preseedSummaries(m, previousMethods(k).summaries)
+                k → previousMethods(k)
+        }
+        solver.solve()
+
+        // report the findings of the preseeded summaries that are used in this run
+        var used = preseeded.iterator.flatMap {
+            case (k, state) ⇒ state.summaries.keysIterator.filter(solver.isCalledWith(methods(k), _)).map((k, _))
+        }.toList
+        val visited = scala.collection.mutable.Set.empty[(String, Fact)] ++ used
+        while (used.nonEmpty) {
+            val (k, d1) = used.head
+            used = used.tail
+            val state = preseeded(k)
+            state.findings.getOrElse(d1, Set.empty).foreach {
+                case (pc, source) ⇒ findings.report(Finding(methods(k), pc, problem.factTable.intern(source)))
+            }
+            state.calleeEntries.getOrElse(d1, Set.empty).foreach { callee ⇒
+                if (preseeded.contains(callee._1) && visited.add(callee)) used ::= callee
+            }
+        }
+
+        AnalysisState(newState(solver, methods, fingerprints, preseeded)).save(stateFile)
+        Result(solver, changed.toSet, affected, preseeded.valuesIterator.map(_.summaries.size).sum)
+    }
+
+    private[this] def transitiveCallers(icfg: OpalICFG, methods: Iterable[Method]): Set[Method] = {
+        val visited = scala.collection.mutable.Set.empty[Method] ++ methods
+        var worklist = methods.toList
+        while (worklist.nonEmpty) {
+            val m = worklist.head
+            worklist = worklist.tail
+            icfg.getCallersOf(m).asScala.foreach { callSite ⇒
+                if (visited.add(callSite.m)) worklist ::= callSite.m
+            }
+        }
+        visited.toSet
+    }
+
+    private[this] def newState(
+        solver:       DebuggableIFDSSolver,
+        methods:      Map[String, Method],
+        fingerprints: Map[String, String],
+        preseeded:    Map[String, MethodState]): Map[String, MethodState] = {
+        val project = solver.tabulationProblem.interproceduralCFG().project
+        val icfg = solver.tabulationProblem.interproceduralCFG()
+
+        val calleeEntries = solver.calleeEntries().collect {
+            case (caller, d1, callee, d2) if d1 ne Zero ⇒ (caller, d1) → (key(project, callee), d2)
+        }.toList.groupBy(_._1).mapValues(_.map(_._2).toSet)
+        val findings = solver.tabulationProblem.findings.results.toList.flatMap {
+            case Finding(m, pc, source) ⇒
+                solver.sourceFacts(icfg.node(pc, m), source).collect { case d1 if d1 ne Zero ⇒ (m, d1) → (pc, source) }
+        }.groupBy(_._1).mapValues(_.map(_._2).toSet)
+
+        methods.map {
+            case (k, m) ⇒
+                val entryFacts = solver.entryFacts(m)
+                def byEntryFact[T](values: Map[(Method, Fact), Set[T]]): Map[Fact, Set[T]] = {
+                    entryFacts.iterator.map(d1 ⇒ d1 → values.getOrElse((m, d1), Set.empty[T])).filter(_._2.nonEmpty).toMap
+                }
+                val state = MethodState(
+                    fingerprints(k),
+                    entryFacts.iterator.map(d1 ⇒ d1 → solver.endSummaries(m, d1)).toMap,
+                    byEntryFact(calleeEntries),
+                    byEntryFact(findings)
+                )
+                k → preseeded.get(k).map(_.copy(fingerprint = fingerprints(k)).merge(state)).getOrElse(state)
+        }
+    }
+}
@@ -0,0 +1,82 @@
+import java.util.Arrays
+import java.util.concurrent.ConcurrentHashMap
+
+import org.opalj.br.Method
+import org.opalj.br.instructions.Instruction
+
+/**
+ * A node of the ICFG, i.e., the instruction with the given pc of a method.
+ *
+ * Nodes are interned by the ICFG's [[MInstruction.NodeTable]]: for each program point there is
+ * exactly one instance, which is returned by `icfg.node(pc, m)`. Hence, two nodes of the same
+ * ICFG are equal iff they are identical and the hash code is the node's id. The ids are dense;
+ * the nodes of a method get the consecutive ids `firstId + pc` (`0 <= pc < code size`), where
+ * `firstId` is assigned when a node of the method is requested for the first time.
+ */
+final class MInstruction private (val i: Instruction, val pc: Int, val m: Method, val id: Int) {
+
+    override def hashCode: Int = id
+
+    override def toString() = s"MInstruction($i,$pc,$m)"
+}
+
+object MInstruction {
+
+    def unapply(n: MInstruction): Some[(Instruction, Int, Method)] = Some((n.i, n.pc, n.m))
+
+    /**
+     * The nodes of an ICFG. The table is owned by the ICFG; hence, the nodes (and the methods
+     * they reference) are released together with the ICFG.
+     */
+    final class NodeTable {
+
+        private[this] val nodesByMethod = new ConcurrentHashMap[Method, Array[MInstruction]]
+
+        @volatile private[this] var nodesById = new Array[MInstruction](1024)
+
+        private[this] var nextId = 0
+
+        /**
+         * The nodes of the given method indexed by pc; the entries of pcs that do not denote an
+         * instruction are `null`.
+         */
+        def nodesOf(m: Method): Array[MInstruction] = {
+            val nodes = nodesByMethod.get(m)
+            if (nodes ne null) nodes else register(m)
+        }
+
+        /** The node with the given id. */
+        def byId(id: Int): MInstruction = nodesById(id)
+
+        /** The number of ids that have been assigned so far. */
+        def numberOfIds: Int = synchronized { nextId }
+
+        private[this] def register(m: Method): Array[MInstruction] = synchronized {
+            val registeredNodes = nodesByMethod.get(m)
+            if (registeredNodes ne null)
+                return registeredNodes;
+
+            val instructions = m.body.get.instructions
+            val firstId = nextId
+            val nodes = new Array[MInstruction](instructions.length)
+            var pc = 0
+            while (pc < instructions.length) {
+                val instr = instructions(pc)
+                if (instr ne null) nodes(pc) = new MInstruction(instr, pc, m, firstId + pc)
+                pc += 1
+            }
+
+            val newNextId = firstId + instructions.length
+            val byId =
+                if (newNextId <= nodesById.length)
+                    nodesById
+                else
+                    Arrays.copyOf(nodesById, Math.max(newNextId, nodesById.length * 2))
+            System.arraycopy(nodes, 0, byId, firstId, nodes.length)
+            nextId = newNextId
+            nodesById = byId
+            nodesByMethod.put(m, nodes)
+            nodes
+        }
+    }
+}
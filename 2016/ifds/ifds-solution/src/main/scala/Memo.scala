@@ -0,0 +1,43 @@
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * A thread-safe memo table that counts how often a requested value was already available.
+ *
+ * If two threads request the same missing key concurrently, both compute the value, but only
+ * the first value that is stored is returned. Hence, the computation must not have side effects.
+ */
+class Memo[K, V <: AnyRef](val name: String) {
+
+    private[this] val values = new ConcurrentHashMap[K, V]
+
+    private[this] val hits = new AtomicLong
+
+    private[this] val misses = new AtomicLong
+
+    def apply(key: K)(compute: ⇒ V): V = {
+        val value = values.get(key)
+        if (value ne null) {
+            hits.incrementAndGet()
+            value
+        } else {
+            misses.incrementAndGet()
+            val newValue = compute
+            val otherValue = values.putIfAbsent(key, newValue)
+            if (otherValue ne null) otherValue else newValue
+        }
+    }
+
+    def size: Int = values.size()
+
+    def statistics: MemoStatistics = MemoStatistics(name, hits.get, misses.get, values.size())
+}
+
+case class MemoStatistics(name: String, hits: Long, misses: Long, size: Int) {
+
+    def hitRate: Double = if (hits + misses == 0) 0.0d else hits.toDouble / (hits + misses)
+
+    override def toString() = {
+        f"$name(hits=$hits, misses=$misses, size=$size, hit rate=${hitRate * 100}%.1f%%)"
+    }
+}
@@ -0,0 +1,129 @@
+import java.util.Arrays
+import java.util.Collections
+import java.util.{ List ⇒ JList }
+
+import org.opalj.br.Method
+
+/**
+ * A compact, immutable snapshot of a method's intra-procedural control flow as computed by the
+ * abstract interpretation.
+ *
+ * The successors and predecessors are stored in compressed sparse row form: the successors of
+ * the instruction with the program counter `pc` are `succPCs(succOffsets(pc) until succOffsets(pc + 1))`;
+ * the same holds for the predecessors. Additionally, the lists of successor and predecessor nodes
+ * are created once per instruction, hence, querying them does not allocate.
+ */
+final class MethodCFG private (
+        val method: Method,
+        private[this] val succOffsets: Array[Int],
+        private[this] val succPCs: Array[Int],
+        private[this] val predOffsets: Array[Int],
+        private[this] val predPCs: Array[Int],
+        private[this] val nodes: Array[MInstruction]) {
+
+    private[this] val succNodes: Array[JList[MInstruction]] = nodeLists(succOffsets, succPCs)
+
+    private[this] val predNodes: Array[JList[MInstruction]] = nodeLists(predOffsets, predPCs)
+
+    private[this] def nodeLists(offsets: Array[Int], pcs: Array[Int]): Array[JList[MInstruction]] = {
+        val lists = new Array[JList[MInstruction]](nodes.length)
+        var pc = 0
+        while (pc < nodes.length) {
+            val from = offsets(pc)
+            val to = offsets(pc + 1)
+            lists(pc) = (to - from) match {
+                case 0 ⇒ Collections.emptyList[MInstruction]()
+                case 1 ⇒ Collections.singletonList(nodes(pcs(from)))
+                case n ⇒
+                    val targets = new Array[MInstruction](n)
+                    var i = 0
+                    while (i < n) { targets(i) = nodes(pcs(from + i)); i += 1 }
+                    Collections.unmodifiableList(Arrays.asList(targets: _*))
+            }
+            pc += 1
+        }
+        lists
+    }
+
+    def codeSize: Int = nodes.length
+
+    /** The node of the instruction with the given pc; `null` if the pc does not denote an instruction. */
+    def node(pc: Int): MInstruction = nodes(pc)
+
+    def successors(pc: Int): JList[MInstruction] = succNodes(pc)
+
+    def predecessors(pc: Int): JList[MInstruction] = predNodes(pc)
+
+    def successorsCount(pc: Int): Int = succOffsets(pc + 1) - succOffsets(pc)
+
+    def predecessorsCount(pc: Int): Int = predOffsets(pc + 1) - predOffsets(pc)
+
+    def successorPC(pc: Int, index: Int): Int = succPCs(succOffsets(pc) + index)
+
+    def predecessorPC(pc: Int, index: Int): Int = predPCs(predOffsets(pc) + index)
+}
+
+object MethodCFG {
+
+    /**
+     * Creates the snapshot from its compressed sparse row representation (see [[MethodCFG]]).
+     */
+    def apply(
+        method:      Method,
+        nodeTable:   MInstruction.NodeTable,
+        succOffsets: Array[Int],
+        succPCs:     Array[Int],
+        predOffsets: Array[Int],
+        predPCs:     Array[Int]): MethodCFG = {
+        new MethodCFG(method, succOffsets, succPCs, predOffsets, predPCs, nodeTable.nodesOf(method))
+    }
+
+    /**
+     * Creates the snapshot of the control flow recorded by the abstract interpretation of a method.
+     * Instructions that were not reached by the abstract interpretation have neither successors
+     * nor predecessors.
+     */
+    def apply(method: Method, aiResult: AIResults.MethodAIResult, nodeTable: MInstruction.NodeTable): MethodCFG = {
+        val codeSize = method.body.get.instructions.length
+        val domain = aiResult.domain
+        val evaluated = aiResult.operandsArray
+
+        val nodes = nodeTable.nodesOf(method)
+        val succOffsets = new Array[Int](codeSize + 1)
+        val predOffsets = new Array[Int](codeSize + 1)
+        var succPCs = new Array[Int](codeSize)
+        var predPCs = new Array[Int](codeSize)
+        var succCount = 0
+        var predCount = 0
+
+        var pc = 0
+        while (pc < codeSize) {
+            succOffsets(pc) = succCount
+            predOffsets(pc) = predCount
+            if ((nodes(pc) ne null) && (evaluated(pc) ne null)) {
+                domain.successorsOf(pc, regularSuccessorOnly = false).foreach { succPC ⇒
+                    if (succCount == succPCs.length) succPCs = Arrays.copyOf(succPCs, succCount * 2)
+                    succPCs(succCount) = succPC
+                    succCount += 1
+                }
+                if (pc != 0) {
+                    domain.predecessorsOf(pc).foreach { predPC ⇒
+                        if (predCount == predPCs.length) predPCs = Arrays.copyOf(predPCs, predCount * 2)
+                        predPCs(predCount) = predPC
+                        predCount += 1
+                    }
+                }
+            }
+            pc += 1
+        }
+        succOffsets(codeSize) = succCount
+        predOffsets(codeSize) = predCount
+
+        new MethodCFG(
+            method,
+            succOffsets, Arrays.copyOf(succPCs, succCount),
+            predOffsets, Arrays.copyOf(predPCs, predCount),
+            nodes
+        )
+    }
+}
@@ -10,6 +10,7 @@ import java.util.{ List ⇒ JList }
 import java.util.{ Collection ⇒ JCollection }
 import java.util.{ Set ⇒ JSet }
 import org.opalj.ai.analyses.cg.CallGraph
+import org.opalj.br.analyses.SomeProject
 import java.util.Collections
 import org.opalj.br.instructions.INVOKESPECIAL
 import scala.collection.JavaConverters._
@@ -34,9 +35,47 @@ import org.opalj.ai.BaseAI
 import org.opalj.ai.domain.RecordDefUse
 import org.opalj.ai.domain.l1.DefaultDomainWithCFGAndDefUse
 
-case class MInstruction(i: Instruction, pc: Int, m: Method)
+/**
+ * @param aiResults Provides the abstract interpretation results from which the intra-procedural
+ *        control flow is derived; by default, all methods are analyzed upfront.
+ * @param snapshot If defined, the control flow and the call graph edges are taken from the
+ *        snapshot; the abstract interpretation is only used for methods not in the snapshot.
+ */
+class OpalICFG private (
+        val project:     SomeProject,
+        val aiResults:   AIResults,
+        createCallIndex: MInstruction.NodeTable ⇒ CallIndex,
+        snapshot:        Option[ICFGSnapshot]) extends InterproceduralCFG[MInstruction, Method] {
 
-class OpalICFG(cg: CallGraph) extends InterproceduralCFG[MInstruction, Method] {
+    def this(cg: CallGraph, aiResults: AIResults) = this(cg.project, aiResults, CallIndex(cg, _), None)
+
+    def this(cg: CallGraph) = this(cg, new EagerAIResults(cg.project))
+
+    /** The (interned) nodes of this ICFG. */
+    val nodes = new MInstruction.NodeTable
+
+    /** The node of the instruction with the given pc. */
+    def node(pc: Int, m: Method): MInstruction = nodes.nodesOf(m)(pc)
+
+    private[this] val methodCFGs = new ConcurrentHashMap[Method, MethodCFG]
+
+    private[this] val createMethodCFG = new java.util.function.Function[Method, MethodCFG] {
+        def apply(m: Method): MethodCFG = {
+            snapshot.flatMap(_.cfg(m, nodes)).getOrElse(MethodCFG(m, aiResults(m), nodes))
+        }
+    }
+
+    /**
+     * Returns the snapshot of the method's control flow; the snapshot is created when the
+     * method's control flow is queried for the first time.
+     */
+    def cfg(m: Method): MethodCFG = {
+        val cfg = methodCFGs.get(m)
+        if (cfg ne null)
+            cfg
+        else
+            methodCFGs.computeIfAbsent(m, createMethodCFG)
+    }
 
     //    val cfgs: ConcurrentHashMap[Method, CFG] = {
     //        val cfgs = new ConcurrentHashMap[Method, CFG]
@@ -47,17 +86,6 @@ class OpalICFG(cg: CallGraph) extends InterproceduralCFG[MInstruction, Method] {
     //        cfgs
     //    }
 
-    val aiCFGs: ConcurrentHashMap[Method, AIResult { val domain: Domain with RecordCFG with RecordDefUse }] = {
-        val aiCFGs = new ConcurrentHashMap[Method, AIResult { val domain: Domain with RecordCFG with RecordDefUse }]
-        cg.project.parForeachMethodWithBody() { methodInfo ⇒
-            val c = methodInfo.classFile
-            val m = methodInfo.method
-            val aiResult = BaseAI(c, m, new DefaultDomainWithCFGAndDefUse(cg.project, c, m))
-            aiCFGs.put(m, aiResult)
-        }
-        aiCFGs
-    }
-
     def getMethodOf(n: MInstruction): Method = {
         n.m
     }
@@ -82,12 +110,7 @@ class OpalICFG(cg: CallGraph) extends InterproceduralCFG[MInstruction, Method] {
     //    }
 
     def getPredsOf(instr: MInstruction): JList[MInstruction] = {
-        if (instr.pc == 0)
-            return Collections.emptyList()
-
-        aiCFGs.get(instr.m).domain.predecessorsOf(instr.pc).mapToList { predPC ⇒
-            MInstruction(instr.m.body.get.instructions(predPC), predPC, instr.m)
-        }.asJava
+        cfg(instr.m).predecessors(instr.pc)
     }
 
     //    def getSuccsOf(instr: MInstruction): JList[MInstruction] = {
@@ -98,34 +121,32 @@ class OpalICFG(cg: CallGraph) extends InterproceduralCFG[MInstruction, Method] {
     //    }
 
     def getSuccsOf(instr: MInstruction): JList[MInstruction] = {
-        val pcs = aiCFGs.get(instr.m).domain.successorsOf(instr.pc, regularSuccessorOnly = false)
-        pcs.map { succPc ⇒
-            MInstruction(instr.m.body.get.instructions(succPc), succPc, instr.m)
-        }.toList.asJava
+        cfg(instr.m).successors(instr.pc)
     }
 
+    /**
+     * The index of the call graph's edges; built when the callers or callees are queried for
+     * the first time.
+     */
+    lazy val callIndex: CallIndex = createCallIndex(nodes)
+
     def getCalleesOfCallAt(callInstr: MInstruction): JCollection[Method] = {
-        cg.calls(callInstr.m, callInstr.pc).toList.asJava
+        callIndex.calleesOf(callInstr)
     }
 
     def getCallersOf(m: Method): JCollection[MInstruction] = {
-        val res = cg.calledBy(m).flatMap { e ⇒
-            val (m, pcs) = e
-            val instr = m.body.get.instructions
-            pcs.map { pc ⇒ MInstruction(instr(pc), pc, m) }
-        }
-        res.toList.asJava
+        callIndex.callersOf(m)
     }
 
     def getCallsFromWithin(m: Method): JSet[MInstruction] = {
         val res = m.body.get.collectWithIndex {
-            case (pc, i: INVOKESPECIAL) ⇒ MInstruction(i, pc, m)
+            case (pc, i: INVOKESPECIAL) ⇒ node(pc, m)
         }
         res.toSet.asJava
     }
 
     def getStartPointsOf(m: Method): JCollection[MInstruction] = {
-        Collections.singletonList(MInstruction(m.body.get.instructions(0), 0, m))
+        Collections.singletonList(node(0, m))
     }
 
     def getReturnSitesOfCallAt(callInstr: MInstruction): JCollection[MInstruction] = {
@@ -137,7 +158,7 @@ class OpalICFG(cg: CallGraph) extends InterproceduralCFG[MInstruction, Method] {
     }
 
     def isExitStmt(stmt: MInstruction): Boolean = {
-        getSuccsOf(stmt).isEmpty()
+        cfg(stmt.m).successorsCount(stmt.pc) == 0
     }
 
     def isStartPoint(stmt: MInstruction): Boolean = {
@@ -146,11 +167,11 @@ class OpalICFG(cg: CallGraph) extends InterproceduralCFG[MInstruction, Method] {
 
     def allNonCallStartNodes(): JSet[MInstruction] = {
         val res = new ConcurrentLinkedQueue[MInstruction]
-        cg.project.parForeachMethodWithBody() { mi ⇒
+        project.parForeachMethodWithBody() { mi ⇒
             val m = mi.method
             m.body.get.iterate { (pc, instr) ⇒
                 if (pc != 0 && !(instr.isInstanceOf[MethodInvocationInstruction]))
-                    res.add(MInstruction(instr, pc, m))
+                    res.add(node(pc, m))
             }
         }
         new HashSet(res)
@@ -160,4 +181,28 @@ class OpalICFG(cg: CallGraph) extends InterproceduralCFG[MInstruction, Method] {
 
     def isBranchTarget(stmt: MInstruction, succ: MInstruction): Boolean = ???
 
-}
\ No newline at end of file
+}
+
+object OpalICFG {
+
+    /**
+     * Creates an ICFG that analyzes a method only when its control flow is queried for the first
+     * time and that keeps at most `aiCacheSize` analysis results.
+     */
+    def withLazyAI(cg: CallGraph, aiCacheSize: Int): OpalICFG = {
+        new OpalICFG(cg, new LazyAIResults(cg.project, aiCacheSize))
+    }
+
+    /**
+     * Creates an ICFG that takes the control flow and the call graph edges from the given
+     * snapshot; see [[ICFGSnapshot.loadOrCreate]].
+     */
+    def fromSnapshot(project: SomeProject, snapshot: ICFGSnapshot, aiCacheSize: Int): OpalICFG = {
+        new OpalICFG(
+            project,
+            new LazyAIResults(project, aiCacheSize),
+            snapshot.callIndex(project, _),
+            Some(snapshot)
+        )
+    }
+}
@@ -0,0 +1,37 @@
+import java.util.{ Map ⇒ JMap }
+import java.util.{ Set ⇒ JSet }
+
+import heros.IFDSTabulationProblem
+import org.opalj.br.Method
+
+/**
+ * The metrics of an IFDS solver run (see [[AbstractSolverMetrics]]); a callee entry is encoded
+ * as a single `Long` of the ids of the callee's start point and the interned fact.
+ */
+class SolverMetrics(countSummaryReuses: Boolean = false)
+        extends AbstractSolverMetrics[java.lang.Long](countSummaryReuses) {
+
+    protected[this] def calleeEntry(problem: TabulationProblem, callee: Method): Fact ⇒ java.lang.Long = {
+        val factTable = problem.factTable
+        val startNodeId = problem.interproceduralCFG().node(0, callee).id.toLong << 32
+        fact ⇒ startNodeId | factTable.id(fact)
+    }
+
+    /**
+     * Wraps the flow functions of the given problem such that their applications are recorded.
+     */
+    def instrument(problem: TabulationProblem): IFDSTabulationProblem[MInstruction, Fact, Method, OpalICFG] = {
+        val instrumentedFlowFunctions = instrumentFlowFunctions(problem)
+        new IFDSTabulationProblem[MInstruction, Fact, Method, OpalICFG] {
+            def flowFunctions() = instrumentedFlowFunctions
+            def initialSeeds(): JMap[MInstruction, JSet[Fact]] = problem.initialSeeds()
+            def interproceduralCFG(): OpalICFG = problem.interproceduralCFG()
+            def zeroValue(): Fact = problem.zeroValue()
+            def followReturnsPastSeeds(): Boolean = problem.followReturnsPastSeeds()
+            def autoAddZero(): Boolean = problem.autoAddZero()
+            def numThreads(): Int = problem.numThreads()
+            def computeValues(): Boolean = problem.computeValues()
+            def recordEdges(): Boolean = problem.recordEdges()
+        }
+    }
+}
@@ -7,6 +7,7 @@ import heros.DefaultSeeds
 import scala.collection.JavaConverters._
 import heros.FlowFunction
 import java.util.HashSet
+import java.util.BitSet
 import org.opalj.br.instructions.INVOKESTATIC
 import org.opalj.br.instructions.Instruction
 import org.opalj.br.instructions.StoreLocalVariableInstruction
@@ -47,7 +48,8 @@ import org.opalj.br.instructions.DUP_X1
 class TabulationProblem(
     icfg: OpalICFG,
     seeds: Iterable[MInstruction],
-    isSink: INVOKESTATIC ⇒ Boolean) extends IFDSTabulationProblem[MInstruction, Fact, Method, OpalICFG] {
+    isSink: INVOKESTATIC ⇒ Boolean,
+    val findings: FindingCollector = new FindingCollector()) extends IFDSTabulationProblem[MInstruction, Fact, Method, OpalICFG] {
 
   implicit def ctToStackEntry(tpe: Type): StackEntry = {
     StackEntry(tpe.computationalType.category)
@@ -63,15 +65,39 @@ class TabulationProblem(
 
   def computeValues(): Boolean = false
 
+  /** The facts of this problem; the flow functions return sets of interned facts. */
+  val factTable = new FactTable
+
+  private[this] val normalFlowFunctions = new Memo[java.lang.Long, FlowFunction[Fact]]("normal flow functions")
+
+  private[this] val callFlowFunctions = new Memo[(MInstruction, Method), FlowFunction[Fact]]("call flow functions")
+
+  /** The pcs of a method's exception handlers. */
+  private[this] val handlerPCs = new Memo[Method, BitSet]("exception handler pcs")
+
+  private[this] val parameterRegisters = new Memo[Method, IndexedSeq[Int]]("parameter registers")
+
+  def isExceptionHandler(instr: MInstruction): Boolean = {
+    handlerPCs(instr.m) {
+      val pcs = new BitSet
+      instr.m.body.get.exceptionHandlers.foreach { eh ⇒ pcs.set(eh.handlerPC) }
+      pcs
+    }.get(instr.pc)
+  }
+
+  /**
+   * The statistics of the tables that memoize the flow functions and the information derived
+   * from the methods.
+   */
+  def cacheStatistics: Seq[MemoStatistics] = {
+    Seq(normalFlowFunctions, callFlowFunctions, handlerPCs, parameterRegisters).map(_.statistics)
+  }
+
   def flowFunctions() = new FlowFunctions[MInstruction, Fact, Method] {
 
-    def kill() = new HashSet[Fact]
+    def kill(): JSet[Fact] = FactSet.empty
 
-    def gen(facts: Fact*): JSet[Fact] = {
-      val res = new HashSet[Fact]
-      facts.foreach { fact ⇒ res.add(fact) }
-      res
-    }
+    def gen(facts: Fact*): JSet[Fact] = FactSet(factTable, facts: _*)
 
     /**
      * Generic handling of the effect an instruction has on the operand stack.
@@ -113,6 +139,10 @@ class TabulationProblem(
     }
 
     def getNormalFlowFunction(curr: MInstruction, succ: MInstruction) =
+      normalFlowFunctions((curr.id.toLong << 32) | succ.id) { createNormalFlowFunction(curr, succ) }
+
+    def createNormalFlowFunction(curr: MInstruction, succ: MInstruction) = {
+      val isExceptionHandler = TabulationProblem.this.isExceptionHandler(curr)
       FlowFunction { fact ⇒
 
         def processNonExceptionalFlow(fact: Fact): JSet[Fact] = {
@@ -165,7 +195,6 @@ class TabulationProblem(
           }
         }
 
-        val isExceptionHandler = curr.m.body.get.exceptionHandlers.exists { x ⇒ x.handlerPC == curr.pc }
         if (isExceptionHandler) {
           // an exception has been thrown and is handled at the current instruction:
           // - whatever was on the operand stack has been removed
@@ -178,13 +207,17 @@ class TabulationProblem(
         } else
           processNonExceptionalFlow(fact)
       }
+    }
 
     def getCallFlowFunction(callSite: MInstruction, calledMethod: Method) =
+      callFlowFunctions((callSite, calledMethod)) { createCallFlowFunction(callSite, calledMethod) }
+
+    def createCallFlowFunction(callSite: MInstruction, calledMethod: Method) =
       FlowFunction { fact ⇒
         callSite.i match {
           case i: INVOKESTATIC if isSink(i) ⇒ fact match {
             case f @ OperandStackFact(0, _) ⇒
-              println("reached sink"); kill()
+              findings.report(Finding(callSite.m, callSite.pc, f)); kill()
             case _ ⇒ kill()
           }
 
@@ -209,7 +242,10 @@ class TabulationProblem(
      * p2=register 3, p1=register 1, receiver=register 0
      * Accordingly, this function returns List(3,1,0).
      */
-    def operandStackIndexToRegisterIndex(calledMethod: Method): Seq[Int] = {
+    def operandStackIndexToRegisterIndex(calledMethod: Method): IndexedSeq[Int] =
+      parameterRegisters(calledMethod) { computeOperandStackIndexToRegisterIndex(calledMethod).toIndexedSeq }
+
+    def computeOperandStackIndexToRegisterIndex(calledMethod: Method): Seq[Int] = {
       val params = calledMethod.parameterTypes.map[Int, Seq[Int]](x ⇒ x.computationalType.operandSize).toList
       def f(sum: Int, list: List[Int], result: List[Int]): List[Int] = {
         if (list.isEmpty)
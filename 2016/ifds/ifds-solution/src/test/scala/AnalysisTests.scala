@@ -80,7 +80,7 @@ class AnalysisTests extends FunSpec with Matchers {
 
     def runAnalysis(method: Method): DebuggableIFDSSolver = {
         val seeds = method.body.get.collectWithIndex {
-            case (pc, i: INVOKESTATIC) if isSource(i) ⇒ MInstruction(i, pc, method)
+            case (pc, i: INVOKESTATIC) if isSource(i) ⇒ icfg.node(pc, method)
         }
 
         val solver = new DebuggableIFDSSolver(new TabulationProblem(icfg, seeds, isSink))
@@ -115,7 +115,7 @@ class AnalysisTests extends FunSpec with Matchers {
                 val solver = runAnalysis(method)
                 theProject.allMethodsWithBody.filter(_.body.isDefined).flatMap { method ⇒
                     method.body.get.associateWithIndex().flatMap {
-                        case (pc, instr) ⇒ solver.getPathEdgesByTarget(MInstruction(instr, pc, method))
+                        case (pc, instr) ⇒ solver.getPathEdgesByTarget(icfg.node(pc, method))
                     }
                 }
             }
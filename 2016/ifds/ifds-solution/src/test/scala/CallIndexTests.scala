@@ -0,0 +1,76 @@
+import java.io.File
+
+import scala.collection.JavaConverters._
+
+import org.scalatest.FunSpec
+import org.scalatest.Matchers
+import com.typesafe.config.ConfigFactory
+import org.opalj.AnalysisMode
+import org.opalj.ai.analyses.cg.ComputedCallGraph
+import org.opalj.br.analyses.Project
+import org.opalj.fpcf.analysis.cg.cha.CHACallGraphKey
+import org.opalj.log.ConsoleOPALLogger
+import org.opalj.log.DefaultLogContext
+import org.opalj.log.OPALLogger
+
+class CallIndexTests extends FunSpec with Matchers {
+
+    val analysisModeConfig = ConfigFactory.parseString(s"${AnalysisMode.ConfigKey} = library with open packages assumption")
+    val logContext = new DefaultLogContext
+    OPALLogger.register(logContext, new ConsoleOPALLogger)
+    val theProject = Project(
+        new File("../testcases/target/scala-2.10/test-classes"),
+        logContext,
+        analysisModeConfig.withFallback(ConfigFactory.load())
+    )
+
+    val ComputedCallGraph(callGraph, _, _) = theProject.get(CHACallGraphKey)
+
+    val nodeTable = new MInstruction.NodeTable
+    val callIndex = CallIndex(callGraph, nodeTable)
+
+    describe("the call index") {
+
+        it("should return the callees of each call site") {
+            for {
+                m ← theProject.allMethodsWithBody
+                (pc, callees) ← callGraph.calls(m)
+            } {
+                callIndex.calleesOf(nodeTable.nodesOf(m)(pc)).asScala.toSet should be(callees.toSet)
+            }
+        }
+
+        it("should return the call sites that call a method") {
+            for (m ← theProject.allMethodsWithBody) {
+                val expectedCallers = callGraph.calledBy(m).toSeq.flatMap {
+                    case (caller, pcs) ⇒ pcs.mapToList(pc ⇒ nodeTable.nodesOf(caller)(pc))
+                }
+                callIndex.callersOf(m).asScala.toSet should be(expectedCallers.toSet)
+            }
+        }
+
+        it("should return no callees for instructions that are not call sites") {
+            for {
+                m ← theProject.allMethodsWithBody
+                node ← nodeTable.nodesOf(m)
+                if (node ne null) && !callGraph.calls(m).contains(node.pc)
+            } {
+                callIndex.calleesOf(node) should be('empty)
+            }
+        }
+
+        it("should count each call edge once") {
+            val edges = theProject.allMethodsWithBody.iterator.map(callGraph.calls(_).valuesIterator.map(_.size).sum).sum
+            callIndex.statistics.callEdges should be(edges)
+        }
+    }
+
+    describe("a node table") {
+
+        it("should intern the nodes of a method") {
+            val m = theProject.allMethodsWithBody.head
+            nodeTable.nodesOf(m)(0) should be theSameInstanceAs nodeTable.nodesOf(m)(0)
+            nodeTable.byId(nodeTable.nodesOf(m)(0).id) should be theSameInstanceAs nodeTable.nodesOf(m)(0)
+        }
+    }
+}
@@ -0,0 +1,78 @@
+import scala.collection.JavaConverters._
+
+import org.scalatest.FunSpec
+import org.scalatest.Matchers
+import org.opalj.br.Category1ComputationalTypeCategory
+import org.opalj.br.ObjectType
+
+class FactSetTests extends FunSpec with Matchers {
+
+    val stack = List(StackEntry(Category1ComputationalTypeCategory, 1))
+
+    describe("a fact table") {
+
+        it("should assign the id 0 to Zero") {
+            new FactTable().id(Zero) should be(0)
+        }
+
+        it("should return the same instance and id for equal facts") {
+            val table = new FactTable
+            val fact = table.intern(RegisterFact(1, stack))
+            table.intern(RegisterFact(1, stack)) should be theSameInstanceAs fact
+            table.id(RegisterFact(1, stack)) should be(table.id(fact))
+            table.size should be(2)
+        }
+
+        it("should number the facts of different tables independently") {
+            val table1 = new FactTable
+            val table2 = new FactTable
+            table1.id(OperandStackFact(0, Nil))
+            table2.id(RegisterFact(0, Nil)) should be(1)
+            table2.lookup(OperandStackFact(0, Nil)) should be(-1)
+        }
+
+        it("should count the facts per class") {
+            val table = new FactTable
+            table.id(RegisterFact(0, Nil))
+            table.id(RegisterFact(1, Nil))
+            table.id(FieldBasedFact(ObjectType("tests/A"), "f", Nil))
+            table.countsByClass should be(Map("Zero$" → 1, "RegisterFact" → 2, "FieldBasedFact" → 1))
+        }
+    }
+
+    describe("a fact set") {
+
+        it("should contain each generated fact once") {
+            val table = new FactTable
+            val set = FactSet(table, RegisterFact(1, Nil), OperandStackFact(0, Nil), RegisterFact(1, Nil))
+            set.size should be(2)
+            set.asScala.toSet should be(Set(RegisterFact(1, Nil), OperandStackFact(0, Nil)))
+            set.contains(RegisterFact(1, Nil)) should be(true)
+            set.contains(Zero) should be(false)
+        }
+
+        it("should share the singleton set of a fact") {
+            val table = new FactTable
+            FactSet(table, Zero) should be theSameInstanceAs table.singleton(Zero)
+            FactSet(table, Zero, Zero) should be theSameInstanceAs table.singleton(Zero)
+            FactSet(table) should be theSameInstanceAs FactSet.empty
+        }
+
+        it("should not intern a fact when checking whether it is contained") {
+            val table = new FactTable
+            val set = FactSet(table, RegisterFact(1, Nil), RegisterFact(2, Nil))
+            val size = table.size
+            set.contains(RegisterFact(3, Nil)) should be(false)
+            FactSet.empty.contains(RegisterFact(4, Nil)) should be(false)
+            table.size should be(size)
+        }
+
+        it("should only contain facts with ids of its own table") {
+            val table1 = new FactTable
+            val table2 = new FactTable
+            table2.id(RegisterFact(2, Nil))
+            val set = FactSet(table1, RegisterFact(1, Nil))
+            set.contains(RegisterFact(2, Nil)) should be(false)
+        }
+    }
+}
@@ -0,0 +1,133 @@
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileOutputStream
+
+import scala.collection.JavaConverters._
+
+import org.scalatest.FunSpec
+import org.scalatest.Matchers
+import com.typesafe.config.ConfigFactory
+import org.opalj.AnalysisMode
+import org.opalj.ai.analyses.cg.ComputedCallGraph
+import org.opalj.br.analyses.Project
+import org.opalj.fpcf.analysis.cg.cha.CHACallGraphKey
+import org.opalj.log.ConsoleOPALLogger
+import org.opalj.log.DefaultLogContext
+import org.opalj.log.OPALLogger
+
+class ICFGSnapshotTests extends FunSpec with Matchers {
+
+    val testcases = new File("../testcases/target/scala-2.10/test-classes")
+
+    val analysisModeConfig = ConfigFactory.parseString(s"${AnalysisMode.ConfigKey} = library with open packages assumption")
+    val logContext = new DefaultLogContext
+    OPALLogger.register(logContext, new ConsoleOPALLogger)
+    val theProject = Project(testcases, logContext, analysisModeConfig.withFallback(ConfigFactory.load()))
+
+    val ComputedCallGraph(callGraph, _, _) = theProject.get(CHACallGraphKey)
+    val icfg = new OpalICFG(callGraph)
+
+    def newSnapshotFile(): File = {
+        val file = File.createTempFile("icfg", ".snapshot")
+        file.deleteOnExit()
+        file
+    }
+
+    def pcs(nodes: java.util.List[MInstruction]): Seq[Int] = nodes.asScala.map(_.pc)
+
+    describe("an ICFG snapshot") {
+
+        val hash = ICFGSnapshot.hash(Seq(testcases), Nil, "callGraph=CHA")
+        val file = newSnapshotFile()
+        ICFGSnapshot.write(file, hash, icfg)
+
+        it("should contain the control flow of all methods") {
+            val snapshot = ICFGSnapshot.load(file, hash, theProject).get
+            val nodeTable = new MInstruction.NodeTable
+            for (m ← theProject.allMethodsWithBody) {
+                val cfg = snapshot.cfg(m, nodeTable).get
+                val expected = icfg.cfg(m)
+                cfg.codeSize should be(expected.codeSize)
+                for (pc ← 0 until cfg.codeSize if cfg.node(pc) ne null) {
+                    pcs(cfg.successors(pc)) should be(pcs(expected.successors(pc)))
+                    pcs(cfg.predecessors(pc)) should be(pcs(expected.predecessors(pc)))
+                }
+            }
+        }
+
+        it("should contain the call graph's edges") {
+            val snapshot = ICFGSnapshot.load(file, hash, theProject).get
+            val restoredICFG = OpalICFG.fromSnapshot(theProject, snapshot, aiCacheSize = 16)
+            for {
+                m ← theProject.allMethodsWithBody
+                node ← icfg.nodes.nodesOf(m)
+                if (node ne null) && icfg.isCallStmt(node)
+            } {
+                val callees = restoredICFG.getCalleesOfCallAt(restoredICFG.node(node.pc, m))
+                callees.asScala.toSet should be(icfg.getCalleesOfCallAt(node).asScala.toSet)
+            }
+            for (m ← theProject.allMethodsWithBody) {
+                val callers = restoredICFG.getCallersOf(m).asScala.map(n ⇒ (n.m, n.pc)).toSet
+                callers should be(icfg.getCallersOf(m).asScala.map(n ⇒ (n.m, n.pc)).toSet)
+            }
+        }
+
+        it("should not be used for a different configuration or different libraries") {
+            ICFGSnapshot.load(file, ICFGSnapshot.hash(Seq(testcases), Nil, "callGraph=VTA"), theProject) should be(None)
+            ICFGSnapshot.load(file, ICFGSnapshot.hash(Nil, Seq(testcases), "callGraph=CHA"), theProject) should be(None)
+        }
+
+        it("should recompute the ICFG if the call graph algorithm differs") {
+            val file = newSnapshotFile()
+            var computedCallGraphs = 0
+            def loadOrCreate(algorithm: String): OpalICFG = {
+                ICFGSnapshot.loadOrCreate(file, Seq(testcases), Nil, algorithm, theProject) {
+                    computedCallGraphs += 1
+                    callGraph
+                }
+            }
+            loadOrCreate("CHA")
+            loadOrCreate("CHA")
+            computedCallGraphs should be(1)
+            loadOrCreate("VTA")
+            computedCallGraphs should be(2)
+        }
+
+        it("should not affect mapped snapshots when it is replaced") {
+            val file = newSnapshotFile()
+            ICFGSnapshot.write(file, hash, icfg)
+            val snapshot = ICFGSnapshot.load(file, hash, theProject).get
+            ICFGSnapshot.write(file, ICFGSnapshot.hash(Nil, Nil, "replaced"), icfg)
+            val m = theProject.allMethodsWithBody.head
+            snapshot.cfg(m, new MInstruction.NodeTable).get.codeSize should be(icfg.cfg(m).codeSize)
+            file.getParentFile.listFiles().filter(_.getName.startsWith(file.getName)) should be(Array(file))
+        }
+    }
+
+    describe("a mapped file") {
+
+        it("should read values that span two chunks") {
+            val file = newSnapshotFile()
+            val out = new DataOutputStream(new FileOutputStream(file))
+            try {
+                out.writeByte(1)
+                out.writeInt(0x12345678)
+                out.writeLong(0x0123456789abcdefL)
+                out.write("snapshot".getBytes("UTF-8"))
+            } finally {
+                out.close()
+            }
+
+            for (chunkSize ← Seq(3, 5, 7, 64)) {
+                val mappedFile = new MappedFile(file, chunkSize)
+                mappedFile.length should be(21L)
+                mappedFile.getByte(0) should be(1)
+                mappedFile.getInt(1) should be(0x12345678)
+                mappedFile.getLong(5) should be(0x0123456789abcdefL)
+                val bytes = new Array[Byte](8)
+                mappedFile.get(13, bytes)
+                new String(bytes, "UTF-8") should be("snapshot")
+            }
+        }
+    }
+}
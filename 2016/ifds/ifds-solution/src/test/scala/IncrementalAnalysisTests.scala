@@ -0,0 +1,163 @@
+import java.io.File
+import java.nio.charset.StandardCharsets.UTF_8
+import java.nio.file.Files
+
+import org.scalatest.FunSpec
+import org.scalatest.Matchers
+import com.typesafe.config.ConfigFactory
+import org.opalj.AnalysisMode
+import org.opalj.ai.analyses.cg.ComputedCallGraph
+import org.opalj.br.Category1ComputationalTypeCategory
+import org.opalj.br.Method
+import org.opalj.br.ObjectType
+import org.opalj.br.analyses.Project
+import org.opalj.br.instructions.INVOKESTATIC
+import org.opalj.fpcf.analysis.cg.cha.CHACallGraphKey
+import org.opalj.log.ConsoleOPALLogger
+import org.opalj.log.DefaultLogContext
+import org.opalj.log.OPALLogger
+
+class IncrementalAnalysisTests extends FunSpec with Matchers {
+
+    def isSource(i: INVOKESTATIC) = i.name == "source" && i.declaringClass.fqn == "util/SourceAndSink"
+
+    def isSink(i: INVOKESTATIC) = i.name == "sink" && i.declaringClass.fqn == "util/SourceAndSink"
+
+    val analysisModeConfig = ConfigFactory.parseString(s"${AnalysisMode.ConfigKey} = library with open packages assumption")
+    val logContext = new DefaultLogContext
+    OPALLogger.register(logContext, new ConsoleOPALLogger)
+    val theProject = Project(
+        new File("../testcases/target/scala-2.10/test-classes"),
+        logContext,
+        analysisModeConfig.withFallback(ConfigFactory.load())
+    )
+
+    val ComputedCallGraph(callGraph, _, _) = theProject.get(CHACallGraphKey)
+    val icfg = new OpalICFG(callGraph)
+
+    val seeds = for {
+        classFile ← theProject.allClassFiles.toSeq
+        if classFile.thisType.fqn.startsWith("tests/")
+        m ← classFile.methods
+        if m.name == "foo"
+        pc ← m.body.get.collectWithIndex { case (pc, i: INVOKESTATIC) if isSource(i) ⇒ pc }
+    } yield icfg.node(pc, m)
+
+    def newStateFile(): File = {
+        val file = File.createTempFile("incremental", ".state")
+        file.delete()
+        file.deleteOnExit()
+        file
+    }
+
+    describe("the fact encoding") {
+
+        it("should decode the encoded facts") {
+            val stack = List(StackEntry(Category1ComputationalTypeCategory, 0), UnknownCTC2Value, UnknownCTC1Value)
+            val facts = Seq(
+                Zero,
+                OperandStackFact(2, stack),
+                RegisterFact(1, Nil),
+                FieldBasedFact(ObjectType("tests/StaticField"), "field", stack)
+            )
+            for (fact ← facts) {
+                FactEncoding.decode(FactEncoding.encode(fact)) should be(fact)
+            }
+            FactEncoding.encode(RegisterFact(1, stack)) should be("R 1 [1:0,2,1]")
+        }
+    }
+
+    describe("the incremental analysis") {
+
+        val stateFile = newStateFile()
+        val first = IncrementalAnalysis.run(icfg, seeds, isSink, stateFile)
+        val second = IncrementalAnalysis.run(icfg, seeds, isSink, stateFile)
+
+        it("should analyze all methods in the first run") {
+            first.changedMethods should be(theProject.allMethodsWithBody.size)
+            first.preseededSummaries should be(0)
+            first.solver.tabulationProblem.findings.results should not be empty
+        }
+
+        it("should reuse the summaries of the unchanged methods") {
+            second.changedMethods should be(0)
+            second.affectedMethods should be(0)
+            second.preseededSummaries should be > 0
+        }
+
+        it("should report the same findings as the first run") {
+            second.solver.tabulationProblem.findings.results should be(first.solver.tabulationProblem.findings.results)
+        }
+
+        it("should report the same findings as the non-incremental analysis") {
+            val solver = new DebuggableIFDSSolver(new TabulationProblem(icfg, seeds, isSink))
+            solver.solve()
+            second.solver.tabulationProblem.findings.results should be(solver.tabulationProblem.findings.results)
+        }
+
+        it("should save the same state as a run without a previous state") {
+            val third = newStateFile()
+            IncrementalAnalysis.run(icfg, seeds, isSink, third)
+            AnalysisState.load(third) should be(AnalysisState.load(stateFile))
+        }
+    }
+
+    describe("the incremental analysis of a changed method") {
+
+        def method(className: String, name: String): Method = {
+            theProject.classFile(ObjectType(className)).get.methods.find(_.name == name).get
+        }
+
+        val foo = method("tests/InterproceduralStaticEdges", "foo")
+        val bar = method("tests/InterproceduralStaticEdges", "bar")
+
+        // the fingerprint of bar is changed and a stale summary and finding are added to its state
+        val stateFile = newStateFile()
+        IncrementalAnalysis.run(icfg, seeds, isSink, stateFile)
+        val previousState = AnalysisState.load(stateFile).get
+        val barKey = IncrementalAnalysis.key(theProject, bar)
+        val barState = previousState.methods(barKey)
+        AnalysisState(previousState.methods.updated(barKey, barState.copy(
+            fingerprint = "changed",
+            summaries = barState.summaries + (Zero → Set((0, Zero))),
+            findings = barState.findings + (Zero → Set((0, Zero)))
+        ))).save(stateFile)
+
+        val result = IncrementalAnalysis.run(icfg, seeds, isSink, stateFile)
+
+        it("should only analyze the changed method and its transitive callers again") {
+            result.changed should be(Set(bar))
+            result.affected should be(Set(bar, foo))
+            result.preseededSummaries should be > 0
+        }
+
+        it("should report the same findings as the non-incremental analysis") {
+            val solver = new DebuggableIFDSSolver(new TabulationProblem(icfg, seeds, isSink))
+            solver.solve()
+            result.solver.tabulationProblem.findings.results should be(solver.tabulationProblem.findings.results)
+        }
+
+        it("should drop the stale summaries and findings") {
+            val fullRun = newStateFile()
+            IncrementalAnalysis.run(icfg, seeds, isSink, fullRun)
+            AnalysisState.load(stateFile) should be(AnalysisState.load(fullRun))
+        }
+    }
+
+    describe("the analysis state") {
+
+        it("should report the line of a corrupt entry") {
+            val file = newStateFile()
+            Files.write(file.toPath, s"M\tm\tfingerprint\nS\tm\tZ\tx\tZ\n".getBytes(UTF_8))
+            val e = the[IllegalStateException] thrownBy AnalysisState.load(file)
+            e.getMessage should startWith(s"$file:2:")
+        }
+
+        it("should reject entries without a fingerprint") {
+            val file = newStateFile()
+            Files.write(file.toPath, s"F\tm\tZ\t1\tZ\n".getBytes(UTF_8))
+            val e = the[IllegalStateException] thrownBy AnalysisState.load(file)
+            e.getMessage should startWith(s"$file:1:")
+        }
+    }
+}
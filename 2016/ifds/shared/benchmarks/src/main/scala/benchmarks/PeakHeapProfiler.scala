@@ -0,0 +1,42 @@
+package benchmarks
+
+import java.lang.management.ManagementFactory
+import java.lang.management.MemoryType
+import java.util.Collections
+import java.util.{ Collection ⇒ JCollection }
+
+import scala.collection.JavaConverters._
+
+import org.openjdk.jmh.infra.BenchmarkParams
+import org.openjdk.jmh.infra.IterationParams
+import org.openjdk.jmh.profile.InternalProfiler
+import org.openjdk.jmh.results.AggregationPolicy
+import org.openjdk.jmh.results.IterationResult
+import org.openjdk.jmh.results.ScalarResult
+
+/**
+ * Reports the peak heap usage of each iteration (`-prof benchmarks.PeakHeapProfiler`).
+ *
+ * The peak is the sum of the peaks of the heap's memory pools; as the pools do not necessarily
+ * reach their peaks at the same time, the value is an upper bound.
+ */
+class PeakHeapProfiler extends InternalProfiler {
+
+    private[this] def heapPools = {
+        ManagementFactory.getMemoryPoolMXBeans.asScala.filter(_.getType == MemoryType.HEAP)
+    }
+
+    def getDescription(): String = "Peak heap usage"
+
+    def beforeIteration(benchmarkParams: BenchmarkParams, iterationParams: IterationParams): Unit = {
+        heapPools.foreach(_.resetPeakUsage())
+    }
+
+    def afterIteration(
+        benchmarkParams: BenchmarkParams,
+        iterationParams: IterationParams,
+        result:          IterationResult): JCollection[ScalarResult] = {
+        val peak = heapPools.map(_.getPeakUsage.getUsed).sum
+        Collections.singletonList(new ScalarResult("·heap.peak", peak / (1024.0d * 1024.0d), "MB", AggregationPolicy.MAX))
+    }
+}
@@ -0,0 +1,182 @@
+import java.io.File
+import java.io.Writer
+import java.nio.charset.StandardCharsets.UTF_8
+import java.nio.file.Files
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.locks.LockSupport
+
+import scala.collection.JavaConverters._
+
+import org.opalj.br.Method
+import org.opalj.br.analyses.SomeProject
+
+/**
+ * A tainted value that reaches a sink.
+ *
+ * @param method The method that passes the tainted value to the sink.
+ * @param pc The pc of the sink's invocation.
+ * @param source The fact that taints the value passed to the sink.
+ */
+case class Finding(method: Method, pc: Int, source: Fact)
+
+/**
+ * Collects the findings of an analysis; thread-safe and lock-free.
+ *
+ * Each finding is only recorded once. New findings are handed over to a background thread that
+ * writes them using the given writers; hence, the analysis' threads never wait for I/O.
+ * `close` writes the remaining findings and closes the writers; findings that are reported
+ * afterwards are still collected, but no longer written.
+ */
+class FindingCollector(writers: Seq[FindingWriter] = Nil) {
+
+    private[this] val findings = ConcurrentHashMap.newKeySet[Finding]()
+
+    private[this] val pending = new ConcurrentLinkedQueue[Finding]()
+
+    @volatile private[this] var closed = false
+
+    private[this] val writerThread: Option[Thread] = {
+        if (writers.isEmpty)
+            None
+        else {
+            val thread = new Thread(new Runnable { def run(): Unit = writeFindings() }, "FindingWriter")
+            thread.setDaemon(true)
+            thread.start()
+            Some(thread)
+        }
+    }
+
+    private[this] def writeFindings(): Unit = {
+        while (!closed || !pending.isEmpty) {
+            val finding = pending.poll()
+            if (finding ne null) {
+                writers.foreach(_.write(finding))
+            } else {
+                writers.foreach(_.flush())
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10))
+            }
+        }
+        writers.foreach(_.close())
+    }
+
+    /**
+     * Records the finding; returns `true` if the finding was not reported before.
+     */
+    def report(finding: Finding): Boolean = {
+        val isNew = findings.add(finding)
+        if (isNew && writerThread.isDefined && !closed)
+            pending.offer(finding)
+        isNew
+    }
+
+    /** The findings reported so far. */
+    def results: Set[Finding] = findings.asScala.toSet
+
+    def size: Int = findings.size
+
+    /** Writes the pending findings and closes the writers. */
+    def close(): Unit = {
+        closed = true
+        writerThread.foreach { thread ⇒
+            LockSupport.unpark(thread)
+            thread.join()
+        }
+    }
+}
+
+/**
+ * Writes the findings of a [[FindingCollector]]; only called by the collector's writer thread.
+ */
+trait FindingWriter {
+
+    def write(finding: Finding): Unit
+
+    def flush(): Unit
+
+    def close(): Unit
+}
+
+object FindingWriter {
+
+    /** Creates a JSON string literal. */
+    def quote(s: String): String = {
+        val sb = new StringBuilder(s.length + 2)
+        sb += '"'
+        s.foreach {
+            case '"'           ⇒ sb ++= "\\\""
+            case '\\'          ⇒ sb ++= "\\\\"
+            case '\n'          ⇒ sb ++= "\\n"
+            case '\r'          ⇒ sb ++= "\\r"
+            case '\t'          ⇒ sb ++= "\\t"
+            case c if c < ' ' ⇒ sb ++= f"\\u${c.toInt}%04x"
+            case c             ⇒ sb += c
+        }
+        sb += '"'
+        sb.toString
+    }
+
+    def newWriter(file: File): Writer = Files.newBufferedWriter(file.toPath, UTF_8)
+
+    def methodName(project: SomeProject, m: Method): String = m.toJava(project.classFile(m))
+}
+
+/** Writes one JSON object per line. */
+class JsonLinesFindingWriter(project: SomeProject, file: File) extends FindingWriter {
+
+    import FindingWriter.methodName
+    import FindingWriter.quote
+
+    private[this] val out = FindingWriter.newWriter(file)
+
+    def write(finding: Finding): Unit = {
+        out.write(s"""{"method":${quote(methodName(project, finding.method))},"pc":${finding.pc},"source":${quote(finding.source.toString)}}""")
+        out.write('\n')
+    }
+
+    def flush(): Unit = out.flush()
+
+    def close(): Unit = out.close()
+}
+
+/**
+ * Writes a SARIF (2.1.0) log with one run; the results are appended while the analysis runs,
+ * the log is completed when the writer is closed.
+ */
+class SarifFindingWriter(
+        project:  SomeProject,
+        file:     File,
+        toolName: String,
+        ruleId:   String,
+        message:  String) extends FindingWriter {
+
+    import FindingWriter.methodName
+    import FindingWriter.quote
+
+    private[this] val out = FindingWriter.newWriter(file)
+
+    private[this] var isFirst = true
+
+    out.write(
+        s"""{"version":"2.1.0","$$schema":"https://json.schemastore.org/sarif-2.1.0.json","runs":[{"""+
+            s""""tool":{"driver":{"name":${quote(toolName)},"rules":[{"id":${quote(ruleId)}}]}},"results":["""
+    )
+
+    def write(finding: Finding): Unit = {
+        if (!isFirst) out.write(',')
+        isFirst = false
+        out.write(
+            s"""{"ruleId":${quote(ruleId)},"level":"error","message":{"text":${quote(message)}},"""+
+                s""""locations":[{"logicalLocations":[{"fullyQualifiedName":${quote(methodName(project, finding.method))},"kind":"function"}]}],"""+
+                s""""properties":{"pc":${finding.pc},"source":${quote(finding.source.toString)}}}"""
+        )
+    }
+
+    def flush(): Unit = out.flush()
+
+    def close(): Unit = {
+        out.write("]}]}")
+        out.close()
+    }
+}
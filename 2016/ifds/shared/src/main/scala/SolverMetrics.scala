@@ -0,0 +1,286 @@
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.LongAdder
+import java.util.{ Set ⇒ JSet }
+
+import scala.annotation.meta.field
+
+import heros.FlowFunction
+import heros.FlowFunctions
+import jdk.jfr.Category
+import jdk.jfr.Description
+import jdk.jfr.Enabled
+import jdk.jfr.Event
+import jdk.jfr.Label
+import jdk.jfr.Name
+import jdk.jfr.Timespan
+import org.opalj.br.Method
+import org.opalj.br.analyses.SomeProject
+
+sealed abstract class FlowFunctionKind(val index: Int, val name: String) {
+    override def toString() = name
+}
+case object NormalFlow extends FlowFunctionKind(0, "normal")
+case object CallFlow extends FlowFunctionKind(1, "call")
+case object ReturnFlow extends FlowFunctionKind(2, "return")
+case object CallToReturnFlow extends FlowFunctionKind(3, "call-to-return")
+
+object FlowFunctionKind {
+    val values: Seq[FlowFunctionKind] = Seq(NormalFlow, CallFlow, ReturnFlow, CallToReturnFlow)
+}
+
+/**
+ * Collects the number and the duration of the flow function applications of a solver run.
+ *
+ * The metrics are recorded by wrapping the flow functions of the tabulation problem (see
+ * `instrumentFlowFunctions`); the counters are `LongAdder`s, hence, recording only costs two
+ * `nanoTime` calls and two uncontended increments per application.
+ *
+ * A call edge whose target fact was already propagated into the callee before is counted as a
+ * summary reuse: the solver does not analyze the callee again, but applies the end summaries
+ * that are already computed for the callee and the fact. Recognizing a reuse requires storing
+ * every callee entry, i.e., memory proportional to the number of distinct (callee, fact) pairs;
+ * hence, summary reuses are only counted if requested.
+ *
+ * Additionally, each application is emitted as a [[FlowFunctionEvent]] if that JFR event is
+ * enabled when the metrics are created; it is disabled by default.
+ *
+ * @tparam CalleeEntry Identifies a callee and a fact the callee is entered with.
+ * @param countSummaryReuses If `true`, the summary reuses are counted.
+ */
+abstract class AbstractSolverMetrics[CalleeEntry](countSummaryReuses: Boolean) {
+
+    private[this] val applications = Array.fill(FlowFunctionKind.values.size)(new LongAdder)
+
+    private[this] val nanos = Array.fill(FlowFunctionKind.values.size)(new LongAdder)
+
+    private[this] val calleeEntries = ConcurrentHashMap.newKeySet[CalleeEntry]()
+
+    private[this] val calleeEntryRequests = new LongAdder
+
+    private[this] val summaryReuses = new LongAdder
+
+    private[this] val flowFunctionEventsEnabled = new FlowFunctionEvent().isEnabled()
+
+    /**
+     * The callee entries of the given callee per fact; only used if summary reuses are counted.
+     */
+    protected[this] def calleeEntry(problem: TabulationProblem, callee: Method): Fact ⇒ CalleeEntry
+
+    private[this] def instrument(
+        project: SomeProject,
+        kind:    FlowFunctionKind,
+        method:  Method,
+        ff:      FlowFunction[Fact]): FlowFunction[Fact] = {
+        if (!flowFunctionEventsEnabled) {
+            new FlowFunction[Fact] {
+                def computeTargets(fact: Fact): JSet[Fact] = {
+                    val start = System.nanoTime()
+                    val targets = ff.computeTargets(fact)
+                    nanos(kind.index).add(System.nanoTime() - start)
+                    applications(kind.index).increment()
+                    targets
+                }
+            }
+        } else {
+            new FlowFunction[Fact] {
+                def computeTargets(fact: Fact): JSet[Fact] = {
+                    val event = new FlowFunctionEvent
+                    event.begin()
+                    val start = System.nanoTime()
+                    val targets = ff.computeTargets(fact)
+                    nanos(kind.index).add(System.nanoTime() - start)
+                    applications(kind.index).increment()
+                    event.end()
+                    if (event.shouldCommit()) {
+                        event.kind = kind.name
+                        event.method = FindingWriter.methodName(project, method)
+                        event.fact = fact.toString
+                        event.targets = targets.size()
+                        event.commit()
+                    }
+                    targets
+                }
+            }
+        }
+    }
+
+    private[this] def recordCalleeEntries(
+        problem: TabulationProblem,
+        callee:  Method,
+        ff:      FlowFunction[Fact]): FlowFunction[Fact] = {
+        if (callee.body.isEmpty)
+            return ff;
+
+        if (!countSummaryReuses) {
+            new FlowFunction[Fact] {
+                def computeTargets(fact: Fact): JSet[Fact] = {
+                    val targets = ff.computeTargets(fact)
+                    calleeEntryRequests.add(targets.size())
+                    targets
+                }
+            }
+        } else {
+            val entry = calleeEntry(problem, callee)
+            new FlowFunction[Fact] {
+                def computeTargets(fact: Fact): JSet[Fact] = {
+                    val targets = ff.computeTargets(fact)
+                    val it = targets.iterator()
+                    while (it.hasNext()) {
+                        calleeEntryRequests.increment()
+                        if (!calleeEntries.add(entry(it.next())))
+                            summaryReuses.increment()
+                    }
+                    targets
+                }
+            }
+        }
+    }
+
+    /**
+     * Wraps the flow functions of the given problem such that their applications are recorded.
+     */
+    protected[this] def instrumentFlowFunctions(problem: TabulationProblem): FlowFunctions[MInstruction, Fact, Method] = {
+        val project = problem.interproceduralCFG().project
+        val flowFunctions = problem.flowFunctions()
+        new FlowFunctions[MInstruction, Fact, Method] {
+            def getNormalFlowFunction(curr: MInstruction, succ: MInstruction) =
+                instrument(project, NormalFlow, curr.m, flowFunctions.getNormalFlowFunction(curr, succ))
+
+            def getCallFlowFunction(callSite: MInstruction, callee: Method) =
+                instrument(project, CallFlow, callee, recordCalleeEntries(problem, callee, flowFunctions.getCallFlowFunction(callSite, callee)))
+
+            def getReturnFlowFunction(callSite: MInstruction, callee: Method, exitStmt: MInstruction, returnSite: MInstruction) =
+                instrument(project, ReturnFlow, callee, flowFunctions.getReturnFlowFunction(callSite, callee, exitStmt, returnSite))
+
+            def getCallToReturnFlowFunction(callSite: MInstruction, returnSite: MInstruction) =
+                instrument(project, CallToReturnFlow, callSite.m, flowFunctions.getCallToReturnFlowFunction(callSite, returnSite))
+        }
+    }
+
+    /**
+     * Creates a snapshot of the metrics.
+     *
+     * @param pathEdgesPerMethod The number of path edges per method; use the solver's
+     *        `metricsSnapshot` to include the solver's path edges and facts.
+     * @param factsByClass The number of distinct facts per class.
+     */
+    def snapshot(
+        pathEdgesPerMethod: Map[Method, Int] = Map.empty,
+        factsByClass:       Map[String, Int] = Map.empty): SolverMetricsSnapshot = {
+        SolverMetricsSnapshot(
+            FlowFunctionKind.values.map(kind ⇒ kind → applications(kind.index).sum).toMap,
+            FlowFunctionKind.values.map(kind ⇒ kind → nanos(kind.index).sum).toMap,
+            pathEdgesPerMethod,
+            factsByClass,
+            calleeEntryRequests.sum,
+            if (countSummaryReuses) Some(summaryReuses.sum) else None
+        )
+    }
+}
+
+/**
+ * @param flowFunctionApplications The number of applied flow functions per kind.
+ * @param flowFunctionNanos The time spent in the flow functions per kind.
+ * @param pathEdgesPerMethod The number of path edges whose target is a statement of the method.
+ * @param factsByClass The number of distinct facts per class.
+ * @param calleeEntries The number of facts that were propagated into callees.
+ * @param summaryReuses The number of facts propagated into callees for which the callees'
+ *        summaries could be reused; `None` if not counted.
+ */
+case class SolverMetricsSnapshot(
+        flowFunctionApplications: Map[FlowFunctionKind, Long],
+        flowFunctionNanos:        Map[FlowFunctionKind, Long],
+        pathEdgesPerMethod:       Map[Method, Int],
+        factsByClass:             Map[String, Int],
+        calleeEntries:            Long,
+        summaryReuses:            Option[Long]) {
+
+    def topMethodsByPathEdges(n: Int): Seq[(Method, Int)] = pathEdgesPerMethod.toSeq.sortBy(-_._2).take(n)
+
+    /** Emits the snapshot as a [[SolverMetricsEvent]] if that JFR event is enabled. */
+    def commitEvent(): Unit = {
+        val event = new SolverMetricsEvent
+        if (event.isEnabled()) {
+            event.normalFlowApplications = flowFunctionApplications(NormalFlow)
+            event.normalFlowTime = flowFunctionNanos(NormalFlow)
+            event.callFlowApplications = flowFunctionApplications(CallFlow)
+            event.callFlowTime = flowFunctionNanos(CallFlow)
+            event.returnFlowApplications = flowFunctionApplications(ReturnFlow)
+            event.returnFlowTime = flowFunctionNanos(ReturnFlow)
+            event.callToReturnFlowApplications = flowFunctionApplications(CallToReturnFlow)
+            event.callToReturnFlowTime = flowFunctionNanos(CallToReturnFlow)
+            event.pathEdges = pathEdgesPerMethod.valuesIterator.map(_.toLong).sum
+            event.methodsWithPathEdges = pathEdgesPerMethod.size
+            event.facts = factsByClass.valuesIterator.sum
+            event.calleeEntries = calleeEntries
+            event.summaryReuses = summaryReuses.getOrElse(-1L)
+            event.commit()
+        }
+    }
+
+    override def toString(): String = {
+        val flowFunctions = FlowFunctionKind.values.map { kind ⇒
+            f"  $kind%-15s ${flowFunctionApplications(kind)}%10d applications ${flowFunctionNanos(kind) / 1000000.0d}%10.1f ms"
+        }
+        val methods = topMethodsByPathEdges(10).map { case (m, edges) ⇒ f"  $edges%10d $m" }
+        val facts = factsByClass.toSeq.sortBy(_._1).map { case (c, count) ⇒ f"  $c%-20s $count%10d" }
+        val reuses = summaryReuses.map(reuses ⇒ s"summary reuses: $reuses of $calleeEntries callee entries")
+        (Seq("flow functions:") ++ flowFunctions ++
+            Seq(reuses.getOrElse(s"callee entries: $calleeEntries"), "facts:") ++ facts ++
+            Seq("methods with the most path edges:") ++ methods).mkString("\n")
+    }
+}
+
+/**
+ * A JFR event for a single flow function application. The event is disabled by default, because
+ * flow functions are applied very often; enable it, e.g., with a threshold, in the JFR settings.
+ */
+@Name("apsa.FlowFunction")
+@Label("Flow Function Application")
+@Category(Array("APSA", "Solver"))
+@Enabled(false)
+class FlowFunctionEvent extends Event {
+
+    @(Label @field)("Kind") var kind: String = _
+
+    @(Label @field)("Method") var method: String = _
+
+    @(Label @field)("Fact") var fact: String = _
+
+    @(Label @field)("Targets") var targets: Int = _
+}
+
+/**
+ * A JFR event that summarizes the metrics of a solver run; see [[SolverMetricsSnapshot]].
+ */
+@Name("apsa.SolverMetrics")
+@Label("Solver Metrics")
+@Category(Array("APSA", "Solver"))
+class SolverMetricsEvent extends Event {
+
+    @(Label @field)("Normal Flow Applications") var normalFlowApplications: Long = _
+
+    @(Label @field)("Normal Flow Time") @(Timespan @field) var normalFlowTime: Long = _
+
+    @(Label @field)("Call Flow Applications") var callFlowApplications: Long = _
+
+    @(Label @field)("Call Flow Time") @(Timespan @field) var callFlowTime: Long = _
+
+    @(Label @field)("Return Flow Applications") var returnFlowApplications: Long = _
+
+    @(Label @field)("Return Flow Time") @(Timespan @field) var returnFlowTime: Long = _
+
+    @(Label @field)("Call-to-Return Flow Applications") var callToReturnFlowApplications: Long = _
+
+    @(Label @field)("Call-to-Return Flow Time") @(Timespan @field) var callToReturnFlowTime: Long = _
+
+    @(Label @field)("Path Edges") var pathEdges: Long = _
+
+    @(Label @field)("Methods with Path Edges") var methodsWithPathEdges: Int = _
+
+    @(Label @field)("Facts") var facts: Int = _
+
+    @(Label @field)("Callee Entries") var calleeEntries: Long = _
+
+    @(Label @field)("Summary Reuses") @(Description @field)("-1 if not counted") var summaryReuses: Long = _
+}
@@ -0,0 +1,46 @@
+package org.opalj.exercise
+
+import scala.collection.mutable
+
+import org.opalj.br.DeclaredMethod
+
+/**
+ * Computes the methods that (transitively) call or are called by a set of methods; OPAL's call
+ * graphs are implicitly converted to a [[CallGraphView]].
+ */
+object CallGraphClosures {
+
+    /**
+     * The given methods and the methods that (transitively) call them.
+     */
+    def transitiveCallers(methods: Iterable[DeclaredMethod], callGraph: CallGraphView): Set[DeclaredMethod] = {
+        val visited = mutable.Set.empty[DeclaredMethod] ++ methods
+        var worklist = methods.toList
+        while (worklist.nonEmpty) {
+            val m = worklist.head
+            worklist = worklist.tail
+            callGraph.callersOf(m).foreach {
+                case (caller, _) ⇒ if (visited.add(caller)) worklist ::= caller
+            }
+        }
+        visited.toSet
+    }
+
+    /**
+     * The given methods and the methods that they (transitively) call.
+     */
+    def transitiveCallees(methods: Iterable[DeclaredMethod], callGraph: CallGraphView): Set[DeclaredMethod] = {
+        val visited = mutable.Set.empty[DeclaredMethod] ++ methods
+        var worklist = methods.toList
+        while (worklist.nonEmpty) {
+            val m = worklist.head
+            worklist = worklist.tail
+            callGraph.calleesOf(m).foreach {
+                case (_, callees) ⇒ callees.foreach { callee ⇒
+                    if (visited.add(callee)) worklist ::= callee
+                }
+            }
+        }
+        visited.toSet
+    }
+}
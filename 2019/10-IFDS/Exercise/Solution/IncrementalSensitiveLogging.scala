@@ -0,0 +1,291 @@
+package org.opalj.exercise
+
+import java.io.File
+import java.net.URL
+import java.nio.charset.StandardCharsets.UTF_8
+import java.nio.file.Files
+import java.security.MessageDigest
+import java.util.Base64
+
+import scala.collection.JavaConverters._
+
+import org.opalj.br.DeclaredMethod
+import org.opalj.br.Method
+import org.opalj.br.analyses.BasicReport
+import org.opalj.br.analyses.DeclaredMethodsKey
+import org.opalj.br.analyses.Project
+import org.opalj.br.analyses.ProjectAnalysisApplication
+import org.opalj.br.fpcf.FPCFAnalysesManagerKey
+import org.opalj.br.fpcf.PropertyStoreKey
+import org.opalj.tac.cg.RTACallGraphKey
+
+import org.opalj.exercise.CallGraphClosures.transitiveCallees
+import org.opalj.exercise.CallGraphClosures.transitiveCallers
+
+/**
+ * The results of a run of the [[SensitiveLoggingAnalysis]] that are stored between runs; the
+ * methods are identified by their `toJava` strings.
+ *
+ * File format (one entry per line, the values are separated by tabs):
+ * {{{
+ * M <method> <fingerprint>
+ * T <method> <input fact> <facts at the exit statements>
+ * F <method> <statement index> <source fact>
+ * }}}
+ * The facts are encoded by [[TaintSummaries]].
+ *
+ * @param fingerprints The fingerprint of each method with a body (see
+ *        `IncrementalSensitiveLogging.fingerprint`).
+ * @param summaries The final taint summaries per method and input fact (see
+ *        `TaintSummaries.encodeFlows`).
+ * @param findings The calls that pass sensitive information to the logger.
+ */
+case class AnalysisState(
+        fingerprints: Map[String, String],
+        summaries:    Map[(String, Fact), String],
+        findings:     Set[Finding]
+) {
+
+    def save(file: File): Unit = {
+        val lines =
+            fingerprints.iterator.map { case (m, fingerprint) ⇒ s"M\t$m\t$fingerprint" } ++
+                summaries.iterator.map {
+                    case ((m, fact), flows) ⇒ s"T\t$m\t${TaintSummaries.encode(fact)}\t$flows"
+                } ++
+                findings.iterator.map { case Finding(m, statement, source) ⇒ s"F\t$m\t$statement\t$source" }
+        Files.write(file.toPath, lines.toIterable.asJava, UTF_8)
+    }
+}
+
+object AnalysisState {
+
+    def load(file: File): Option[AnalysisState] = {
+        if (!file.exists())
+            return None;
+
+        val fingerprints = Map.newBuilder[String, String]
+        val summaries = Map.newBuilder[(String, Fact), String]
+        val findings = Set.newBuilder[Finding]
+        Files.readAllLines(file.toPath, UTF_8).asScala.iterator.zipWithIndex.foreach {
+            case (line, index) ⇒
+                try {
+                    line.split("\t", -1) match {
+                        case Array("M", m, fingerprint) ⇒
+                            fingerprints += m → fingerprint
+                        case Array("T", m, fact, flows) ⇒
+                            summaries += (m, TaintSummaries.decode(fact)) → flows
+                        case Array("F", m, statement, source) ⇒
+                            findings += Finding(m, statement.toInt, source)
+                        case _ ⇒
+                            throw new IllegalArgumentException("unknown entry")
+                    }
+                } catch {
+                    case e: IllegalArgumentException ⇒
+                        throw new IllegalStateException(s"$file:${index + 1}: corrupt state (${e.getMessage}): $line", e)
+                }
+        }
+        Some(AnalysisState(fingerprints.result(), summaries.result(), findings.result()))
+    }
+}
+
+/**
+ * Runs the [[SensitiveLoggingAnalysis]] incrementally: only the entry points whose results may
+ * have changed since the previous run are analyzed again; the results for the part of the
+ * program that is not affected by the changes are taken from the previous run.
+ *
+ * A method is changed if its code or the methods called by its call sites (according to the
+ * call graph) changed. Then, the affected entry points are the public methods that
+ * (transitively) call a changed method; a finding of the previous run is invalidated if it
+ * was found in a method that can be reached from an affected entry point. The analysis is then
+ * seeded with the entry points that (transitively) call a changed method or a method with an
+ * invalidated finding; the findings of all other methods are unchanged, because their analysis
+ * only depends on unchanged code.
+ *
+ * The taint summaries of the previous run are set in the property store for all methods that
+ * are neither seeds nor (transitively) call a seed; hence, the solver applies them like the
+ * results of a callee analysis instead of analyzing these methods again. A method that is
+ * reached with a new input fact is still analyzed for that fact.
+ *
+ * The first run, i.e., the run without a state file, analyzes the whole project.
+ */
+object IncrementalSensitiveLogging extends ProjectAnalysisApplication {
+
+    override def description: String =
+        "Finds violations of FIO13-J (logging sensitive information) incrementally"
+
+    override def analysisSpecificParametersDescription: String =
+        "-state=<File> The file that stores the results between runs\n"+
+            "[-sinkDirected] Only analyze entry points that can reach a source and a sink\n"+
+            "[-jsonl=<File>] Writes the findings of this run as JSON lines\n"+
+            "[-sarif=<File>] Writes the findings of this run as SARIF log\n"+
+            "[-summaries=<Directory>] Stores the summaries of library methods between runs"
+
+    override def checkAnalysisSpecificParameters(parameters: Seq[String]): Traversable[String] = {
+        val unknown = parameters.filterNot { p ⇒
+            p.startsWith("-state=") || p == "-sinkDirected" || p.startsWith("-jsonl=") ||
+                p.startsWith("-sarif=") || p.startsWith("-summaries=")
+        }
+        if (parameters.count(_.startsWith("-state=")) != 1)
+            "the state file has to be specified: -state=<File>" :: unknown.map("unknown parameter: "+_).toList
+        else
+            unknown.map("unknown parameter: "+_)
+    }
+
+    /**
+     * Hashes the method's code and the methods called by its call sites.
+     */
+    def fingerprint(m: Method, callees: Iterator[(Int, Iterator[DeclaredMethod])]): String = {
+        val digest = MessageDigest.getInstance("SHA-256")
+        val code = m.body.get
+        code.iterate { (pc, instruction) ⇒
+            digest.update(s"$pc:${instruction.toString(pc)};".getBytes(UTF_8))
+        }
+        code.exceptionHandlers.foreach { handler ⇒ digest.update(handler.toString.getBytes(UTF_8)) }
+        callees.map { case (pc, targets) ⇒ (pc, targets.map(_.toJava).toList.sorted) }.toList.sortBy(_._1).foreach {
+            case (pc, targets) ⇒ digest.update(targets.mkString(s"$pc->", ",", ";").getBytes(UTF_8))
+        }
+        Base64.getEncoder.encodeToString(digest.digest())
+    }
+
+    /**
+     * The result of a run.
+     *
+     * @param findings All findings, including the findings retained from the previous run.
+     * @param changedMethods The methods that changed since the previous run; all methods in the
+     *        first run.
+     * @param reanalyzedEntryPoints The entry points that are analyzed again; `None` in the first
+     *        run, which analyzes all entry points.
+     * @param retainedFindings The number of findings taken from the previous run.
+     * @param reusedSummaries The number of taint summaries taken from the previous run.
+     * @param preseededLibrarySummaries The number of library summaries taken from the directory
+     *        given by `-summaries=<Directory>`.
+     */
+    case class Result(
+            findings:                  Set[Finding],
+            changedMethods:            Set[String],
+            reanalyzedEntryPoints:     Option[Set[String]],
+            retainedFindings:          Int,
+            reusedSummaries:           Int,
+            preseededLibrarySummaries: Option[Int]
+    ) {
+
+        override def toString: String = {
+            val incremental = reanalyzedEntryPoints.map { entryPoints ⇒
+                s"changed methods: ${changedMethods.size}; "+
+                    s"reanalyzed entry points: ${entryPoints.size}; "+
+                    s"retained findings: $retainedFindings; "+
+                    s"reused summaries: $reusedSummaries\n"
+            }
+            val library = preseededLibrarySummaries.map(n ⇒ s"preseeded summaries: $n\n")
+            val violations = findings.map(_.method)
+            incremental.getOrElse("") + library.getOrElse("") +
+                violations.toList.sorted.map(m ⇒ s"VIOLATION in Method $m\n").mkString+
+                s"# violations: ${violations.size}"
+        }
+    }
+
+    def doAnalyze(p: Project[URL], params: Seq[String], isInterrupted: () ⇒ Boolean): BasicReport = {
+        run(p, params).toString
+    }
+
+    /**
+     * Analyzes the project with the given parameters (see
+     * `analysisSpecificParametersDescription`); the state file is replaced by the state of this
+     * run.
+     */
+    def run(p: Project[URL], params: Seq[String]): Result = {
+        val stateFile = new File(params.find(_.startsWith("-state=")).get.substring("-state=".length))
+        val declaredMethods = p.get(DeclaredMethodsKey)
+        val callGraph = p.get(RTACallGraphKey)
+
+        val methods = p.allMethodsWithBody.map(m ⇒ m.toJava → m).toMap
+        val fingerprints = methods.map {
+            case (key, m) ⇒ key → fingerprint(m, callGraph.calleesOf(declaredMethods(m)))
+        }
+
+        val previousState = AnalysisState.load(stateFile)
+        val (isEntryPoint, changedMethods, reanalyzedEntryPoints, retainedFindings, reusedSummaries) = previousState match {
+            case None ⇒
+                ((_: Method) ⇒ true, methods.keySet, None, Set.empty[Finding], Map.empty[(String, Fact), String])
+
+            case Some(AnalysisState(previousFingerprints, previousSummaries, previousFindings)) ⇒
+                val changed = fingerprints.collect {
+                    case (key, fingerprint) if !previousFingerprints.get(key).contains(fingerprint) ⇒
+                        declaredMethods(methods(key))
+                }
+                val affectedEntryPoints = transitiveCallers(changed, callGraph).filter { m ⇒
+                    m.hasSingleDefinedMethod && m.definedMethod.isPublic
+                }
+                val affectedMethods = transitiveCallees(affectedEntryPoints, callGraph).collect {
+                    case m if m.hasSingleDefinedMethod ⇒ m.definedMethod.toJava
+                }
+                // the findings of removed methods are dropped
+                val (invalidated, retained) =
+                    previousFindings.filter(f ⇒ methods.contains(f.method)).partition(f ⇒ affectedMethods.contains(f.method))
+                val seeds = transitiveCallers(
+                    changed ++ invalidated.map(f ⇒ declaredMethods(methods(f.method))),
+                    callGraph
+                )
+                val seedMethods = seeds.collect { case m if m.hasSingleDefinedMethod ⇒ m.definedMethod }
+                val seedKeys = seedMethods.map(_.toJava)
+                val reused = previousSummaries.filter {
+                    case ((m, _), _) ⇒ methods.contains(m) && !seedKeys.contains(m)
+                }
+
+                (
+                    seedMethods.contains _,
+                    changed.map(_.definedMethod.toJava).toSet,
+                    Some(seedMethods.filter(_.isPublic).map(_.toJava)),
+                    retained,
+                    reused
+                )
+        }
+
+        def fileParam(name: String) = params.find(_.startsWith(name)).map(p ⇒ new File(p.substring(name.length)))
+        val findings = new FindingCollector(
+            fileParam("-jsonl=").map(new JsonLinesFindingWriter(_)).toSeq ++
+                fileParam("-sarif=").map(SensitiveLoggingAnalysis.sarifWriter)
+        )
+        retainedFindings.foreach(findings.report)
+        val isRelevant: Method ⇒ Boolean =
+            if (params.contains("-sinkDirected")) SinkDirectedSeeding.relevantEntryPoints(p)
+            else _ ⇒ true
+        val analysis = SensitiveLoggingAnalysis.withEntryPoints(m ⇒ isRelevant(m) && isEntryPoint(m), findings)
+
+        val propertyStore = p.get(PropertyStoreKey)
+        val summaries = fileParam("-summaries=").map(TaintSummaries.store)
+        val preseededLibrarySummaries = summaries.map(TaintSummaries.preseed(p, _))
+        reusedSummaries.foreach {
+            case ((key, fact), flows) ⇒
+                val m = declaredMethods(methods(key))
+                // the library summaries are already set
+                if (!propertyStore.hasProperty((m, fact), Taint.key))
+                    propertyStore.set((m, fact), TaintSummaries.decodeFlows(p, m, flows))
+        }
+        try {
+            p.get(FPCFAnalysesManagerKey).runAll(analysis)
+        } finally {
+            findings.close()
+        }
+        summaries.foreach(TaintSummaries.save(p, _))
+
+        val finalSummaries = propertyStore.entities(Taint.key).filter(_.isFinal).flatMap { eps ⇒
+            val (m, fact) = eps.e.asInstanceOf[(DeclaredMethod, Fact)]
+            if (m.hasSingleDefinedMethod && methods.contains(m.definedMethod.toJava))
+                Some((m.definedMethod.toJava, fact) → TaintSummaries.encodeFlows(eps.asFinal.p))
+            else
+                None
+        }.toMap
+        val allFindings = findings.results
+        AnalysisState(fingerprints, finalSummaries, allFindings).save(stateFile)
+
+        Result(
+            allFindings,
+            changedMethods,
+            reanalyzedEntryPoints,
+            retainedFindings.size,
+            reusedSummaries.size,
+            preseededLibrarySummaries
+        )
+    }
+}
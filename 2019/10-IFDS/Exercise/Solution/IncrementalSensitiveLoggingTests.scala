@@ -0,0 +1,73 @@
+package org.opalj.exercise
+
+import java.io.File
+
+import org.scalatest.FunSpec
+import org.scalatest.Matchers
+
+import org.opalj.br.analyses.Project
+
+class IncrementalSensitiveLoggingTests extends FunSpec with Matchers {
+
+    // the test classes of the exercise
+    val project = Project(new File("../test"))
+
+    def newStateFile(): File = {
+        val file = File.createTempFile("incremental", ".state")
+        file.delete()
+        file.deleteOnExit()
+        file
+    }
+
+    // every run needs a new property store
+    def run(stateFile: File): IncrementalSensitiveLogging.Result =
+        IncrementalSensitiveLogging.run(project.recreate(), Seq(s"-state=$stateFile"))
+
+    describe("the incremental analysis") {
+
+        val stateFile = newStateFile()
+        val first = run(stateFile)
+        val second = run(stateFile)
+
+        it("should analyze all entry points in the first run") {
+            first.reanalyzedEntryPoints should be(None)
+            first.findings should not be empty
+        }
+
+        it("should reuse all results if nothing changed") {
+            second.changedMethods should be(empty)
+            second.reanalyzedEntryPoints should be(Some(Set.empty))
+            second.retainedFindings should be(first.findings.size)
+            second.findings should be(first.findings)
+        }
+    }
+
+    describe("the incremental analysis of a changed method") {
+
+        val methods = project.allMethodsWithBody.filter(_.classFile.thisType.fqn == "tests/InterproceduralStaticEdges")
+        val noncompliant = methods.find(_.name == "noncompliant").get.toJava
+        val foo = methods.find(_.name == "foo").get.toJava
+
+        // the fingerprint of foo, which is called by noncompliant, is changed
+        val stateFile = newStateFile()
+        val full = run(stateFile)
+        val fullState = AnalysisState.load(stateFile).get
+        fullState.copy(fingerprints = fullState.fingerprints.updated(foo, "changed")).save(stateFile)
+        val result = run(stateFile)
+
+        it("should only analyze the entry points that call the changed method again") {
+            result.changedMethods should be(Set(foo))
+            result.reanalyzedEntryPoints should be(Some(Set(noncompliant)))
+            full.findings.map(_.method) should contain(noncompliant)
+            result.retainedFindings should be(full.findings.count(_.method != noncompliant))
+        }
+
+        it("should report the same findings as a full run") {
+            result.findings should be(full.findings)
+        }
+
+        it("should store the new fingerprint") {
+            AnalysisState.load(stateFile).get.fingerprints should be(fullState.fingerprints)
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.opalj.exercise
+
+import scala.collection.SetLike
+import scala.collection.immutable.IntMap
+
+import org.opalj.collection.immutable.IntTrieSet
+
+/**
+ * An immutable set of facts that indexes the facts that refer to a def-site (variables, array
+ * elements and instance fields) by their def-site; all other facts (static fields and the null
+ * fact) are stored in a separate set.
+ *
+ * Hence, the facts related to the def-sites of a variable can be found in O(|definedBy|)
+ * instead of scanning all facts. Adding and removing facts shares the unchanged parts of the
+ * underlying maps.
+ */
+final class IndexedFacts private (
+        private val byDefSite: IntMap[Set[Fact]],
+        private val otherFacts: Set[Fact],
+        override val size:      Int
+) extends Set[Fact] with SetLike[Fact, IndexedFacts] {
+
+    import IndexedFacts.defSiteOf
+    import IndexedFacts.NoDefSite
+
+    override def empty: IndexedFacts = IndexedFacts.empty
+
+    /** The facts that refer to the given def-site. */
+    def factsAt(defSite: Int): Set[Fact] = byDefSite.getOrElse(defSite, Set.empty)
+
+    /** Returns true if a fact refers to one of the given def-sites. */
+    def isTainted(defSites: IntTrieSet): Boolean = defSites.exists(byDefSite.contains)
+
+    /** Returns true if a fact refers to one of the given def-sites and satisfies `p`. */
+    def existsAt(defSites: IntTrieSet)(p: Fact ⇒ Boolean): Boolean = {
+        defSites.exists(defSite ⇒ factsAt(defSite).exists(p))
+    }
+
+    /** The static fields and the null fact. */
+    def nonDefSiteFacts: Set[Fact] = otherFacts
+
+    override def contains(fact: Fact): Boolean = {
+        val defSite = defSiteOf(fact)
+        if (defSite == NoDefSite) otherFacts.contains(fact)
+        else byDefSite.get(defSite).exists(_.contains(fact))
+    }
+
+    override def +(fact: Fact): IndexedFacts = {
+        val defSite = defSiteOf(fact)
+        if (defSite == NoDefSite) {
+            if (otherFacts.contains(fact)) this
+            else new IndexedFacts(byDefSite, otherFacts + fact, size + 1)
+        } else {
+            val facts = factsAt(defSite)
+            if (facts.contains(fact)) this
+            else new IndexedFacts(byDefSite.updated(defSite, facts + fact), otherFacts, size + 1)
+        }
+    }
+
+    override def -(fact: Fact): IndexedFacts = {
+        val defSite = defSiteOf(fact)
+        if (defSite == NoDefSite) {
+            if (!otherFacts.contains(fact)) this
+            else new IndexedFacts(byDefSite, otherFacts - fact, size - 1)
+        } else {
+            val facts = factsAt(defSite)
+            if (!facts.contains(fact)) this
+            else if (facts.size == 1) new IndexedFacts(byDefSite - defSite, otherFacts, size - 1)
+            else new IndexedFacts(byDefSite.updated(defSite, facts - fact), otherFacts, size - 1)
+        }
+    }
+
+    override def iterator: Iterator[Fact] = {
+        byDefSite.valuesIterator.flatMap(_.iterator) ++ otherFacts.iterator
+    }
+
+    override def foreach[U](f: Fact ⇒ U): Unit = {
+        byDefSite.foreachValue(_.foreach(f))
+        otherFacts.foreach(f)
+    }
+}
+
+object IndexedFacts {
+
+    final val NoDefSite = Int.MinValue
+
+    val empty: IndexedFacts = new IndexedFacts(IntMap.empty, Set.empty, 0)
+
+    /**
+     * Returns the given facts if they are already indexed; otherwise, the index is created.
+     */
+    def apply(facts: Set[Fact]): IndexedFacts = facts match {
+        case indexedFacts: IndexedFacts ⇒ indexedFacts
+        case _                          ⇒ facts.foldLeft(empty)(_ + _)
+    }
+
+    def defSiteOf(fact: Fact): Int = fact match {
+        case Variable(index)            ⇒ index
+        case ArrayElement(index, _)     ⇒ index
+        case InstanceField(index, _, _) ⇒ index
+        case _                          ⇒ NoDefSite
+    }
+}
@@ -0,0 +1,85 @@
+package org.opalj.exercise
+
+import org.scalatest.FunSpec
+import org.scalatest.Matchers
+
+import org.opalj.br.ObjectType
+import org.opalj.collection.immutable.IntTrieSet
+
+class IndexedFactsTests extends FunSpec with Matchers {
+
+    val UserType = ObjectType("util/User")
+
+    val facts: Set[Fact] = Set(
+        NullFact,
+        Variable(1),
+        Variable(-2),
+        ArrayElement(1, 0),
+        ArrayElement(3, 2),
+        InstanceField(3, UserType, "name"),
+        InstanceField(-1, UserType, "name"),
+        StaticField(UserType, "current")
+    )
+
+    describe("indexed facts") {
+
+        val indexed = IndexedFacts(facts)
+
+        it("should contain the same facts as the given set") {
+            indexed should be(facts)
+            indexed.size should be(facts.size)
+            indexed.iterator.toSet should be(facts)
+            var visited = Set.empty[Fact]
+            indexed.foreach(visited += _)
+            visited should be(facts)
+        }
+
+        it("should reuse an index") {
+            IndexedFacts(indexed) should be theSameInstanceAs indexed
+        }
+
+        it("should find the facts of a def-site") {
+            indexed.factsAt(1) should be(Set(Variable(1), ArrayElement(1, 0)))
+            indexed.factsAt(3) should be(Set(ArrayElement(3, 2), InstanceField(3, UserType, "name")))
+            indexed.factsAt(-1) should be(Set(InstanceField(-1, UserType, "name")))
+            indexed.factsAt(2) should be(empty)
+        }
+
+        it("should store the facts without a def-site separately") {
+            indexed.nonDefSiteFacts should be(Set(NullFact, StaticField(UserType, "current")))
+        }
+
+        it("should find the tainted def-sites") {
+            indexed.isTainted(IntTrieSet(2, 4)) should be(false)
+            indexed.isTainted(IntTrieSet(2, -2)) should be(true)
+            indexed.existsAt(IntTrieSet(1, 3)) { _.isInstanceOf[InstanceField] } should be(true)
+            indexed.existsAt(IntTrieSet(1, -2)) { _.isInstanceOf[InstanceField] } should be(false)
+        }
+
+        it("should add and remove facts like a set") {
+            val added = indexed + Variable(2) + StaticField(UserType, "other")
+            added should be(facts + Variable(2) + StaticField(UserType, "other"))
+            added.size should be(facts.size + 2)
+            added.factsAt(2) should be(Set(Variable(2)))
+
+            val removed = indexed - Variable(1) - ArrayElement(1, 0) - NullFact
+            removed should be(facts - Variable(1) - ArrayElement(1, 0) - NullFact)
+            removed.size should be(facts.size - 3)
+            removed.factsAt(1) should be(empty)
+            removed.isTainted(IntTrieSet(1)) should be(false)
+        }
+
+        it("should not change if an existing fact is added or a missing fact is removed") {
+            indexed + Variable(1) should be theSameInstanceAs indexed
+            indexed + NullFact should be theSameInstanceAs indexed
+            indexed - Variable(7) should be theSameInstanceAs indexed
+            indexed - StaticField(UserType, "other") should be theSameInstanceAs indexed
+        }
+
+        it("should keep the empty set empty") {
+            IndexedFacts(Set.empty[Fact]) should be(empty)
+            (IndexedFacts.empty + Variable(1) - Variable(1)) should be(empty)
+            (IndexedFacts.empty + Variable(1) - Variable(1)).size should be(0)
+        }
+    }
+}
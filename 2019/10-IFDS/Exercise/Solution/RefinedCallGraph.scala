@@ -0,0 +1,156 @@
+package org.opalj.exercise
+
+import scala.language.implicitConversions
+
+import scala.collection.mutable
+
+import org.opalj.br.DeclaredMethod
+import org.opalj.br.ObjectType
+import org.opalj.br.analyses.DeclaredMethodsKey
+import org.opalj.br.analyses.SomeProject
+import org.opalj.br.fpcf.FPCFAnalysesManagerKey
+import org.opalj.tac.cg.CallGraph
+import org.opalj.tac.cg.RTACallGraphKey
+import org.opalj.tac.fpcf.analyses.CalleeType
+import org.opalj.tac.fpcf.analyses.IFDSBasedVariableTypeAnalysis
+import org.opalj.tac.fpcf.analyses.VTAResult
+
+/**
+ * The queries of a call graph that are used by the analyses of this project; implemented by
+ * OPAL's call graphs (see the implicit conversion) and the [[RefinedCallGraph]].
+ */
+trait CallGraphView {
+
+    /** The call sites (pcs) of the method and their callees. */
+    def calleesOf(m: DeclaredMethod): Iterator[(Int, Iterator[DeclaredMethod])]
+
+    /** The callers of the method and the pcs of their call sites. */
+    def callersOf(m: DeclaredMethod): TraversableOnce[(DeclaredMethod, Int)]
+
+    /** The callees of the call site with the given pc. */
+    def calleesOf(m: DeclaredMethod, pc: Int): Iterator[DeclaredMethod] =
+        calleesOf(m).collect { case (`pc`, callees) ⇒ callees }.flatten
+
+    /** Returns true if the call site with the given pc may call the callee. */
+    def isCallee(m: DeclaredMethod, pc: Int, callee: DeclaredMethod): Boolean =
+        calleesOf(m, pc).contains(callee)
+
+    /** The number of edges from the given methods to their callees. */
+    def numberOfEdges(methods: Iterable[DeclaredMethod]): Int =
+        methods.iterator.map(calleesOf(_).map(_._2.size).sum).sum
+}
+
+object CallGraphView {
+
+    implicit def apply(callGraph: CallGraph): CallGraphView = new CallGraphView {
+        def calleesOf(m: DeclaredMethod): Iterator[(Int, Iterator[DeclaredMethod])] = callGraph.calleesOf(m)
+        def callersOf(m: DeclaredMethod): TraversableOnce[(DeclaredMethod, Int)] = callGraph.callersOf(m)
+    }
+}
+
+/**
+ * The RTA call graph without the edges that are ruled out by the `CalleeType` facts of the
+ * [[IFDSBasedVariableTypeAnalysis]].
+ *
+ * For each call site with `CalleeType` facts, a callee is only kept if its declaring class is
+ * compatible with one of the receiver types: an exact type has to be a subtype of the declaring
+ * class, an upper bound has to be a subtype or a supertype of it. Call sites without such facts
+ * (e.g., static calls or methods that are not reached by the VTA) keep all RTA edges.
+ *
+ * The [[SensitiveLoggingAnalysis]] only propagates facts along the edges of this call graph if
+ * it is created with it (see `SensitiveLoggingAnalysis.sinkDirected`).
+ */
+class RefinedCallGraph private[exercise] (
+        callees: Map[DeclaredMethod, Map[Int, Set[DeclaredMethod]]],
+        callers: Map[DeclaredMethod, List[(DeclaredMethod, Int)]]
+) extends CallGraphView {
+
+    def calleesOf(m: DeclaredMethod): Iterator[(Int, Iterator[DeclaredMethod])] =
+        callees.getOrElse(m, Map.empty).iterator.map { case (pc, targets) ⇒ (pc, targets.iterator) }
+
+    def callersOf(m: DeclaredMethod): TraversableOnce[(DeclaredMethod, Int)] = callers.getOrElse(m, Nil)
+
+    override def calleesOf(m: DeclaredMethod, pc: Int): Iterator[DeclaredMethod] =
+        callees.get(m).flatMap(_.get(pc)).map(_.iterator).getOrElse(Iterator.empty)
+
+    override def isCallee(m: DeclaredMethod, pc: Int, callee: DeclaredMethod): Boolean =
+        callees.get(m).flatMap(_.get(pc)).exists(_.contains(callee))
+}
+
+object RefinedCallGraph {
+
+    /**
+     * Runs the [[IFDSBasedVariableTypeAnalysis]] in the project's property store and refines the
+     * RTA call graph with its results. As the analysis is run as a phase of the project's
+     * analyses manager, this has to be called before the analyses that use the refined call
+     * graph are scheduled.
+     */
+    def compute(p: SomeProject): RefinedCallGraph = RefinedCallGraph(p, receiverTypes(p))
+
+    /**
+     * Refines the RTA call graph using the given receiver types of the call sites.
+     *
+     * @param receiverTypes The `CalleeType` facts per method and pc of the call site.
+     */
+    def apply(
+        p:             SomeProject,
+        receiverTypes: Map[(DeclaredMethod, Int), Set[CalleeType]]
+    ): RefinedCallGraph = {
+        val classHierarchy = p.classHierarchy
+        val declaredMethods = p.get(DeclaredMethodsKey)
+        val callGraph = p.get(RTACallGraphKey)
+
+        def isPossibleCallee(callee: DeclaredMethod, types: Set[CalleeType]): Boolean = {
+            val declaringClass = callee.declaringClassType
+            types.exists {
+                case CalleeType(_, t: ObjectType, upperBound) ⇒
+                    classHierarchy.isSubtypeOf(t, declaringClass) ||
+                        upperBound && classHierarchy.isSubtypeOf(declaringClass, t)
+                case _ ⇒ true // array types
+            }
+        }
+
+        val callees = mutable.Map.empty[DeclaredMethod, Map[Int, Set[DeclaredMethod]]]
+        val callers = mutable.Map.empty[DeclaredMethod, List[(DeclaredMethod, Int)]]
+        p.allMethodsWithBody.foreach { m ⇒
+            val caller = declaredMethods(m)
+            val refinedCallees = callGraph.calleesOf(caller).map {
+                case (pc, targets) ⇒
+                    val refinedTargets = receiverTypes.get((caller, pc)) match {
+                        case Some(types) ⇒ targets.filter(isPossibleCallee(_, types)).toSet
+                        case None        ⇒ targets.toSet
+                    }
+                    refinedTargets.foreach { callee ⇒
+                        callers(callee) = (caller, pc) :: callers.getOrElse(callee, Nil)
+                    }
+                    pc → refinedTargets
+            }.toMap
+            callees(caller) = refinedCallees
+        }
+        new RefinedCallGraph(callees.toMap, callers.toMap)
+    }
+
+    /**
+     * Collects the `CalleeType` facts of the results of the [[IFDSBasedVariableTypeAnalysis]];
+     * the facts refer to the index of the call statement, which is mapped to the call's pc.
+     * As the analysis never kills facts, the results (the facts at the exit statements) contain
+     * the receiver types of all call sites that were reached.
+     */
+    def receiverTypes(p: SomeProject): Map[(DeclaredMethod, Int), Set[CalleeType]] = {
+        val declaredMethods = p.get(DeclaredMethodsKey)
+        val (ps, _) = p.get(FPCFAnalysesManagerKey).runAll(IFDSBasedVariableTypeAnalysis)
+        val receiverTypes = mutable.Map.empty[(DeclaredMethod, Int), Set[CalleeType]]
+        ps.entities(VTAResult.key).foreach { eps ⇒
+            eps.ub.asInstanceOf[VTAResult].flows.foreach {
+                case (statement, facts) ⇒
+                    facts.foreach {
+                        case fact: CalleeType ⇒
+                            val key = (declaredMethods(statement.method), statement.code(fact.line).pc)
+                            receiverTypes(key) = receiverTypes.getOrElse(key, Set.empty) + fact
+                        case _ ⇒
+                    }
+            }
+        }
+        receiverTypes.toMap
+    }
+}
@@ -0,0 +1,53 @@
+package org.opalj.exercise
+
+import java.net.URL
+
+import org.opalj.br.analyses.BasicReport
+import org.opalj.br.analyses.DeclaredMethodsKey
+import org.opalj.br.analyses.Project
+import org.opalj.br.analyses.ProjectAnalysisApplication
+import org.opalj.br.fpcf.FPCFAnalysesManagerKey
+import org.opalj.tac.cg.RTACallGraphKey
+import org.opalj.util.Nanoseconds
+import org.opalj.util.PerformanceEvaluation.time
+
+/**
+ * Compares the RTA call graph with the [[RefinedCallGraph]]: the number of call edges and the
+ * time of a sink directed run of the [[SensitiveLoggingAnalysis]] (including the construction
+ * of the respective call graph) using either graph to select the entry points and the call
+ * edges along which the facts are propagated.
+ */
+object RefinedCallGraphComparison extends ProjectAnalysisApplication {
+
+    override def description: String =
+        "Compares the RTA call graph with the call graph refined by the IFDS based VTA"
+
+    def doAnalyze(p: Project[URL], params: Seq[String], isInterrupted: () ⇒ Boolean): BasicReport = {
+        var rtaTime = Nanoseconds.None
+        var refinedTime = Nanoseconds.None
+
+        val rtaProject = p.recreate()
+        val rtaFindings = new FindingCollector()
+        time {
+            val analysis = SensitiveLoggingAnalysis.sinkDirected(rtaProject, rtaFindings)
+            rtaProject.get(FPCFAnalysesManagerKey).runAll(analysis)
+        } { t ⇒ rtaTime = t }
+
+        val refinedProject = p.recreate()
+        val refinedFindings = new FindingCollector()
+        var refinedCallGraph: RefinedCallGraph = null
+        time {
+            refinedCallGraph = RefinedCallGraph.compute(refinedProject)
+            val analysis = SensitiveLoggingAnalysis.sinkDirected(refinedProject, refinedCallGraph, refinedFindings)
+            refinedProject.get(FPCFAnalysesManagerKey).runAll(analysis)
+        } { t ⇒ refinedTime = t }
+
+        val methods = refinedProject.allMethodsWithBody.map(refinedProject.get(DeclaredMethodsKey)(_))
+        val rtaEdges = CallGraphView(refinedProject.get(RTACallGraphKey)).numberOfEdges(methods)
+        val refinedEdges = refinedCallGraph.numberOfEdges(methods)
+
+        s"call edges: RTA $rtaEdges, refined $refinedEdges (${rtaEdges - refinedEdges} removed)\n"+
+            s"time: RTA ${rtaTime.toSeconds}, refined ${refinedTime.toSeconds}\n"+
+            s"findings: RTA ${rtaFindings.size}, refined ${refinedFindings.size}"
+    }
+}
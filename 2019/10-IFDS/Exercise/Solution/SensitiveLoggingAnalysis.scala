@@ -1,7 +1,10 @@
 package org.opalj.exercise
 
+import java.util.concurrent.ConcurrentHashMap
+
 import org.opalj.br.analyses.SomeProject
 import org.opalj.br.DeclaredMethod
+import org.opalj.br.Method
 import org.opalj.br.ObjectType
 import org.opalj.tac.fpcf.analyses.AbstractIFDSAnalysis
 import org.opalj.tac.fpcf.analyses.Statement
@@ -22,7 +25,6 @@ import org.opalj.fpcf.PropertyStore
 import org.opalj.tac.fpcf.analyses.IFDSAnalysis
 import org.opalj.tac.ArrayLoad
 import org.opalj.tac.ArrayStore
-import org.opalj.tac.Stmt
 import org.opalj.tac.fpcf.analyses.AbstractIFDSNullFact
 
 sealed trait Fact extends AbstractIFDSFact
@@ -32,7 +34,17 @@ case class ArrayElement(index: Int, element: Int) extends Fact
 case class StaticField(classType: ObjectType, fieldName: String) extends Fact
 case class InstanceField(index: Int, classType: ObjectType, fieldName: String) extends Fact
 
+/**
+ * @param isEntryPoint Filters the public methods that are used as entry points.
+ * @param findings Collects the calls that pass sensitive information to the logger.
+ * @param callGraph If defined, the facts only flow along the call edges of this call graph
+ *        (e.g., the [[RefinedCallGraph]]) instead of all edges of the property store's call graph.
+ */
 class SensitiveLoggingAnalysis private (
+        isEntryPoint: Method ⇒ Boolean,
+        findings:     FindingCollector,
+        callGraph:    Option[CallGraphView]
+)(
         implicit
         val project: SomeProject
 ) extends AbstractIFDSAnalysis[Fact] {
@@ -46,104 +58,127 @@ class SensitiveLoggingAnalysis private (
         new Taint(result)
     }
 
-    override def normalFlow(stmt: Statement, succ: Statement, in: Set[Fact]): Set[Fact] =
+    override def normalFlow(stmt: Statement, succ: Statement, in: Set[Fact]): Set[Fact] = {
+        val facts = IndexedFacts(in)
         stmt.stmt.astID match {
             case Assignment.ASTID ⇒
-                handleAssignment(stmt, stmt.stmt.asAssignment.expr, in)
+                handleAssignment(stmt, stmt.stmt.asAssignment.expr, facts)
 
             case ArrayStore.ASTID ⇒
                 val store = stmt.stmt.asArrayStore
                 val definedBy = store.arrayRef.asVar.definedBy
-                val index = getConstValue(store.index, stmt.code)
-                if (isTainted(store.value, in))
+                val index = getConstValue(store.index, stmt)
+                if (isTainted(store.value, facts))
                     if (index.isDefined) // Taint known array index
                         // Instead of using an iterator, we are going to use internal iteration
                         // in ++ definedBy.iterator.map(ArrayElement(_, index.get))
-                        definedBy.foldLeft(in) { (c, n) ⇒ c + ArrayElement(n, index.get) }
+                        definedBy.foldLeft(facts) { (c, n) ⇒ c + ArrayElement(n, index.get) }
                     else // Taint whole array if index is unknown
                         // Instead of using an iterator, we are going to use internal iteration:
                         // in ++ definedBy.iterator.map(Variable)
-                        definedBy.foldLeft(in) { (c, n) ⇒ c + Variable(n) }
-                else in
+                        definedBy.foldLeft(facts) { (c, n) ⇒ c + Variable(n) }
+                else facts
 
             case PutStatic.ASTID ⇒
                 val put = stmt.stmt.asPutStatic
-                if (isTainted(put.value, in))
-                    in + StaticField(put.declaringClass, put.name)
+                if (isTainted(put.value, facts))
+                    facts + StaticField(put.declaringClass, put.name)
                 else
-                    in
+                    facts
 
             case PutField.ASTID ⇒
                 val put = stmt.stmt.asPutField
                 val definedBy = put.objRef.asVar.definedBy
-                if (isTainted(put.value, in))
-                    definedBy.foldLeft(in) { (in, defSite) ⇒
-                        in + InstanceField(defSite, put.declaringClass, put.name)
+                if (isTainted(put.value, facts))
+                    definedBy.foldLeft(facts) { (facts, defSite) ⇒
+                        facts + InstanceField(defSite, put.declaringClass, put.name)
                     }
                 else
-                    in
+                    facts
 
-            case _ ⇒ in
+            case _ ⇒ facts
         }
+    }
 
     /**
-     * Returns true if the expression contains a taint.
+     * Returns true if the expression contains a taint, i.e., if a variable, an array element or
+     * an instance field related to one of the expression's def-sites is tainted.
      */
-    def isTainted(expr: Expr[V], in: Set[Fact]): Boolean = {
-        expr.isVar && in.exists {
-            case Variable(index)            ⇒ expr.asVar.definedBy.contains(index)
-            case ArrayElement(index, _)     ⇒ expr.asVar.definedBy.contains(index)
-            case InstanceField(index, _, _) ⇒ expr.asVar.definedBy.contains(index)
-            case _                          ⇒ false
+    def isTainted(expr: Expr[V], in: IndexedFacts): Boolean = {
+        expr.isVar && in.isTainted(expr.asVar.definedBy)
+    }
+
+    /**
+     * The constant int value that is assigned by each statement of a method's three-address
+     * code or `NoConstant`; computed when a method's constants are requested for the first time.
+     */
+    private[this] val constantValues = new ConcurrentHashMap[Method, Array[Long]]
+
+    final val NoConstant = Long.MaxValue
+
+    def constantValuesOf(stmt: Statement): Array[Long] = {
+        val values = constantValues.get(stmt.method)
+        if (values ne null)
+            return values;
+
+        val code = stmt.code
+        val newValues = new Array[Long](code.length)
+        var idx = 0
+        while (idx < code.length) {
+            val stmt = code(idx)
+            newValues(idx) =
+                if (stmt.astID == Assignment.ASTID && stmt.asAssignment.expr.isIntConst)
+                    stmt.asAssignment.expr.asIntConst.value.toLong
+                else
+                    NoConstant
+            idx += 1
         }
+        val otherValues = constantValues.putIfAbsent(stmt.method, newValues)
+        if (otherValues ne null) otherValues else newValues
     }
 
     /**
      * Returns the constant int value of an expression if it exists, None otherwise.
      */
-    def getConstValue(expr: Expr[V], code: Array[Stmt[V]]): Option[Int] = {
+    def getConstValue(expr: Expr[V], stmt: Statement): Option[Int] = {
         if (expr.isIntConst) Some(expr.asIntConst.value)
         else if (expr.isVar) {
-            val constVals = expr.asVar.definedBy.iterator.map[Option[Int]] { idx ⇒
-                if (idx >= 0) {
-                    val stmt = code(idx)
-                    if (stmt.astID == Assignment.ASTID && stmt.asAssignment.expr.isIntConst)
-                        Some(stmt.asAssignment.expr.asIntConst.value)
-                    else
-                        None
-                } else None
-            }.toIterable
-            if (constVals.forall(option ⇒ option.isDefined && option.get == constVals.head.get))
-                constVals.head
-            else None
+            val values = constantValuesOf(stmt)
+            var value = NoConstant
+            val isConstant = expr.asVar.definedBy.forall { idx ⇒
+                val constant = if (idx >= 0) values(idx) else NoConstant
+                val isSameConstant = constant != NoConstant && (value == NoConstant || constant == value)
+                value = constant
+                isSameConstant
+            }
+            if (isConstant && value != NoConstant) Some(value.toInt) else None
         } else None
     }
 
-    def handleAssignment(stmt: Statement, expr: Expr[V], in: Set[Fact]): Set[Fact] =
+    def handleAssignment(stmt: Statement, expr: Expr[V], in: IndexedFacts): Set[Fact] =
         expr.astID match {
             case Var.ASTID ⇒
                 // This path is not used if the representation is in standard SSA-like form.
-                // It is NOT optimized!
-                val newTaint = in.collect {
-                    case Variable(index) if expr.asVar.definedBy.contains(index) ⇒
-                        Some(Variable(stmt.index))
-                    case ArrayElement(index, taintIndex) if expr.asVar.definedBy.contains(index) ⇒
-                        Some(ArrayElement(stmt.index, taintIndex))
-                    case _ ⇒ None
-                }.flatten
-                in ++ newTaint
+                var facts = in
+                expr.asVar.definedBy.foreach { defSite ⇒
+                    in.factsAt(defSite).foreach {
+                        case Variable(_)                 ⇒ facts += Variable(stmt.index)
+                        case ArrayElement(_, taintIndex) ⇒ facts += ArrayElement(stmt.index, taintIndex)
+                        case _                           ⇒
+                    }
+                }
+                facts
 
             case ArrayLoad.ASTID ⇒
                 val load = expr.asArrayLoad
-                if (in.exists {
+                lazy val element = getConstValue(load.index, stmt)
+                if (in.existsAt(load.arrayRef.asVar.definedBy) {
                     // The specific array element may be tainted
-                    case ArrayElement(index, taintedIndex) ⇒
-                        val element = getConstValue(load.index, stmt.code)
-                        load.arrayRef.asVar.definedBy.contains(index) &&
-                            (element.isEmpty || taintedIndex == element.get)
+                    case ArrayElement(_, taintedIndex) ⇒
+                        element.isEmpty || taintedIndex == element.get
                     // Or the whole array
-                    case Variable(index) ⇒ load.arrayRef.asVar.definedBy.contains(index)
-                    case _               ⇒ false
+                    case Variable(_) ⇒ true
+                    case _           ⇒ false
                 })
                     in + Variable(stmt.index)
                 else
@@ -158,13 +193,12 @@ class SensitiveLoggingAnalysis private (
 
             case GetField.ASTID ⇒
                 val get = expr.asGetField
-                if (in.exists {
+                if (in.existsAt(get.objRef.asVar.definedBy) {
                     // The specific field may be tainted
-                    case InstanceField(index, _, taintedField) ⇒
-                        taintedField == get.name && get.objRef.asVar.definedBy.contains(index)
+                    case InstanceField(_, _, taintedField) ⇒ taintedField == get.name
                     // Or the whole object
-                    case Variable(index) ⇒ get.objRef.asVar.definedBy.contains(index)
-                    case _               ⇒ false
+                    case Variable(_) ⇒ true
+                    case _           ⇒ false
                 })
                     in + Variable(stmt.index)
                 else
@@ -178,41 +212,35 @@ class SensitiveLoggingAnalysis private (
         callee: DeclaredMethod,
         in:     Set[Fact]
     ): Set[Fact] = {
+        // OPAL's IFDS solver takes the callees from the property store; the edges that are not
+        // part of the given call graph are cut by not propagating any fact into the callee
+        if (callGraph.exists(!_.isCallee(declaredMethods(stmt.method), stmt.stmt.pc, callee)))
+            return Set.empty;
+
         val call = asCall(stmt.stmt)
         val allParams = call.allParams
-        var facts = Set.empty[Fact]
-        in.foreach {
-            case Variable(index) ⇒ // Taint formal parameter if actual parameter is tainted
-                allParams.iterator.zipWithIndex.foreach {
-                    case (param, pIndex) if param.asVar.definedBy.contains(index) ⇒
-                        facts += Variable(paramToIndex(pIndex, !callee.definedMethod.isStatic))
-                    case _ ⇒ // Nothing to do
-                }
-
-            case ArrayElement(index, taintedIndex) ⇒
-                // Taint element of formal parameter if element of actual parameter is tainted
-                allParams.zipWithIndex.collect {
-                    case (param, pIndex) if param.asVar.definedBy.contains(index) ⇒
-                        ArrayElement(paramToIndex(pIndex, !callee.definedMethod.isStatic), taintedIndex)
-                }
-
-            case InstanceField(index, declClass, taintedField) ⇒
-                // Taint field of formal parameter if field of actual parameter is tainted
-                // Only if the formal parameter is of a type that may have that field!
-                allParams.iterator.zipWithIndex.foreach {
-                    case (param, pIndex) if param.asVar.definedBy.contains(index) &&
-                        (paramToIndex(pIndex, !callee.definedMethod.isStatic) != -1 ||
-                            classHierarchy.isSubtypeOf(declClass, callee.declaringClassType)) ⇒
-                        facts += InstanceField(paramToIndex(pIndex, !callee.definedMethod.isStatic), declClass, taintedField)
-                    case _ ⇒ // Nothing to do
+        val facts = IndexedFacts(in)
+        val includeThis = !callee.definedMethod.isStatic
+        var flows: Set[Fact] = facts.nonDefSiteFacts.filter(_.isInstanceOf[StaticField])
+        allParams.iterator.zipWithIndex.foreach {
+            case (param, pIndex) ⇒
+                val formalIndex = paramToIndex(pIndex, includeThis)
+                param.asVar.definedBy.foreach { defSite ⇒
+                    facts.factsAt(defSite).foreach {
+                        case Variable(_) ⇒ // Taint formal parameter if actual parameter is tainted
+                            flows += Variable(formalIndex)
+
+                        // Taint field of formal parameter if field of actual parameter is tainted
+                        // Only if the formal parameter is of a type that may have that field!
+                        case InstanceField(_, declClass, taintedField) if formalIndex != -1 ||
+                            classHierarchy.isSubtypeOf(declClass, callee.declaringClassType) ⇒
+                            flows += InstanceField(formalIndex, declClass, taintedField)
+
+                        case _ ⇒ // Nothing to do
+                    }
                 }
-
-            case sf: StaticField ⇒
-                facts += sf
-
-            case _ ⇒ // Nothing to do
         }
-        facts
+        flows
     }
 
     override def returnFlow(
@@ -248,15 +276,16 @@ class SensitiveLoggingAnalysis private (
             // Propagate taints of the return value
             if (exit.stmt.astID == ReturnValue.ASTID && stmt.stmt.astID == Assignment.ASTID) {
                 val returnValue = exit.stmt.asReturnValue.expr.asVar
-                in.foreach {
-                    case Variable(index) if returnValue.definedBy.contains(index) ⇒
-                        flows += Variable(stmt.index)
-                    case ArrayElement(index, taintedIndex) if returnValue.definedBy.contains(index) ⇒
-                        ArrayElement(stmt.index, taintedIndex)
-                    case InstanceField(index, declClass, taintedField) if returnValue.definedBy.contains(index) ⇒
-                        flows += InstanceField(stmt.index, declClass, taintedField)
-
-                    case _ ⇒ // nothing to do
+                val facts = IndexedFacts(in)
+                returnValue.definedBy.foreach { defSite ⇒
+                    facts.factsAt(defSite).foreach {
+                        case Variable(_) ⇒
+                            flows += Variable(stmt.index)
+                        case InstanceField(_, declClass, taintedField) ⇒
+                            flows += InstanceField(stmt.index, declClass, taintedField)
+
+                        case _ ⇒ // nothing to do
+                    }
                 }
             }
 
@@ -271,12 +300,12 @@ class SensitiveLoggingAnalysis private (
     override def callToReturnFlow(stmt: Statement, succ: Statement, in: Set[Fact]): Set[Fact] = {
         val call = asCall(stmt.stmt)
         if (succ.node.isBasicBlock && call.name == "log" && (call.declaringClass eq LoggerType)) {
-            if (in.exists {
-                case Variable(index) ⇒ call.params.exists(p ⇒ p.asVar.definedBy.contains(index))
-                case _               ⇒ false
-            }) {
-                System.out.println(s"VIOLATION in Method ${stmt.method.toJava}")
-            }
+            val facts = IndexedFacts(in)
+            for {
+                param ← call.params
+                defSite ← param.asVar.definedBy
+                fact @ Variable(_) ← facts.factsAt(defSite)
+            } findings.report(Finding(stmt.method.toJava, stmt.index, fact.toString))
             in
         } else if (call.name == "getName" && (call.declaringClass eq UserType) && stmt.stmt.astID == Assignment.ASTID) {
             in + Variable(stmt.index)
@@ -291,15 +320,63 @@ class SensitiveLoggingAnalysis private (
 
     override val entryPoints: Map[DeclaredMethod, Fact] =
         p.allMethodsWithBody.collect {
-            case m if m.isPublic ⇒ declaredMethods(m) → NullFact
+            case m if m.isPublic && isEntryPoint(m) ⇒ declaredMethods(m) → NullFact
         }.toMap
 
 }
 
 object SensitiveLoggingAnalysis extends IFDSAnalysis[Fact] {
-    override def init(p: SomeProject, ps: PropertyStore) = new SensitiveLoggingAnalysis()(p)
+
+    /**
+     * The findings of the analyses that do not use their own collector; they are printed to the
+     * console by the collector's writer thread. The collector is shared by all runs; hence, it is
+     * only closed when the JVM exits.
+     */
+    lazy val consoleFindings: FindingCollector = {
+        val findings = new FindingCollector(Seq(new ConsoleFindingWriter))
+        sys.addShutdownHook(findings.close())
+        findings
+    }
+
+    override def init(p: SomeProject, ps: PropertyStore) =
+        new SensitiveLoggingAnalysis(_ ⇒ true, consoleFindings, None)(p)
 
     override def property: IFDSPropertyMetaInformation[Fact] = Taint
+
+    /** Creates a SARIF writer for the findings of this analysis. */
+    def sarifWriter(file: java.io.File): FindingWriter =
+        new SarifFindingWriter(file, "SensitiveLoggingAnalysis", "FIO13-J", "Sensitive information is logged")
+
+    /**
+     * Creates a scheduler for an analysis that only uses the public methods accepted by
+     * `isEntryPoint` as entry points and, if defined, only the edges of the given call graph.
+     */
+    def withEntryPoints(
+        isEntryPoint: Method ⇒ Boolean,
+        findings:     FindingCollector      = consoleFindings,
+        callGraph:    Option[CallGraphView] = None
+    ): IFDSAnalysis[Fact] = new IFDSAnalysis[Fact] {
+        override def init(p: SomeProject, ps: PropertyStore) =
+            new SensitiveLoggingAnalysis(isEntryPoint, findings, callGraph)(p)
+
+        override def property: IFDSPropertyMetaInformation[Fact] = Taint
+    }
+
+    /**
+     * Creates a scheduler for an analysis that only uses the entry points that can reach a
+     * source and a sink (see [[SinkDirectedSeeding]]) on the RTA call graph.
+     */
+    def sinkDirected(p: SomeProject, findings: FindingCollector = consoleFindings): IFDSAnalysis[Fact] = {
+        withEntryPoints(SinkDirectedSeeding.relevantEntryPoints(p), findings)
+    }
+
+    /**
+     * Like `sinkDirected`, but the entry points are determined on the given call graph, e.g.,
+     * the [[RefinedCallGraph]], and the facts only flow along its edges.
+     */
+    def sinkDirected(p: SomeProject, callGraph: CallGraphView, findings: FindingCollector): IFDSAnalysis[Fact] = {
+        withEntryPoints(SinkDirectedSeeding.relevantEntryPoints(p, callGraph), findings, Some(callGraph))
+    }
 }
 
 class Taint(val flows: Map[Statement, Set[Fact]]) extends IFDSProperty[Fact] {
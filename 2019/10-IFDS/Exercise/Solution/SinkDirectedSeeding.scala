@@ -0,0 +1,58 @@
+package org.opalj.exercise
+
+import org.opalj.br.Method
+import org.opalj.br.ObjectType
+import org.opalj.br.analyses.DeclaredMethodsKey
+import org.opalj.br.analyses.SomeProject
+import org.opalj.br.instructions.MethodInvocationInstruction
+import org.opalj.tac.cg.RTACallGraphKey
+
+import org.opalj.exercise.CallGraphClosures.transitiveCallers
+
+/**
+ * Determines the entry points of the [[SensitiveLoggingAnalysis]] that can lead to a violation.
+ *
+ * As the analysis does not propagate taints from one entry point to another, a violation can
+ * only be found when starting at a public method that can (transitively) call a method with a
+ * source (`User.getName`) as well as a method that calls the logger. All other entry points are
+ * not seeded. The callees of the seeded entry points are not pruned: their summaries may
+ * propagate taints back to the callers via return values and fields.
+ */
+object SinkDirectedSeeding {
+
+    val UserType = ObjectType("util/User")
+    val LoggerType = ObjectType("util/Logger")
+
+    def callsSource(m: Method): Boolean = calls(m, UserType, "getName")
+
+    def callsSink(m: Method): Boolean = calls(m, LoggerType, "log")
+
+    private[this] def calls(m: Method, declaringClass: ObjectType, name: String): Boolean = {
+        m.body.get.instructions.exists {
+            case call: MethodInvocationInstruction ⇒
+                call.name == name && (call.declaringClass eq declaringClass)
+            case _ ⇒ false
+        }
+    }
+
+    /**
+     * The public methods that can reach a source and a sink on the RTA call graph.
+     */
+    def relevantEntryPoints(p: SomeProject): Set[Method] = relevantEntryPoints(p, p.get(RTACallGraphKey))
+
+    /**
+     * The public methods that can reach a source and a sink on the given call graph.
+     */
+    def relevantEntryPoints(p: SomeProject, callGraph: CallGraphView): Set[Method] = {
+        val declaredMethods = p.get(DeclaredMethodsKey)
+
+        val sources = p.allMethodsWithBody.filter(callsSource).map(declaredMethods(_))
+        val sinks = p.allMethodsWithBody.filter(callsSink).map(declaredMethods(_))
+        val reachSource = transitiveCallers(sources, callGraph)
+        val reachSink = transitiveCallers(sinks, callGraph)
+
+        (reachSource intersect reachSink).collect {
+            case m if m.hasSingleDefinedMethod && m.definedMethod.isPublic ⇒ m.definedMethod
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.opalj.exercise
+
+import org.opalj.br.ClassHierarchy
+import org.opalj.br.ObjectType
+import org.opalj.br.analyses.ProjectInformationKey
+import org.opalj.br.analyses.ProjectInformationKeys
+import org.opalj.br.analyses.SomeProject
+
+/**
+ * Answers subtype queries between object types in constant time.
+ *
+ * The classes form a tree (single inheritance); each class is numbered with its pre-order index
+ * and the largest pre-order index of its subclasses, hence, a class is a subclass of another
+ * class iff its index lies in the other class' interval. As interfaces do not fit into the
+ * tree, the (transitive) subtypes of each interface are stored as a bit set of the types' ids
+ * that only extends to the largest id of the interface's subtypes.
+ * Types that are not known when the index is created are answered by the class hierarchy.
+ */
+class SubtypeIndex(classHierarchy: ClassHierarchy) {
+
+    private[this] val numberOfTypes = ObjectType.objectTypesCount
+
+    private[this] val preOrder = Array.fill(numberOfTypes)(-1)
+
+    private[this] val lastDescendant = new Array[Int](numberOfTypes)
+
+    private[this] val interfaceSubtypes = new Array[java.util.BitSet](numberOfTypes)
+
+    locally {
+        var nextIndex = 0
+        // (type, true) is pushed when the type's subclasses are done
+        var worklist: List[(ObjectType, Boolean)] = List((ObjectType.Object, false))
+        while (worklist.nonEmpty) {
+            val (t, isDone) = worklist.head
+            worklist = worklist.tail
+            if (isDone) {
+                lastDescendant(t.id) = nextIndex - 1
+            } else if (t.id < numberOfTypes && preOrder(t.id) == -1) {
+                preOrder(t.id) = nextIndex
+                nextIndex += 1
+                worklist = (t, true) :: worklist
+                classHierarchy.directSubclassesOf(t).foreach { subclass ⇒
+                    worklist = (subclass, false) :: worklist
+                }
+            }
+        }
+
+        classHierarchy.allSubtypes(ObjectType.Object, reflexive = false).foreach { t ⇒
+            if (t.id < numberOfTypes && classHierarchy.isInterface(t).isYes) {
+                // most interfaces only have a few subtypes; hence, the bit set only covers the
+                // ids up to the largest id of the interface's subtypes
+                val subtypeIds = classHierarchy.allSubtypes(t, reflexive = true).iterator.map(_.id).toList
+                val subtypes = new java.util.BitSet(subtypeIds.max + 1)
+                subtypeIds.foreach(subtypes.set)
+                interfaceSubtypes(t.id) = subtypes
+            }
+        }
+    }
+
+    def isSubtypeOf(subtype: ObjectType, supertype: ObjectType): Boolean = {
+        if ((subtype eq supertype) || (supertype eq ObjectType.Object))
+            true
+        else if (subtype.id >= numberOfTypes || supertype.id >= numberOfTypes)
+            classHierarchy.isSubtypeOf(subtype, supertype)
+        else if (interfaceSubtypes(supertype.id) ne null)
+            interfaceSubtypes(supertype.id).get(subtype.id)
+        else if (preOrder(subtype.id) == -1 || preOrder(supertype.id) == -1)
+            // an interface is only a subtype of interfaces and Object
+            (interfaceSubtypes(subtype.id) eq null) && classHierarchy.isSubtypeOf(subtype, supertype)
+        else {
+            val index = preOrder(subtype.id)
+            preOrder(supertype.id) <= index && index <= lastDescendant(supertype.id)
+        }
+    }
+}
+
+object SubtypeIndexKey extends ProjectInformationKey[SubtypeIndex, Nothing] {
+
+    override protected def requirements: ProjectInformationKeys = Nil
+
+    override protected def compute(project: SomeProject): SubtypeIndex =
+        new SubtypeIndex(project.classHierarchy)
+}
@@ -0,0 +1,55 @@
+package org.opalj.exercise
+
+import org.scalatest.FunSpec
+import org.scalatest.Matchers
+
+import org.opalj.br.ClassHierarchy
+import org.opalj.br.ObjectType
+
+class SubtypeIndexTests extends FunSpec with Matchers {
+
+    val classHierarchy = ClassHierarchy.PreInitializedClassHierarchy
+
+    val index = new SubtypeIndex(classHierarchy)
+
+    val types = classHierarchy.allSubtypes(ObjectType.Object, reflexive = true).toList
+
+    describe("the subtype index") {
+
+        it("should answer all queries like the class hierarchy") {
+            for {
+                subtype ← types
+                supertype ← types
+            } withClue(s"$subtype <: $supertype") {
+                index.isSubtypeOf(subtype, supertype) should be(classHierarchy.isSubtypeOf(subtype, supertype))
+            }
+        }
+
+        it("should find the subclasses of a class") {
+            index.isSubtypeOf(ObjectType.RuntimeException, ObjectType.Exception) should be(true)
+            index.isSubtypeOf(ObjectType.RuntimeException, ObjectType.Throwable) should be(true)
+            index.isSubtypeOf(ObjectType.Exception, ObjectType.RuntimeException) should be(false)
+            index.isSubtypeOf(ObjectType.Error, ObjectType.Exception) should be(false)
+        }
+
+        it("should find the subtypes of an interface") {
+            index.isSubtypeOf(ObjectType.RuntimeException, ObjectType.Serializable) should be(true)
+            index.isSubtypeOf(ObjectType.Serializable, ObjectType.Serializable) should be(true)
+            index.isSubtypeOf(ObjectType.Object, ObjectType.Serializable) should be(false)
+            index.isSubtypeOf(ObjectType.Cloneable, ObjectType.Serializable) should be(false)
+        }
+
+        it("should not consider an interface a subtype of a class other than Object") {
+            index.isSubtypeOf(ObjectType.Serializable, ObjectType.Throwable) should be(false)
+            index.isSubtypeOf(ObjectType.Serializable, ObjectType.Object) should be(true)
+        }
+
+        it("should answer queries for types that are created after the index") {
+            val newType = ObjectType("subtypeindex/NewType")
+            index.isSubtypeOf(newType, newType) should be(true)
+            index.isSubtypeOf(newType, ObjectType.Object) should be(true)
+            index.isSubtypeOf(newType, ObjectType.Exception) should be(classHierarchy.isSubtypeOf(newType, ObjectType.Exception))
+            index.isSubtypeOf(ObjectType.Exception, newType) should be(false)
+        }
+    }
+}
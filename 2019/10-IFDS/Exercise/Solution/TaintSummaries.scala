@@ -0,0 +1,135 @@
+package org.opalj.exercise
+
+import java.io.File
+
+import org.opalj.br.DeclaredMethod
+import org.opalj.br.ObjectType
+import org.opalj.br.analyses.DeclaredMethodsKey
+import org.opalj.br.analyses.SomeProject
+import org.opalj.br.fpcf.PropertyStoreKey
+import org.opalj.tac.LazyDetachedTACAIKey
+import org.opalj.tac.fpcf.analyses.Statement
+
+/**
+ * Stores the summaries that the [[SensitiveLoggingAnalysis]] computes for library methods, i.e.,
+ * the facts at the exit statements per method and input fact, in a [[LibrarySummaryStore]].
+ *
+ * The summaries are set in the property store before the analysis runs; hence, the solver uses
+ * them like the results of a previous callee analysis. Only the summaries of methods that do not
+ * invoke methods are stored, all other summaries depend on the call graph.
+ */
+object TaintSummaries {
+
+    final val Version = 1
+
+    def store(directory: File): LibrarySummaryStore =
+        new LibrarySummaryStore(directory, "sensitive-logging", Version)
+
+    def encode(fact: Fact): String = fact match {
+        case NullFact                                   ⇒ "N"
+        case Variable(index)                            ⇒ s"V $index"
+        case ArrayElement(index, element)               ⇒ s"A $index $element"
+        case StaticField(classType, fieldName)          ⇒ s"S ${classType.fqn} $fieldName"
+        case InstanceField(index, classType, fieldName) ⇒ s"I $index ${classType.fqn} $fieldName"
+    }
+
+    def decode(fact: String): Fact = fact.split(' ') match {
+        case Array("N")                           ⇒ NullFact
+        case Array("V", index)                    ⇒ Variable(index.toInt)
+        case Array("A", index, element)           ⇒ ArrayElement(index.toInt, element.toInt)
+        case Array("S", classType, fieldName)     ⇒ StaticField(ObjectType(classType), fieldName)
+        case Array("I", index, classType, fieldName) ⇒
+            InstanceField(index.toInt, ObjectType(classType), fieldName)
+        case _ ⇒ throw new IllegalArgumentException(s"unknown fact: $fact")
+    }
+
+    /** `<method>|<input fact>` → `<exit statement index>=<fact>;<fact>,...` */
+    private[this] def summaryKey(m: DeclaredMethod, fact: Fact): String = s"${m.toJava}|${encode(fact)}"
+
+    /** Encodes the facts at the exit statements as `<exit statement index>=<fact>;<fact>,...`. */
+    def encodeFlows(taint: Taint): String = {
+        taint.flows.map {
+            case (statement, facts) ⇒ s"${statement.index}="+facts.map(encode).mkString(";")
+        }.mkString(",")
+    }
+
+    /**
+     * Decodes the facts at the exit statements of the given method (see `encodeFlows`); the
+     * method's three-address code is only computed if there are exit facts. Throws an
+     * `IllegalArgumentException` if the flows are malformed.
+     */
+    def decodeFlows(p: SomeProject, m: DeclaredMethod, flows: String): Taint = {
+        lazy val tac = p.get(LazyDetachedTACAIKey)(m.definedMethod)
+        val exitFacts = flows.split(',').filter(_.nonEmpty).map { exit ⇒
+            exit.split("=", -1) match {
+                case Array(index, facts) ⇒
+                    val statement = new Statement(
+                        m.definedMethod,
+                        tac.cfg.bb(index.toInt),
+                        tac.stmts(index.toInt),
+                        index.toInt,
+                        tac.stmts,
+                        tac.cfg
+                    )
+                    statement → facts.split(';').filter(_.nonEmpty).map(decode).toSet
+                case _ ⇒
+                    throw new IllegalArgumentException(s"unknown exit flow: $exit")
+            }
+        }
+        new Taint(exitFacts.toMap)
+    }
+
+    private[this] def libraryMethods(p: SomeProject, store: LibrarySummaryStore): Map[File, Iterable[DeclaredMethod]] = {
+        val declaredMethods = p.get(DeclaredMethodsKey)
+        p.allLibraryClassFiles.flatMap(_.methodsWithBody.map(declaredMethods(_)))
+            .groupBy(m ⇒ store.jarOf(p, m.declaringClassType))
+            .collect { case (Some(jar), methods) ⇒ jar → methods }
+    }
+
+    /**
+     * Sets the stored summaries of the library methods in the project's property store; has to
+     * be called before the analysis is scheduled. The summaries of a jar are grouped by method
+     * once; hence, each method only looks up its own summaries.
+     */
+    def preseed(p: SomeProject, store: LibrarySummaryStore): Int = {
+        val propertyStore = p.get(PropertyStoreKey)
+        var preseeded = 0
+        for {
+            (jar, methods) ← libraryMethods(p, store)
+            summaries ← store.load(jar)
+        } {
+            // the facts' encodings do not contain '|'
+            val summariesByMethod = summaries.toList.groupBy { case (key, _) ⇒ key.substring(0, key.lastIndexOf('|')) }
+            for {
+                m ← methods
+                (key, flows) ← summariesByMethod.getOrElse(m.toJava, Nil)
+            } {
+                val fact = decode(key.substring(key.lastIndexOf('|') + 1))
+                propertyStore.set((m, fact), decodeFlows(p, m, flows))
+                preseeded += 1
+            }
+        }
+        preseeded
+    }
+
+    /**
+     * Stores the final summaries of the library methods that do not invoke methods.
+     */
+    def save(p: SomeProject, store: LibrarySummaryStore): Unit = {
+        val propertyStore = p.get(PropertyStoreKey)
+        val summaries = propertyStore.entities(Taint.key).collect {
+            case eps if eps.isFinal ⇒
+                val (m, fact) = eps.e.asInstanceOf[(DeclaredMethod, Fact)]
+                (m, summaryKey(m, fact) → encodeFlows(eps.asFinal.p))
+        }.toList.groupBy(_._1).mapValues(_.map(_._2))
+
+        for ((jar, methods) ← libraryMethods(p, store)) {
+            val newSummaries = methods.collect {
+                case m if m.hasSingleDefinedMethod && LibrarySummaryStore.invokesNoMethod(m.definedMethod) ⇒
+                    summaries.getOrElse(m, Nil)
+            }.flatten.toMap
+            if (newSummaries.nonEmpty)
+                store.save(jar, store.load(jar).getOrElse(Map.empty) ++ newSummaries)
+        }
+    }
+}
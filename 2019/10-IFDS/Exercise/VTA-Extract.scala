@@ -1,4 +1,14 @@
-trait VTAFact extends SubsumableFact
+trait VTAFact extends SubsumableFact {
+
+    /**
+     * Checks the subsumption with the [[SubtypeIndex]] that the analysis fetched once.
+     */
+    def subsumes(other: AbstractIFDSFact, subtypeIndex: SubtypeIndex): Boolean = false
+
+    override def subsumes(other: AbstractIFDSFact, project: SomeProject): Boolean =
+        subsumes(other, project.get(SubtypeIndexKey))
+}
+
 case object VTANullFact extends VTAFact with SubsumableNullFact
 
 /**
@@ -13,10 +23,10 @@ case class VariableType(definedBy: Int, t: ReferenceType, upperBound: Boolean) e
     /**
      * If this VariableType is an upper bound, it subsumes every subtype.
      */
-    override def subsumes(other: AbstractIFDSFact, project: SomeProject): Boolean = {
+    override def subsumes(other: AbstractIFDSFact, subtypeIndex: SubtypeIndex): Boolean = {
         if (upperBound) other match {
             case VariableType(definedByOther, tOther, _) if definedBy == definedByOther && t.isObjectType && tOther.isObjectType ⇒
-                project.classHierarchy.isSubtypeOf(tOther.asObjectType, t.asObjectType)
+                subtypeIndex.isSubtypeOf(tOther.asObjectType, t.asObjectType)
             case _ ⇒ false
         }
         else false
@@ -35,10 +45,10 @@ case class CalleeType(line: Int, t: ReferenceType, upperBound: Boolean) extends
     /**
      * If this CalleeType is an upper bound, it subsumes every subtype.
      */
-    override def subsumes(other: AbstractIFDSFact, project: SomeProject): Boolean = {
+    override def subsumes(other: AbstractIFDSFact, subtypeIndex: SubtypeIndex): Boolean = {
         if (upperBound) other match {
             case CalleeType(lineOther, tOther, _) if line == lineOther && t.isObjectType && tOther.isObjectType ⇒
-                tOther.asObjectType.isSubtypeOf(t.asObjectType)(project.classHierarchy)
+                subtypeIndex.isSubtypeOf(tOther.asObjectType, t.asObjectType)
             case _ ⇒ false
         }
         else false
@@ -68,6 +78,30 @@ class IFDSBasedVariableTypeAnalysis private (implicit val project: SomeProject)
 
     override protected def nullFact: VTAFact = VTANullFact
 
+    private[this] val subtypeIndex = project.get(SubtypeIndexKey)
+
+    /**
+     * A fact can only subsume facts with the same definition site (VariableType) or call line
+     * (CalleeType); hence, the facts are grouped accordingly and only the upper bounds of a group
+     * are checked against the group's other facts.
+     */
+    override protected def subsume[T <: VTAFact](newFacts: Set[T], project: SomeProject): Set[T] = {
+        val buckets = newFacts.groupBy {
+            case VariableType(definedBy, _, _) ⇒ (0, definedBy)
+            case CalleeType(line, _, _)        ⇒ (1, line)
+            case _                             ⇒ (2, 0)
+        }
+        buckets.valuesIterator.foldLeft(newFacts) { (facts, bucket) ⇒
+            val upperBounds = bucket.filter {
+                case VariableType(_, _, upperBound) ⇒ upperBound
+                case CalleeType(_, _, upperBound)   ⇒ upperBound
+                case _                              ⇒ false
+            }
+            if (upperBounds.isEmpty) facts
+            else facts -- bucket.filter(f ⇒ upperBounds.exists(u ⇒ (u ne f) && u.subsumes(f, subtypeIndex)))
+        }
+    }
+
     override protected def createPropertyValue(result: Map[Statement, Set[VTAFact]]): IFDSProperty[VTAFact] =
         new VTAResult(result)
 
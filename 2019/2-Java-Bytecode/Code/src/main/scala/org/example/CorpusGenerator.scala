@@ -0,0 +1,447 @@
+package org.example
+
+import java.io.File
+import java.io.FileOutputStream
+import java.util.jar.JarEntry
+import java.util.jar.JarOutputStream
+
+import scala.collection.mutable.ArrayBuffer
+import scala.util.Random
+
+import org.opalj.ba.{AccessModifier, CLASS, CODE, FIELD, FIELDS, InstructionElement, METHOD, METHODS}
+import org.opalj.ba.PUBLIC
+import org.opalj.bc.Assembler
+import org.opalj.br.{MethodDescriptor, ObjectType}
+import org.opalj.br.instructions._
+
+/**
+ * The shape of a generated program.
+ *
+ * The generated methods are static methods `m<j>(Object, gen/Handler) : Object` of the classes
+ * `gen/C<i>`; they are distributed evenly over `depth` layers and the methods of a layer only
+ * call methods of the next layer. The value that is passed along the calls (and returned) is
+ * the value that may become tainted.
+ *
+ * @param classes The number of generated classes `gen/C<i>`.
+ * @param methodsPerClass The number of methods per generated class.
+ * @param fanOut The number of call sites per method (except for the methods of the last layer).
+ * @param depth The number of layers of the call graph.
+ * @param dispatchWidth The number of implementations of the interface `gen/Handler`; 0 disables
+ *        virtual calls.
+ * @param virtualCallRatio The share of the call sites that call `Handler.handle`; each
+ *        implementation of `handle` calls one randomly chosen generated method.
+ * @param sourceDensity The share of the methods that call the source.
+ * @param sinkDensity The share of the methods that pass the value to the sink.
+ * @param fieldChainLength The number of fields of a `gen/Holder` the value is copied through
+ *        before it is passed to the sink.
+ * @param style The source and sink methods that are called.
+ * @param seed The seed of the random choices; the same configuration yields the same program.
+ */
+case class CorpusConfig(
+    classes: Int = 100,
+    methodsPerClass: Int = 10,
+    fanOut: Int = 2,
+    depth: Int = 10,
+    dispatchWidth: Int = 4,
+    virtualCallRatio: Double = 0.25,
+    sourceDensity: Double = 0.01,
+    sinkDensity: Double = 0.01,
+    fieldChainLength: Int = 2,
+    style: SourceSinkStyle = SensitiveLogging,
+    seed: Long = 42L
+) {
+
+  require(classes >= 0 && methodsPerClass >= 0, "classes and methodsPerClass must be non-negative")
+  require(fanOut >= 0 && dispatchWidth >= 0 && fieldChainLength >= 0, "counts must be non-negative")
+  require(depth >= 1 && depth <= methods, s"depth must be in [1, methods=$methods]: $depth")
+  require(
+    virtualCallRatio >= 0 && virtualCallRatio <= 1,
+    s"virtualCallRatio must be in [0, 1]: $virtualCallRatio"
+  )
+  require(sourceDensity >= 0 && sourceDensity <= 1, s"sourceDensity must be in [0, 1]: $sourceDensity")
+  require(sinkDensity >= 0 && sinkDensity <= 1, s"sinkDensity must be in [0, 1]: $sinkDensity")
+
+  def methods: Int = classes * methodsPerClass
+
+  def layerOf(method: Int): Int = (method.toLong * depth / methods).toInt
+
+  /** The index of the first method of the layer. */
+  def layerStart(layer: Int): Int = ((layer.toLong * methods + depth - 1) / depth).toInt
+}
+
+/**
+ * The sources and sinks of the analyses: `SensitiveLogging` matches the tests of the IFDS
+ * exercise (`util/User.getName` and `util/Logger.log`), `SourceAndSink` the 2016 testcases.
+ */
+sealed abstract class SourceSinkStyle(val name: String)
+
+case object SensitiveLogging extends SourceSinkStyle("logging")
+
+case object SourceAndSink extends SourceSinkStyle("taint")
+
+/**
+ * Generates a synthetic program of configurable size and shape as a jar; used to measure how
+ * the analyses scale.
+ *
+ * Usage: `CorpusGenerator <jar> [key=value]...` where the keys are the parameters of
+ * [[CorpusConfig]], e.g., `CorpusGenerator corpus.jar classes=10000 methodsPerClass=10`.
+ * The classes are assembled and written one by one; hence, programs with millions of methods
+ * can be generated without keeping them in memory.
+ */
+object CorpusGenerator {
+
+  final val ObjectDescriptor = "Ljava/lang/Object;"
+  final val HandlerType = ObjectType("gen/Handler")
+  final val HolderType = ObjectType("gen/Holder")
+  final val HandleDescriptor = MethodDescriptor("(Ljava/lang/Object;)Ljava/lang/Object;")
+  final val GeneratedMethodDescriptor =
+    MethodDescriptor("(Ljava/lang/Object;Lgen/Handler;)Ljava/lang/Object;")
+  final val NoArgsAndReturnVoid = MethodDescriptor("()V")
+  final val UserType = ObjectType("util/User")
+  final val LoggerType = ObjectType("util/Logger")
+  final val SourceAndSinkType = ObjectType("util/SourceAndSink")
+
+  /** The maximum number of calls of a generated entry method. */
+  final val CallsPerEntry = 1000
+
+  // the value is stored in register 2
+  private final val Value = 2
+
+  type Code = ArrayBuffer[Instruction]
+
+  private def emit(code: Code, instructions: Instruction*): Unit = code ++= instructions
+
+  private def method(
+      accessModifiers: AccessModifier,
+      name: String,
+      descriptor: String,
+      code: Instruction*
+  ): METHOD[AnyRef] = {
+    METHOD[AnyRef](accessModifiers, name, descriptor, CODE[AnyRef](code.map(InstructionElement(_)): _*))
+  }
+
+  private def classType(method: Int, config: CorpusConfig) = {
+    ObjectType(s"gen/C${method / config.methodsPerClass}")
+  }
+
+  private def methodName(method: Int, config: CorpusConfig) = s"m${method % config.methodsPerClass}"
+
+  private def handlerType(i: Int) = ObjectType(s"gen/HandlerImpl$i")
+
+  private def invokeGeneratedMethod(method: Int, config: CorpusConfig) = {
+    INVOKESTATIC(
+      classType(method, config),
+      isInterface = false,
+      methodName(method, config),
+      GeneratedMethodDescriptor
+    )
+  }
+
+  private def invokeObjectConstructor = {
+    INVOKESPECIAL(ObjectType.Object, isInterface = false, "<init>", NoArgsAndReturnVoid)
+  }
+
+  private def defaultConstructor = {
+    method(PUBLIC, "<init>", "()V", ALOAD_0, invokeObjectConstructor, RETURN)
+  }
+
+  private def emitSource(code: Code, style: SourceSinkStyle): Unit = style match {
+    case SensitiveLogging ⇒
+      emit(
+        code,
+        NEW(UserType),
+        DUP,
+        INVOKESPECIAL(UserType, isInterface = false, "<init>", NoArgsAndReturnVoid),
+        INVOKEVIRTUAL(UserType, "getName", MethodDescriptor("()Ljava/lang/String;")),
+        ASTORE(Value)
+      )
+    case SourceAndSink ⇒
+      emit(
+        code,
+        INVOKESTATIC(
+          SourceAndSinkType,
+          isInterface = false,
+          "source",
+          MethodDescriptor("()Ljava/lang/Object;")
+        ),
+        ASTORE(Value)
+      )
+  }
+
+  /** Copies the value through the holder's fields and passes it to the sink. */
+  private def emitSink(code: Code, config: CorpusConfig): Unit = {
+    val holder = Value + 1
+    if (config.fieldChainLength > 0) {
+      emit(code, NEW(HolderType), DUP, INVOKESPECIAL(HolderType, false, "<init>", NoArgsAndReturnVoid))
+      emit(code, ASTORE(holder), ALOAD(holder), ALOAD(Value))
+      emit(code, PUTFIELD(HolderType, "f0", ObjectType.Object))
+      for (f ← 1 until config.fieldChainLength) {
+        emit(code, ALOAD(holder), ALOAD(holder), GETFIELD(HolderType, s"f${f - 1}", ObjectType.Object))
+        emit(code, PUTFIELD(HolderType, s"f$f", ObjectType.Object))
+      }
+      val last = config.fieldChainLength - 1
+      emit(code, ALOAD(holder), GETFIELD(HolderType, s"f$last", ObjectType.Object))
+    } else {
+      emit(code, ALOAD(Value))
+    }
+    config.style match {
+      case SensitiveLogging ⇒
+        emit(
+          code,
+          CHECKCAST(ObjectType.String),
+          INVOKESTATIC(LoggerType, false, "log", MethodDescriptor("(Ljava/lang/String;)V"))
+        )
+      case SourceAndSink ⇒
+        emit(
+          code,
+          INVOKESTATIC(SourceAndSinkType, false, "sink", MethodDescriptor("(Ljava/lang/Object;)V"))
+        )
+    }
+  }
+
+  private def generatedMethod(method: Int, config: CorpusConfig, random: Random) = {
+    val code: Code = ArrayBuffer.empty
+    emit(code, ALOAD_0, ASTORE(Value))
+    if (random.nextDouble() < config.sourceDensity)
+      emitSource(code, config.style)
+
+    val layer = config.layerOf(method)
+    if (layer < config.depth - 1) {
+      val targetsStart = config.layerStart(layer + 1)
+      val targetsEnd = config.layerStart(layer + 2) min config.methods
+      for (_ ← 0 until config.fanOut) {
+        if (config.dispatchWidth > 0 && random.nextDouble() < config.virtualCallRatio) {
+          emit(code, ALOAD_1, ALOAD(Value), INVOKEINTERFACE(HandlerType, "handle", HandleDescriptor))
+        } else {
+          val target = targetsStart + random.nextInt(targetsEnd - targetsStart)
+          emit(code, ALOAD(Value), ALOAD_1, invokeGeneratedMethod(target, config))
+        }
+        emit(code, ASTORE(Value))
+      }
+    }
+
+    if (random.nextDouble() < config.sinkDensity)
+      emitSink(code, config)
+    emit(code, ALOAD(Value), ARETURN)
+
+    this.method(
+      PUBLIC.STATIC,
+      methodName(method, config),
+      GeneratedMethodDescriptor.toJVMDescriptor,
+      code: _*
+    )
+  }
+
+  /** The classes `gen/C<i>`. */
+  def generatedClass(i: Int, config: CorpusConfig, random: Random): CLASS[AnyRef] = {
+    val first = i * config.methodsPerClass
+    val methods = (first until first + config.methodsPerClass).map { m ⇒
+      generatedMethod(m, config, random)
+    }
+    CLASS(
+      accessModifiers = PUBLIC.SUPER,
+      thisType = s"gen/C$i",
+      methods = METHODS(defaultConstructor +: methods: _*)
+    )
+  }
+
+  /** The implementations of `gen/Handler`, which call a randomly chosen generated method. */
+  def handlerClass(i: Int, config: CorpusConfig, random: Random): CLASS[AnyRef] = {
+    val target = random.nextInt(config.methods)
+    val handle = method(
+      PUBLIC,
+      "handle",
+      HandleDescriptor.toJVMDescriptor,
+      ALOAD_1,
+      ALOAD_0,
+      invokeGeneratedMethod(target, config),
+      ARETURN
+    )
+    CLASS(
+      accessModifiers = PUBLIC.SUPER,
+      thisType = handlerType(i).fqn,
+      interfaceTypes = Seq(HandlerType.fqn),
+      methods = METHODS(defaultConstructor, handle)
+    )
+  }
+
+  /**
+   * The entry methods, which call the methods of the first layer; the entry class `gen/Main`
+   * calls the classes `gen/Entry<k>`, each of which calls at most `CallsPerEntry` methods.
+   */
+  def entryClasses(config: CorpusConfig, random: Random): Iterator[CLASS[AnyRef]] = {
+    val entryMethods = config.layerStart(1) max 1
+    val entries = (entryMethods + CallsPerEntry - 1) / CallsPerEntry
+    val entryClasses = Iterator.range(0, entries).map { k ⇒
+      val code: Code = ArrayBuffer.empty
+      for (m ← k * CallsPerEntry until ((k + 1) * CallsPerEntry min entryMethods)) {
+        emit(code, ACONST_NULL)
+        if (config.dispatchWidth > 0) {
+          val handler = handlerType(random.nextInt(config.dispatchWidth))
+          emit(code, NEW(handler), DUP, INVOKESPECIAL(handler, false, "<init>", NoArgsAndReturnVoid))
+        } else {
+          emit(code, ACONST_NULL)
+        }
+        emit(code, invokeGeneratedMethod(m, config), POP)
+      }
+      emit(code, RETURN)
+      CLASS(
+        accessModifiers = PUBLIC.SUPER,
+        thisType = s"gen/Entry$k",
+        methods = METHODS(method(PUBLIC.STATIC, "run", "()V", code: _*))
+      )
+    }
+    val main: Code = ArrayBuffer.empty
+    for (k ← 0 until entries) {
+      emit(main, INVOKESTATIC(ObjectType(s"gen/Entry$k"), false, "run", NoArgsAndReturnVoid))
+    }
+    emit(main, RETURN)
+    val mainClass = CLASS(
+      accessModifiers = PUBLIC.SUPER,
+      thisType = "gen/Main",
+      methods = METHODS(method(PUBLIC.STATIC, "main", "([Ljava/lang/String;)V", main: _*))
+    )
+    entryClasses ++ Iterator(mainClass)
+  }
+
+  /** The interface `gen/Handler`, the class `gen/Holder` and the source and sink classes. */
+  def supportClasses(config: CorpusConfig): Seq[CLASS[AnyRef]] = {
+    val handler = CLASS(
+      accessModifiers = PUBLIC.INTERFACE.ABSTRACT,
+      thisType = HandlerType.fqn,
+      methods = METHODS(METHOD[AnyRef](PUBLIC.ABSTRACT, "handle", HandleDescriptor.toJVMDescriptor))
+    )
+    val holder = CLASS(
+      accessModifiers = PUBLIC.SUPER,
+      thisType = HolderType.fqn,
+      fields = FIELDS((0 until config.fieldChainLength).map { f ⇒
+        FIELD(PUBLIC, s"f$f", ObjectDescriptor)
+      }: _*),
+      methods = METHODS(defaultConstructor)
+    )
+    val sourcesAndSinks = config.style match {
+      case SensitiveLogging ⇒
+        Seq(
+          CLASS(
+            accessModifiers = PUBLIC.SUPER,
+            thisType = UserType.fqn,
+            methods = METHODS(
+              defaultConstructor,
+              method(PUBLIC, "getName", "()Ljava/lang/String;", ACONST_NULL, ARETURN)
+            )
+          ),
+          CLASS(
+            accessModifiers = PUBLIC.SUPER,
+            thisType = LoggerType.fqn,
+            methods = METHODS(
+              defaultConstructor,
+              method(PUBLIC.STATIC, "log", "(Ljava/lang/String;)V", RETURN)
+            )
+          )
+        )
+      case SourceAndSink ⇒
+        Seq(
+          CLASS(
+            accessModifiers = PUBLIC.SUPER,
+            thisType = SourceAndSinkType.fqn,
+            methods = METHODS(
+              defaultConstructor,
+              method(PUBLIC.STATIC, "source", "()Ljava/lang/Object;", ACONST_NULL, ARETURN),
+              method(PUBLIC.STATIC, "sink", "(Ljava/lang/Object;)V", RETURN),
+              method(PUBLIC.STATIC, "sanitize", "(Ljava/lang/Object;)V", RETURN)
+            )
+          )
+        )
+    }
+    Seq(handler, holder) ++ sourcesAndSinks
+  }
+
+  /** All classes of the program; the classes are created lazily. */
+  def classes(config: CorpusConfig): Iterator[CLASS[AnyRef]] = {
+    val random = new Random(config.seed)
+    supportClasses(config).iterator ++
+      Iterator.range(0, config.dispatchWidth).map(handlerClass(_, config, random)) ++
+      Iterator.range(0, config.classes).map(generatedClass(_, config, random)) ++
+      entryClasses(config, random)
+  }
+
+  /** The modification time of the jar's entries; fixed such that the jar only depends on the configuration. */
+  final val EntryTime = 946684800000L // 2000-01-01T00:00:00Z
+
+  /**
+   * Writes the program to the given jar; returns the number of written classes. The same
+   * configuration always yields the same jar (byte for byte).
+   */
+  def write(jar: File, config: CorpusConfig): Int = {
+    val out = new JarOutputStream(new FileOutputStream(jar))
+    try {
+      var count = 0
+      classes(config).foreach { classFile ⇒
+        val (da, _) = classFile.toDA
+        val entry = new JarEntry(classFile.thisType + ".class")
+        entry.setTime(EntryTime)
+        out.putNextEntry(entry)
+        out.write(Assembler(da))
+        out.closeEntry()
+        count += 1
+      }
+      count
+    } finally {
+      out.close()
+    }
+  }
+
+  /**
+   * The configuration is only created once all parameters are known, because the intermediate
+   * configurations might not be valid, e.g., if `methodsPerClass` is reduced before `depth`.
+   */
+  def parse(args: Seq[String]): CorpusConfig = {
+    val params = args.map { arg ⇒
+      arg.split("=", 2) match {
+        case Array(key, value) ⇒ key → value
+        case _                 ⇒ throw new IllegalArgumentException(s"unknown parameter: $arg")
+      }
+    }.toMap
+    val defaults = CorpusConfig()
+    def param[T](key: String, default: T)(convert: String ⇒ T): T =
+      params.get(key).map(convert).getOrElse(default)
+    val style = param("style", defaults.style) {
+      case SensitiveLogging.name ⇒ SensitiveLogging
+      case SourceAndSink.name    ⇒ SourceAndSink
+      case v                     ⇒ throw new IllegalArgumentException(s"unknown parameter: style=$v")
+    }
+    val keys = Set(
+      "classes", "methodsPerClass", "fanOut", "depth", "dispatchWidth", "virtualCallRatio",
+      "sourceDensity", "sinkDensity", "fieldChainLength", "style", "seed"
+    )
+    params.keys.find(key ⇒ !keys.contains(key)).foreach { key ⇒
+      throw new IllegalArgumentException(s"unknown parameter: $key=${params(key)}")
+    }
+    CorpusConfig(
+      classes = param("classes", defaults.classes)(_.toInt),
+      methodsPerClass = param("methodsPerClass", defaults.methodsPerClass)(_.toInt),
+      fanOut = param("fanOut", defaults.fanOut)(_.toInt),
+      depth = param("depth", defaults.depth)(_.toInt),
+      dispatchWidth = param("dispatchWidth", defaults.dispatchWidth)(_.toInt),
+      virtualCallRatio = param("virtualCallRatio", defaults.virtualCallRatio)(_.toDouble),
+      sourceDensity = param("sourceDensity", defaults.sourceDensity)(_.toDouble),
+      sinkDensity = param("sinkDensity", defaults.sinkDensity)(_.toDouble),
+      fieldChainLength = param("fieldChainLength", defaults.fieldChainLength)(_.toInt),
+      style = style,
+      seed = param("seed", defaults.seed)(_.toLong)
+    )
+  }
+
+  def main(args: Array[String]): Unit = {
+    if (args.isEmpty) {
+      println("Usage: CorpusGenerator <jar> [key=value]...")
+      println(s"  defaults: ${CorpusConfig()}")
+      sys.exit(1)
+    }
+    val config = parse(args.tail)
+    val start = System.nanoTime()
+    val count = write(new File(args.head), config)
+    val time = (System.nanoTime() - start) / 1000000
+    println(s"wrote $count classes (${config.methods} generated methods) to ${args.head} in $time ms")
+  }
+}
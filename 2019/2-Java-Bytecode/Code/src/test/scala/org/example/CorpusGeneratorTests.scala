@@ -0,0 +1,84 @@
+package org.example
+
+import java.io.File
+import java.nio.file.Files
+
+import org.scalatest.FunSpec
+import org.scalatest.Matchers
+
+import org.opalj.br.analyses.Project
+import org.opalj.br.instructions.INVOKESTATIC
+
+class CorpusGeneratorTests extends FunSpec with Matchers {
+
+  val config = CorpusConfig(classes = 20, methodsPerClass = 5, depth = 4, sourceDensity = 0.2, sinkDensity = 0.2)
+
+  def generate(config: CorpusConfig): File = {
+    val jar = File.createTempFile("corpus", ".jar")
+    jar.deleteOnExit()
+    CorpusGenerator.write(jar, config)
+    jar
+  }
+
+  def bytes(jar: File): Array[Byte] = Files.readAllBytes(jar.toPath)
+
+  describe("the corpus generator") {
+
+    it("should generate the same jar for the same configuration") {
+      bytes(generate(config)) should be(bytes(generate(config)))
+      bytes(generate(config.copy(style = SourceAndSink))) should be(
+        bytes(generate(config.copy(style = SourceAndSink)))
+      )
+    }
+
+    it("should generate a different program for a different seed") {
+      bytes(generate(config)) should not be (bytes(generate(config.copy(seed = 7L))))
+    }
+
+    it("should generate the configured number of methods") {
+      val project = Project(generate(config))
+      val generatedMethods = project.allClassFiles.iterator.filter(_.thisType.fqn.startsWith("gen/C")).map {
+        _.methods.count(_.name.startsWith("m"))
+      }.sum
+      generatedMethods should be(config.methods)
+      project.allClassFiles.count(_.thisType.fqn.startsWith("gen/HandlerImpl")) should be(config.dispatchWidth)
+    }
+
+    it("should reject invalid configurations") {
+      an[IllegalArgumentException] should be thrownBy CorpusConfig(depth = 0)
+      an[IllegalArgumentException] should be thrownBy CorpusConfig(classes = 1, methodsPerClass = 2, depth = 3)
+      an[IllegalArgumentException] should be thrownBy CorpusConfig(fanOut = -1)
+      an[IllegalArgumentException] should be thrownBy CorpusConfig(sourceDensity = 1.5)
+      an[IllegalArgumentException] should be thrownBy CorpusConfig(sinkDensity = -0.1)
+      an[IllegalArgumentException] should be thrownBy CorpusConfig(virtualCallRatio = 2)
+    }
+
+    it("should only validate the parsed configuration once all parameters are known") {
+      CorpusGenerator.parse(Seq("classes=1", "methodsPerClass=2", "depth=2")) should be(
+        CorpusConfig(classes = 1, methodsPerClass = 2, depth = 2)
+      )
+      an[IllegalArgumentException] should be thrownBy CorpusGenerator.parse(Seq("depth=0"))
+      an[IllegalArgumentException] should be thrownBy CorpusGenerator.parse(Seq("unknown=1"))
+    }
+
+    it("should only call the methods of the next layer") {
+      val project = Project(generate(config.copy(dispatchWidth = 0)))
+      for {
+        classFile ← project.allClassFiles
+        if classFile.thisType.fqn.startsWith("gen/C")
+        m ← classFile.methods
+        if m.name.startsWith("m")
+        invocation ← m.body.get.instructions.collect {
+          case i: INVOKESTATIC if i.declaringClass.fqn.startsWith("gen/C") ⇒ i
+        }
+      } {
+        def index(className: String, methodName: String): Int = {
+          className.substring("gen/C".length).toInt * config.methodsPerClass + methodName.substring(1).toInt
+        }
+        val caller = index(classFile.thisType.fqn, m.name)
+        val callee = index(invocation.declaringClass.fqn, invocation.name)
+        config.layerOf(callee) should be(config.layerOf(caller) + 1)
+      }
+    }
+  }
+}
@@ -1,70 +1,296 @@
 /* BSD 2-Clause License - see OPAL/LICENSE for details. */
 package apsa
 
+import java.io.File
 import java.net.URL
+import java.nio.charset.StandardCharsets.UTF_8
+import java.nio.file.Files
+import java.util.concurrent.ConcurrentLinkedQueue
+
+import scala.collection.JavaConverters._
 
 import org.opalj.br._
 import org.opalj.br.instructions._
+import org.opalj.br.cfg.BasicBlock
+import org.opalj.br.cfg.CFG
 import org.opalj.br.cfg.CFGFactory
 import org.opalj.br.analyses.Project
 import org.opalj.br.analyses.ProjectAnalysisApplication
 import org.opalj.br.analyses.BasicReport
 
+/**
+ * The metrics of the CFGs of a set of methods; instances are not thread-safe, but the metrics
+ * collected by multiple instances can be merged.
+ */
+class CFGStatistics {
+
+  import CFGStatistics._
+
+  var methods = 0L
+  var irreducibleMethods = 0L
+
+  /** The number of basic blocks per length (in instructions). */
+  val bbLengthFrequency = new Array[Long](Char.MaxValue + 1) // maximum size of a method
+
+  /** The number of basic blocks per in-degree; the last entry counts all larger in-degrees. */
+  val bbInDegreeFrequency = new Array[Long](MaxInDegree + 1)
+
+  /** The number of methods per maximum loop-nesting depth; the last entry counts all deeper ones. */
+  val loopNestingFrequency = new Array[Long](MaxLoopNesting + 1)
+
+  var bbInDegreeTotal = 0L
+
+  var bbEndsDueToReturn = 0L
+  var bbEndsDueToPotentialException = 0L
+  var bbEndsDueToControlTransferInstruction = 0L
+  var bbEndsBecauseSuccessorIsJumpedTo = 0L
+
+  def add(m: Method, cfg: CFG[Instruction, Code]): Unit = {
+    val code = m.body.get
+    methods += 1
+    cfg.allBBs.foreach { bb ⇒
+      val instrCount = bb.countInstructions(code)
+      val inDegree = bb.predecessors.size
+      bbInDegreeTotal += inDegree
+      bbInDegreeFrequency(Math.min(inDegree, MaxInDegree)) += 1
+      bbLengthFrequency(instrCount) += 1
+
+      val bbLastInstruction = code.instructions(bb.endPC)
+      if (bbLastInstruction.isReturnInstruction)
+        bbEndsDueToReturn += 1
+      if (bbLastInstruction.isControlTransferInstruction)
+        bbEndsDueToControlTransferInstruction += 1
+      if (bb.successors.exists(succBB ⇒ succBB.isCatchNode || succBB.isAbnormalReturnExitNode))
+        bbEndsDueToPotentialException += 1
+      if (bb.successors.size == 1 && bb.successors.head.predecessors.size > 1)
+        bbEndsBecauseSuccessorIsJumpedTo += 1
+    }
+
+    val loops = LoopStructure(cfg)
+    if (!loops.isReducible)
+      irreducibleMethods += 1
+    loopNestingFrequency(Math.min(loops.maxNestingDepth, MaxLoopNesting)) += 1
+  }
+
+  def +=(other: CFGStatistics): Unit = {
+    def addAll(target: Array[Long], source: Array[Long]): Unit = {
+      var i = 0
+      while (i < target.length) { target(i) += source(i); i += 1 }
+    }
+    methods += other.methods
+    irreducibleMethods += other.irreducibleMethods
+    addAll(bbLengthFrequency, other.bbLengthFrequency)
+    addAll(bbInDegreeFrequency, other.bbInDegreeFrequency)
+    addAll(loopNestingFrequency, other.loopNestingFrequency)
+    bbInDegreeTotal += other.bbInDegreeTotal
+    bbEndsDueToReturn += other.bbEndsDueToReturn
+    bbEndsDueToPotentialException += other.bbEndsDueToPotentialException
+    bbEndsDueToControlTransferInstruction += other.bbEndsDueToControlTransferInstruction
+    bbEndsBecauseSuccessorIsJumpedTo += other.bbEndsBecauseSuccessorIsJumpedTo
+  }
+
+  def bbCount: Long = bbLengthFrequency.sum
+
+  /** The histograms are stored sparsely: `{"<value>": <count>, ...}`. */
+  def toJSON: String = {
+    def histogram(frequency: Array[Long]): String =
+      frequency.iterator.zipWithIndex.collect {
+        case (count, value) if count > 0 ⇒ s""""$value":$count"""
+      }.mkString("{", ",", "}")
+
+    "{" +
+      s""""methods":$methods,""" +
+      s""""irreducibleMethods":$irreducibleMethods,""" +
+      s""""basicBlocks":$bbCount,""" +
+      s""""bbLength":${histogram(bbLengthFrequency)},""" +
+      s""""bbInDegree":${histogram(bbInDegreeFrequency)},""" +
+      s""""maxLoopNesting":${histogram(loopNestingFrequency)},""" +
+      s""""bbEnds":{"return":$bbEndsDueToReturn,"potentialException":$bbEndsDueToPotentialException,""" +
+      s""""controlTransfer":$bbEndsDueToControlTransferInstruction,"successorIsJumpedTo":$bbEndsBecauseSuccessorIsJumpedTo}""" +
+      "}"
+  }
+}
+
+object CFGStatistics {
+
+  final val MaxInDegree = 255
+
+  final val MaxLoopNesting = 63
+}
+
+/**
+ * The loop structure of a CFG.
+ *
+ * A CFG is reducible iff the target of every retreating edge (w.r.t. a depth-first traversal)
+ * dominates the edge's source. The loops are the natural loops of these (back) edges; loops with
+ * the same header are merged. The edges to and from catch nodes are followed, i.e., exception
+ * handlers are part of the loops in which they are reached.
+ */
+class LoopStructure private (val isReducible: Boolean, val maxNestingDepth: Int)
+
+object LoopStructure {
+
+  def apply(cfg: CFG[Instruction, Code]): LoopStructure = {
+    val blocks = cfg.allBBs.toArray
+    val idOf = new java.util.IdentityHashMap[BasicBlock, Integer]()
+    blocks.iterator.zipWithIndex.foreach { case (bb, id) ⇒ idOf.put(bb, id) }
+
+    val successors = blocks.map { bb ⇒
+      bb.successors.iterator.flatMap { succ ⇒
+        if (succ.isBasicBlock) Iterator(succ.asBasicBlock)
+        else if (succ.isCatchNode) succ.successors.iterator.filter(_.isBasicBlock).map(_.asBasicBlock)
+        else Iterator.empty
+      }.map(idOf.get(_).intValue).toArray.distinct
+    }
+    val predecessors = Array.fill(blocks.length)(List.empty[Int])
+    for (id ← blocks.indices; succ ← successors(id)) predecessors(succ) ::= id
+
+    // depth-first traversal: postorder and retreating edges
+    val entry = idOf.get(cfg.startBlock).intValue
+    val visited = new Array[Boolean](blocks.length)
+    val onStack = new Array[Boolean](blocks.length)
+    var postorder = List.empty[Int] // reversed, i.e., reverse postorder
+    var retreatingEdges = List.empty[(Int, Int)]
+    var frames = List((entry, successors(entry).iterator))
+    visited(entry) = true
+    onStack(entry) = true
+    while (frames.nonEmpty) {
+      val (id, it) = frames.head
+      if (it.hasNext) {
+        val succ = it.next()
+        if (!visited(succ)) {
+          visited(succ) = true
+          onStack(succ) = true
+          frames ::= ((succ, successors(succ).iterator))
+        } else if (onStack(succ)) {
+          retreatingEdges ::= ((id, succ))
+        }
+      } else {
+        frames = frames.tail
+        onStack(id) = false
+        postorder ::= id
+      }
+    }
+    val rpo = postorder.toArray
+    val rpoNumber = Array.fill(blocks.length)(-1)
+    rpo.iterator.zipWithIndex.foreach { case (id, number) ⇒ rpoNumber(id) = number }
+
+    // dominators (Cooper, Harvey and Kennedy)
+    val idom = Array.fill(blocks.length)(-1)
+    idom(entry) = entry
+    def intersect(b1: Int, b2: Int): Int = {
+      var finger1 = b1
+      var finger2 = b2
+      while (finger1 != finger2) {
+        while (rpoNumber(finger1) > rpoNumber(finger2)) finger1 = idom(finger1)
+        while (rpoNumber(finger2) > rpoNumber(finger1)) finger2 = idom(finger2)
+      }
+      finger1
+    }
+    var changed = true
+    while (changed) {
+      changed = false
+      rpo.iterator.filter(_ != entry).foreach { id ⇒
+        val processed = predecessors(id).filter(idom(_) != -1)
+        if (processed.nonEmpty) {
+          val newIdom = processed.tail.foldLeft(processed.head)((dom, pred) ⇒ intersect(pred, dom))
+          if (idom(id) != newIdom) {
+            idom(id) = newIdom
+            changed = true
+          }
+        }
+      }
+    }
+    def dominates(dominator: Int, id: Int): Boolean = {
+      var current = id
+      while (current != dominator && current != entry) current = idom(current)
+      current == dominator
+    }
+
+    val (backEdges, otherEdges) = retreatingEdges.partition { case (source, target) ⇒ dominates(target, source) }
+
+    // natural loops
+    val loopBodies = backEdges.groupBy(_._2).map {
+      case (header, edges) ⇒
+        val body = new java.util.BitSet(blocks.length)
+        body.set(header)
+        var worklist = edges.map(_._1).filterNot(body.get)
+        worklist.foreach(body.set)
+        while (worklist.nonEmpty) {
+          val id = worklist.head
+          worklist = worklist.tail
+          predecessors(id).foreach { pred ⇒
+            if (rpoNumber(pred) != -1 && !body.get(pred)) {
+              body.set(pred)
+              worklist ::= pred
+            }
+          }
+        }
+        body
+    }
+    val maxNestingDepth =
+      if (loopBodies.isEmpty) 0
+      else blocks.indices.iterator.map(id ⇒ loopBodies.count(_.get(id))).max
+
+    new LoopStructure(otherEdges.isEmpty, maxNestingDepth)
+  }
+}
+
 object CFGProperties extends ProjectAnalysisApplication {
 
   override def title: String = "Basic Properties of CFGs"
 
   override def description: String = "Computes basic metrics related to CFGs."
 
+  override def analysisSpecificParametersDescription: String =
+    "[-json=<File>] Writes the metrics as JSON"
+
+  override def checkAnalysisSpecificParameters(parameters: Seq[String]): Traversable[String] =
+    parameters.filterNot(_.startsWith("-json=")).map("unknown parameter: "+_)
+
   override def doAnalyze(
     p: Project[URL],
     params: Seq[String],
     isInterrupted: () ⇒ Boolean): BasicReport = {
 
-    val frequency = new Array[Int](Char.MaxValue) // maximum size of a method
-
-    var bbInDegreeTotal = 0
-
-    var bbEndsDueToReturn = 0
-    var bbEndsDueToPotentialException = 0
-    var bbEndsDueToControlTransferInstruction = 0
-    var bbEndsBecauseSuccessorIsJumpedTo = 0
+    // every task takes an instance from the pool (or creates a new one if all are in use) and
+    // returns it afterwards; hence, no instance is updated concurrently and at most one instance
+    // per worker thread is created
+    val pooledStatistics = new ConcurrentLinkedQueue[CFGStatistics]()
 
-    p.allMethodsWithBody.foreach { m ⇒
-      val code = m.body.get
+    p.parForeachMethodWithBody(isInterrupted) { mi ⇒
+      val m = mi.method
       val cfg = CFGFactory(m, p.classHierarchy).get
-      cfg.allBBs.foreach { bb ⇒
-        val instrCount = bb.countInstructions(code)
-        bbInDegreeTotal += bb.predecessors.size
-        frequency(instrCount) = frequency(instrCount) + 1
-
-        val bbLastInstruction = code.instructions(bb.endPC)
-        if (bbLastInstruction.isReturnInstruction)
-          bbEndsDueToReturn += 1
-        if (bbLastInstruction.isControlTransferInstruction)
-          bbEndsDueToControlTransferInstruction += 1
-        if (bb.successors.exists(succBB ⇒ succBB.isCatchNode || succBB.isAbnormalReturnExitNode))
-          bbEndsDueToPotentialException += 1
-        if (bb.successors.size == 1 && bb.successors.head.predecessors.size > 1)
-          bbEndsBecauseSuccessorIsJumpedTo += 1
+      val taskStatistics = Option(pooledStatistics.poll()).getOrElse(new CFGStatistics)
+      try {
+        taskStatistics.add(m, cfg)
+      } finally {
+        pooledStatistics.add(taskStatistics)
       }
     }
 
-    var maxCount = 0
+    val statistics = new CFGStatistics
+    pooledStatistics.asScala.foreach(statistics += _)
+    params.find(_.startsWith("-json=")).foreach { param ⇒
+      Files.write(new File(param.substring("-json=".length)).toPath, statistics.toJSON.getBytes(UTF_8))
+    }
+
+    import statistics._
+
+    var maxCount = 0L
     var mostFrequentLength = 0
     var maxBBLength = 0
-    var bbCount = 0
-    var bbLengthTotal = 0
+    var bbLengthTotal = 0L
 
-    frequency.iterator.zipWithIndex.foreach { e ⇒
+    bbLengthFrequency.iterator.zipWithIndex.foreach { e ⇒
       val (count, bbLength) = e
-      bbCount += count
       bbLengthTotal += (count * bbLength)
       if (count > 0) maxBBLength = bbLength
       if (count >= maxCount) {
         maxCount = count; mostFrequentLength = bbLength
       }
     }
+    val maxLoopNesting = loopNestingFrequency.lastIndexWhere(_ > 0)
 
     "Reasons why a basic block ends:\n" +
       "\treturn instruction:     " + bbEndsDueToReturn + "\n" +
@@ -72,9 +298,14 @@ object CFGProperties extends ProjectAnalysisApplication {
       "\tcontrol-transfer:       " + bbEndsDueToControlTransferInstruction + "\n" +
       "\tsuccessor is jumped-to: " + bbEndsBecauseSuccessorIsJumpedTo + "\n" +
       "Average in-degree of basic blocks : " + (bbInDegreeTotal.toDouble / bbCount.toDouble) + "\n" +
-      "Most frequent basic-block length  : " + mostFrequentLength + "(" + frequency(
+      "Most frequent basic-block length  : " + mostFrequentLength + "(" + bbLengthFrequency(
         mostFrequentLength) + "/" + bbCount + ")\n" +
       "Max length of a basic block       : " + maxBBLength + "\n" +
-      "Average length of basic blocks    : " + (bbLengthTotal.toDouble / bbCount.toDouble)
+      "Average length of basic blocks    : " + (bbLengthTotal.toDouble / bbCount.toDouble) + "\n" +
+      "Methods with irreducible CFGs     : " + irreducibleMethods + "/" + methods + "\n" +
+      "Max loop-nesting depth            : " + (
+        if (maxLoopNesting == -1) "-(no methods)"
+        else maxLoopNesting + "(" + loopNestingFrequency(maxLoopNesting) + " methods)"
+      )
   }
 }
@@ -17,33 +17,28 @@ object IgnoredReturnValue extends ProjectAnalysisApplication {
     "Finds method invocations where the return value is immediately popped and therefore ignored."
   }
 
-  override def doAnalyze(p: Project[URL], params: Seq[String], isInterrupted: () ⇒ Boolean): BasicReport = {
-    // Parallelization is left as an exercise.
+  override def analysisSpecificParametersDescription: String = InvocationIndex.ParameterDescription
+
+  override def checkAnalysisSpecificParameters(parameters: Seq[String]): Traversable[String] =
+    parameters.filterNot(InvocationIndex.isParameter).map("unknown parameter: "+_)
 
+  override def doAnalyze(p: Project[URL], params: Seq[String], isInterrupted: () ⇒ Boolean): BasicReport = {
+    val index = InvocationIndex(p, params, isInterrupted)
+
+    // Let's search for method invocations followed by a pop.
+    // Given that the return value of methods which return a long or double
+    // value is of computational type category 2, we have to search for
+    // some POPInstructions. This approach also matches cases
+    // where a POP2 actually pops the returned value and some other value;
+    // however, this is not considered a problem, because the return value
+    // is popped and that is what we are locking for.
     val methodsWhoseReturnValueIsIgnored =
-      p.allMethodsWithBody // let's iterate over all methods which have a body
-        .flatMap { m ⇒
-          val code = m.body.get
-          code
-            .collectPair {
-              // Let's search for method invocations followed by a pop.
-              // Given that the return value of methods which return a long or double
-              // value is of computational type category 2, we have to search for
-              // some POPInstructions. This approach also matches cases
-              // where a POP2 actually pops the returned value and some other value;
-              // however, this is not considered a problem, because the return value
-              // is popped and that is what we are locking for.
-              case (
-                MethodInvocationInstruction(declClass, _, name, md),
-                _: PopInstruction
-                ) if md.returnType != VoidType ⇒
-                md.toJava(declClass.toJava, name)
-            }
-            .map(_.value)
+      (index.invocationsFollowedBy(POP.opcode) ++ index.invocationsFollowedBy(POP2.opcode))
+        .collect {
+          case (invoked, _) if invoked.descriptor.returnType != VoidType ⇒ invoked.toString
         }
         .toSet.toList.sorted
 
     methodsWhoseReturnValueIsIgnored.mkString("\n")
   }
 }
-
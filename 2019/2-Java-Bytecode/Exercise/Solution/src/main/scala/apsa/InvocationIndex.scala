@@ -0,0 +1,211 @@
+/* BSD 2-Clause License - see OPAL/LICENSE for details. */
+package apsa
+
+import java.io.File
+import java.net.JarURLConnection
+import java.net.URL
+import java.nio.charset.StandardCharsets.UTF_8
+import java.nio.file.Files
+import java.security.MessageDigest
+import java.util.Base64
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+
+import scala.collection.JavaConverters._
+import scala.collection.mutable
+import scala.util.control.NonFatal
+
+import org.opalj.br._
+import org.opalj.br.instructions._
+import org.opalj.br.analyses.Project
+import org.opalj.br.analyses.SomeProject
+
+/** A method as it is referenced by an invocation instruction. */
+case class InvokedMethod(declaringClass: ReferenceType, name: String, descriptor: MethodDescriptor) {
+
+  override def toString: String = descriptor.toJava(declaringClass.toJava, name)
+}
+
+/**
+ * An invocation instruction.
+ *
+ * @param opcode The opcode of the invocation instruction.
+ * @param nextOpcode The opcode of the next instruction; -1 if there is none.
+ */
+case class InvocationSite(method: Method, pc: Int, opcode: Int, nextOpcode: Int)
+
+/**
+ * The invocation instructions of a project indexed by the invoked method (and its declaring
+ * class) as well as by the opcode of the instruction that follows the invocation; hence, call
+ * patterns can be found without iterating over the code of all methods.
+ */
+class InvocationIndex private (val sites: Map[InvokedMethod, IndexedSeq[InvocationSite]]) {
+
+  private[this] val byDeclaringClass: Map[ReferenceType, Iterable[InvokedMethod]] =
+    sites.keys.groupBy(_.declaringClass)
+
+  private[this] lazy val byNextOpcode: Map[Int, IndexedSeq[(InvokedMethod, InvocationSite)]] =
+    sites.iterator.flatMap { case (invoked, ss) ⇒ ss.map(invoked → _) }.toIndexedSeq.groupBy(_._2.nextOpcode)
+
+  private[this] val subtypes = new ConcurrentHashMap[ObjectType, Set[ObjectType]]()
+
+  /** The (reflexive) subtypes of the given type; computed once per type. */
+  def subtypesOf(t: ObjectType, ch: ClassHierarchy): Set[ObjectType] =
+    subtypes.computeIfAbsent(t, _ ⇒ ch.allSubtypes(t, reflexive = true) + t)
+
+  def invocationsOf(declaringClass: ReferenceType): Iterator[(InvokedMethod, IndexedSeq[InvocationSite])] =
+    byDeclaringClass.getOrElse(declaringClass, Nil).iterator.map(invoked ⇒ invoked → sites(invoked))
+
+  /** The invocations of methods whose declaring class is a subtype of the given type. */
+  def invocationsOnSubtypesOf(
+    t: ObjectType,
+    ch: ClassHierarchy): Iterator[(InvokedMethod, IndexedSeq[InvocationSite])] =
+    subtypesOf(t, ch).iterator.flatMap(invocationsOf)
+
+  /** The invocations that are immediately followed by an instruction with the given opcode. */
+  def invocationsFollowedBy(opcode: Int): IndexedSeq[(InvokedMethod, InvocationSite)] =
+    byNextOpcode.getOrElse(opcode, IndexedSeq.empty)
+
+  /**
+   * Stores the index; the first line contains the project's fingerprint (see
+   * `InvocationIndex.fingerprint`), followed by a line per invocation site with the invoked
+   * method and the method that contains the invocation.
+   */
+  def save(file: File, fingerprint: String): Unit = {
+    import InvocationIndex.typeName
+    val siteLines = for {
+      (invoked, ss) ← sites.iterator
+      site ← ss.iterator
+    } yield {
+      val m = site.method
+      Seq(
+        typeName(invoked.declaringClass), invoked.name, invoked.descriptor.toJVMDescriptor,
+        m.classFile.thisType.fqn, m.name, m.descriptor.toJVMDescriptor,
+        site.pc, site.opcode, site.nextOpcode).mkString("\t")
+    }
+    Files.write(file.toPath, (Iterator(s"fingerprint\t$fingerprint") ++ siteLines).toIterable.asJava, UTF_8)
+  }
+}
+
+object InvocationIndex {
+
+  private def typeName(t: ReferenceType): String = t match {
+    case ot: ObjectType ⇒ ot.fqn
+    case at: ArrayType  ⇒ at.toJVMTypeName
+  }
+
+  // `mapValues` would create a view that maps the sites again on every lookup
+  private def groupByInvokedMethod(
+    sites: IndexedSeq[(InvokedMethod, InvocationSite)]): Map[InvokedMethod, IndexedSeq[InvocationSite]] =
+    sites.groupBy(_._1).map { case (invoked, ss) ⇒ invoked → ss.map(_._2) }
+
+  /** The jar file or the class file from which a class file was loaded. */
+  private def originOf(url: URL): File = url.getProtocol match {
+    case "jar" ⇒ new File(url.openConnection().asInstanceOf[JarURLConnection].getJarFileURL.toURI)
+    case _     ⇒ new File(url.toURI)
+  }
+
+  /**
+   * Hashes the path, size and modification time of the jar and class files from which the
+   * project was loaded; the index of a project can only be reused for a project with the same
+   * fingerprint. The class files are not read again; hence, computing the fingerprint is cheap.
+   */
+  def fingerprint(p: Project[URL]): String = {
+    val origins = p.allClassFiles.iterator.flatMap(cf ⇒ p.source(cf.thisType)).map(originOf).toSet
+    val digest = MessageDigest.getInstance("SHA-256")
+    origins.toList.sortBy(_.getPath).foreach { origin ⇒
+      digest.update(s"${origin.getPath}:${origin.length}:${origin.lastModified};".getBytes(UTF_8))
+    }
+    Base64.getEncoder.encodeToString(digest.digest())
+  }
+
+  /** Creates the index in parallel; each method's code is iterated once. */
+  def apply(p: SomeProject, isInterrupted: () ⇒ Boolean = () ⇒ false): InvocationIndex = {
+    val invocations = new ConcurrentLinkedQueue[(InvokedMethod, InvocationSite)]()
+    p.parForeachMethodWithBody(isInterrupted) { mi ⇒
+      val m = mi.method
+      val code = m.body.get
+      code.iterate { (pc, instruction) ⇒
+        instruction match {
+          case MethodInvocationInstruction(declaringClass, _, name, descriptor) ⇒
+            val nextPC = code.pcOfNextInstruction(pc)
+            val nextOpcode = if (nextPC < code.instructions.length) code.instructions(nextPC).opcode else -1
+            invocations.add(
+              (InvokedMethod(declaringClass, name, descriptor), InvocationSite(m, pc, instruction.opcode, nextOpcode)))
+          case _ ⇒
+        }
+      }
+    }
+    new InvocationIndex(groupByInvokedMethod(invocations.asScala.toIndexedSeq))
+  }
+
+  /**
+   * Loads an index stored by `save`; returns `None` if the index was created for a project with
+   * a different fingerprint.
+   */
+  def load(p: Project[URL], file: File): Option[InvocationIndex] = load(p, file, fingerprint(p))
+
+  private def load(p: Project[URL], file: File, projectFingerprint: String): Option[InvocationIndex] = {
+    val lines = Files.readAllLines(file.toPath, UTF_8).asScala.toIndexedSeq
+
+    def parse[T](index: Int)(f: Array[String] ⇒ T): T = {
+      val line = lines(index)
+      try {
+        f(line.split("\t", -1))
+      } catch {
+        case NonFatal(e) ⇒
+          throw new IllegalStateException(s"$file:${index + 1}: corrupt index ($e): $line", e)
+      }
+    }
+
+    if (lines.isEmpty)
+      throw new IllegalStateException(s"$file:1: corrupt index (missing fingerprint)")
+    val storedFingerprint = parse(0) {
+      case Array("fingerprint", storedFingerprint) ⇒ storedFingerprint
+      case _                                       ⇒ throw new IllegalArgumentException("missing fingerprint")
+    }
+    if (storedFingerprint != projectFingerprint)
+      return None;
+
+    // a method typically calls and is called multiple times; hence, each one is resolved once
+    val callers = mutable.HashMap.empty[(String, String, String), Method]
+    val invokedMethods = mutable.HashMap.empty[(String, String, String), InvokedMethod]
+    val sites = lines.indices.tail.map { index ⇒
+      parse(index) {
+        case Array(declaringClass, name, descriptor, callerClass, callerName, callerDescriptor, pc, opcode, nextOpcode) ⇒
+          val invoked = invokedMethods.getOrElseUpdate(
+            (declaringClass, name, descriptor),
+            InvokedMethod(ReferenceType(declaringClass), name, MethodDescriptor(descriptor)))
+          val caller = callers.getOrElseUpdate(
+            (callerClass, callerName, callerDescriptor),
+            p.classFile(ObjectType(callerClass))
+              .flatMap(_.findMethod(callerName, MethodDescriptor(callerDescriptor)))
+              .getOrElse(throw new IllegalArgumentException(s"unknown method $callerClass.$callerName")))
+          (invoked, InvocationSite(caller, pc.toInt, opcode.toInt, nextOpcode.toInt))
+        case _ ⇒
+          throw new IllegalArgumentException("unknown entry")
+      }
+    }
+    Some(new InvocationIndex(groupByInvokedMethod(sites)))
+  }
+
+  val ParameterDescription: String =
+    "[-index=<File>] Loads the invocation index from the file; (re)creates the file if it does not exist or belongs to another version of the project"
+
+  def isParameter(parameter: String): Boolean = parameter.startsWith("-index=")
+
+  /** Loads the index given by the `-index=<File>` parameter or creates it. */
+  def apply(p: Project[URL], params: Seq[String], isInterrupted: () ⇒ Boolean): InvocationIndex = {
+    params.find(isParameter).map(param ⇒ new File(param.substring("-index=".length))) match {
+      case Some(file) ⇒
+        val projectFingerprint = fingerprint(p)
+        val storedIndex = if (file.exists) load(p, file, projectFingerprint) else None
+        storedIndex.getOrElse {
+          val index = InvocationIndex(p, isInterrupted)
+          index.save(file, projectFingerprint)
+          index
+        }
+      case None ⇒ InvocationIndex(p, isInterrupted)
+    }
+  }
+}
@@ -3,10 +3,7 @@ package apsa
 
 import java.net.URL
 
-import scala.collection.JavaConverters._
-
 import org.opalj.br._
-import org.opalj.br.instructions._
 import org.opalj.br.analyses.Project
 import org.opalj.br.analyses.ProjectAnalysisApplication
 import org.opalj.br.analyses.BasicReport
@@ -19,36 +16,33 @@ object SecurityChecksInPrivateOrFinalMethods extends ProjectAnalysisApplication
     "Finds non-private/non-final methods which perform security checks."
   }
 
+  override def analysisSpecificParametersDescription: String = InvocationIndex.ParameterDescription
+
+  override def checkAnalysisSpecificParameters(parameters: Seq[String]): Traversable[String] =
+    parameters.filterNot(InvocationIndex.isParameter).map("unknown parameter: "+_)
+
   override def doAnalyze(p: Project[URL], params: Seq[String], isInterrupted: () ⇒ Boolean): BasicReport = {
-    val violatingMethods = new java.util.concurrent.ConcurrentLinkedQueue[Method]()
     val ch = p.classHierarchy
     val SecurityManagerType = ObjectType("java/lang/SecurityManager")
 
-    val performsSecurityCheck: (PC, Instruction) => Boolean = {
-      case (_, MethodInvocationInstruction(sm, _, name, _)) if (
-        name != "<init>" &&
-        ch.isSubtypeOf(sm, SecurityManagerType)) => true
-      case _ => false
-    }
-
     def isEffectivelyFinal(cf: ClassFile): Boolean = {
       cf.isFinal || cf.constructors.forall(_.isPrivate)
     }
 
-    for {
-      m <- p.allMethodsWithBody.par
+    val index = InvocationIndex(p, params, isInterrupted)
+    val violatingMethods = for {
+      (invoked, sites) <- index.invocationsOnSubtypesOf(SecurityManagerType, ch)
+      if invoked.name != "<init>"
+      m <- sites.iterator.map(_.method)
       if !isEffectivelyFinal(m.classFile)
       if m.classFile.thisType != SecurityManagerType
       if !m.isFinal
       if !m.isStatic
       if !m.isPrivate
-      c = m.body.get
-      if c.exists(performsSecurityCheck)
-    } {
-      violatingMethods.add(m)
+    } yield {
+      m
     }
 
-    violatingMethods.asScala.map(_.toJava).toList.sorted.mkString("\n")
+    violatingMethods.toSet[Method].map(_.toJava).toList.sorted.mkString("\n")
   }
 }
-
@@ -5,7 +5,6 @@ import java.net.URL
 
 import org.opalj.br._
 import org.opalj.br.MethodDescriptor.NoArgsAndReturnVoid
-import org.opalj.br.instructions._
 import org.opalj.br.analyses.Project
 import org.opalj.br.analyses.ProjectAnalysisApplication
 import org.opalj.br.analyses.BasicReport
@@ -14,6 +13,11 @@ object ThreadStop extends ProjectAnalysisApplication {
 
   override def description: String = "Finds calls to Thread.stop."
 
+  override def analysisSpecificParametersDescription: String = InvocationIndex.ParameterDescription
+
+  override def checkAnalysisSpecificParameters(parameters: Seq[String]): Traversable[String] =
+    parameters.filterNot(InvocationIndex.isParameter).map("unknown parameter: "+_)
+
   override def doAnalyze(
     p: Project[URL],
     params: Seq[String],
@@ -22,23 +26,14 @@ object ThreadStop extends ProjectAnalysisApplication {
     val ch = p.classHierarchy
     val ThreadType = ObjectType("java/lang/Thread")
 
-    val performsThreadStopCall: (PC, Instruction) ⇒ Boolean = {
-      case (_, MethodInvocationInstruction(t, _, "stop", NoArgsAndReturnVoid)) if (
-        ch.isSubtypeOf(
-          t,
-          ThreadType)) ⇒
-        true
-      case _ ⇒ false
-    }
-
+    val index = InvocationIndex(p, params, isInterrupted)
     val violatingMethods = for {
-      m <- p.allMethodsWithBody.par
-      c = m.body.get
-      if c.exists(performsThreadStopCall)
+      (InvokedMethod(_, "stop", NoArgsAndReturnVoid), sites) ← index.invocationsOnSubtypesOf(ThreadType, ch)
+      site ← sites
     } yield {
-      m
+      site.method
     }
 
-    violatingMethods.map(_.toJava).toList.sorted.mkString("\n")
+    violatingMethods.toSet[Method].map(_.toJava).toList.sorted.mkString("\n")
   }
 }
@@ -0,0 +1,142 @@
+/* BSD 2-Clause License - see OPAL/LICENSE for details. */
+package apsa
+
+import java.io.File
+import java.net.URL
+import java.nio.charset.StandardCharsets.UTF_8
+import java.nio.file.Files
+
+import scala.collection.JavaConverters._
+
+import org.scalatest.FunSpec
+import org.scalatest.Matchers
+
+import org.opalj.br._
+import org.opalj.br.MethodDescriptor.NoArgsAndReturnVoid
+import org.opalj.br.instructions._
+import org.opalj.br.analyses.Project
+import org.opalj.br.analyses.ProjectAnalysisApplication
+
+class InvocationIndexTests extends FunSpec with Matchers {
+
+  // the test classes of the exercise
+  val project = Project(new File("../IgnoredReturnValue.class"))
+  val otherProject = Project(new File("../ThreadStop.class"))
+  val allTestClasses = Project(
+    Array("IgnoredReturnValue", "ThreadStop", "SecurityChecksInPrivateOrFinalMethods").map(c ⇒ new File(s"../$c.class")),
+    Array.empty[File])
+
+  def newIndexFile(): File = {
+    val file = File.createTempFile("invocations", ".index")
+    file.delete()
+    file.deleteOnExit()
+    file
+  }
+
+  // the sites of an invoked method are collected in parallel; hence, their order is not fixed
+  def sitesOf(index: InvocationIndex): Map[InvokedMethod, Set[InvocationSite]] =
+    index.sites.map { case (invoked, sites) ⇒ invoked → sites.toSet }
+
+  describe("the invocation index") {
+
+    val index = InvocationIndex(project)
+
+    it("should load the saved index") {
+      val file = newIndexFile()
+      index.save(file, InvocationIndex.fingerprint(project))
+      InvocationIndex.load(project, file).map(sitesOf) should be(Some(sitesOf(index)))
+    }
+
+    it("should not load an index of another project") {
+      val file = newIndexFile()
+      InvocationIndex(otherProject).save(file, InvocationIndex.fingerprint(otherProject))
+      InvocationIndex.load(project, file) should be(None)
+    }
+
+    it("should recreate the index of another project") {
+      val file = newIndexFile()
+      InvocationIndex(otherProject).save(file, InvocationIndex.fingerprint(otherProject))
+      sitesOf(InvocationIndex(project, Seq(s"-index=$file"), () ⇒ false)) should be(sitesOf(index))
+      InvocationIndex.load(project, file).map(sitesOf) should be(Some(sitesOf(index)))
+    }
+
+    it("should report the line of a corrupt entry") {
+      val file = newIndexFile()
+      index.save(file, InvocationIndex.fingerprint(project))
+      val lines = Files.readAllLines(file.toPath, UTF_8).asScala
+      Files.write(file.toPath, (lines.take(2) :+ "java/lang/Object\ttoString").asJava, UTF_8)
+      val e = the[IllegalStateException] thrownBy InvocationIndex.load(project, file)
+      e.getMessage should startWith(s"$file:3:")
+    }
+
+    it("should reject an index without a fingerprint") {
+      val file = newIndexFile()
+      index.save(file, InvocationIndex.fingerprint(project))
+      val lines = Files.readAllLines(file.toPath, UTF_8).asScala
+      Files.write(file.toPath, lines.tail.asJava, UTF_8)
+      val e = the[IllegalStateException] thrownBy InvocationIndex.load(project, file)
+      e.getMessage should startWith(s"$file:1:")
+    }
+  }
+
+  // the bytecode scans that were replaced by queries against the index
+
+  def ignoredReturnValuesUsingBytecodeScan(p: Project[URL]): String = {
+    p.allMethodsWithBody.flatMap { m ⇒
+      m.body.get.collectPair {
+        case (MethodInvocationInstruction(declClass, _, name, md), _: PopInstruction) if md.returnType != VoidType ⇒
+          md.toJava(declClass.toJava, name)
+      }.map(_.value)
+    }.toSet.toList.sorted.mkString("\n")
+  }
+
+  def threadStopsUsingBytecodeScan(p: Project[URL]): String = {
+    val ThreadType = ObjectType("java/lang/Thread")
+    p.allMethodsWithBody.filter { m ⇒
+      m.body.get.exists {
+        case (_, MethodInvocationInstruction(t, _, "stop", NoArgsAndReturnVoid)) ⇒
+          p.classHierarchy.isSubtypeOf(t, ThreadType)
+        case _ ⇒ false
+      }
+    }.map(_.toJava).toList.sorted.mkString("\n")
+  }
+
+  def securityChecksUsingBytecodeScan(p: Project[URL]): String = {
+    val SecurityManagerType = ObjectType("java/lang/SecurityManager")
+    def isEffectivelyFinal(cf: ClassFile): Boolean = cf.isFinal || cf.constructors.forall(_.isPrivate)
+    p.allMethodsWithBody.filter { m ⇒
+      !isEffectivelyFinal(m.classFile) &&
+        m.classFile.thisType != SecurityManagerType &&
+        !m.isFinal && !m.isStatic && !m.isPrivate &&
+        m.body.get.exists {
+          case (_, MethodInvocationInstruction(sm, _, name, _)) ⇒
+            name != "<init>" && p.classHierarchy.isSubtypeOf(sm, SecurityManagerType)
+          case _ ⇒ false
+        }
+    }.map(_.toJava).toList.sorted.mkString("\n")
+  }
+
+  describe("the checkers that query the index") {
+
+    def report(checker: ProjectAnalysisApplication): String =
+      checker.doAnalyze(allTestClasses, Seq.empty, () ⇒ false).toConsoleString
+
+    it("should find the same ignored return values as the bytecode scan") {
+      val expected = ignoredReturnValuesUsingBytecodeScan(allTestClasses)
+      expected should not be empty
+      report(IgnoredReturnValue) should be(expected)
+    }
+
+    it("should find the same calls of Thread.stop as the bytecode scan") {
+      val expected = threadStopsUsingBytecodeScan(allTestClasses)
+      expected should not be empty
+      report(ThreadStop) should be(expected)
+    }
+
+    it("should find the same security checks as the bytecode scan") {
+      val expected = securityChecksUsingBytecodeScan(allTestClasses)
+      expected should not be empty
+      report(SecurityChecksInPrivateOrFinalMethods) should be(expected)
+    }
+  }
+}
@@ -0,0 +1,104 @@
+/* BSD 2-Clause License - see OPAL/LICENSE for details. */
+package apsa
+
+import org.scalatest.FunSpec
+import org.scalatest.Matchers
+
+import org.opalj.ba.{CLASS, CODE, METHOD, METHODS, PUBLIC}
+import org.opalj.br.cfg.CFGFactory
+import org.opalj.br.instructions.{RETURN, _}
+import org.opalj.br.{IntegerType, MethodDescriptor}
+import org.opalj.br.ClassHierarchy.PreInitializedClassHierarchy
+
+class LoopStructureTests extends FunSpec with Matchers {
+
+  // the methods are created like the method in org.example.Main.createMethodWithIrreducibleCFG
+  val (classFile, _) = CLASS(
+    thisType = "LoopStructures",
+    methods = METHODS(
+      METHOD(
+        PUBLIC.STATIC,
+        "irreducibleM",
+        MethodDescriptor.JustTakes(IntegerType).toJVMDescriptor,
+        CODE(
+          SIPUSH(42),
+          ISTORE_0,
+          ILOAD_0,
+          IFEQ('then),
+          'else,
+          IINC(0, -1),
+          ILOAD_0,
+          ILOAD_1,
+          IF_ICMPEQ('end),
+          'then,
+          IINC(0, 2),
+          GOTO('else),
+          'end,
+          RETURN
+        )
+      ),
+      METHOD(
+        PUBLIC.STATIC,
+        "nestedLoopsM",
+        MethodDescriptor.JustTakes(IntegerType).toJVMDescriptor,
+        CODE(
+          ICONST_0,
+          ISTORE_1,
+          'outer,
+          ILOAD_1,
+          ILOAD_0,
+          IF_ICMPGE('end),
+          ICONST_0,
+          ISTORE_2,
+          'inner,
+          ILOAD_2,
+          ILOAD_0,
+          IF_ICMPGE('next),
+          IINC(2, 1),
+          GOTO('inner),
+          'next,
+          IINC(1, 1),
+          GOTO('outer),
+          'end,
+          RETURN
+        )
+      ),
+      METHOD(
+        PUBLIC.STATIC,
+        "withoutLoopsM",
+        MethodDescriptor.JustTakes(IntegerType).toJVMDescriptor,
+        CODE(
+          ILOAD_0,
+          IFEQ('end),
+          IINC(0, 1),
+          'end,
+          RETURN
+        )
+      )
+    )
+  ).toBR
+
+  def loopStructure(name: String): LoopStructure = {
+    val m = classFile.findMethod(name).head
+    LoopStructure(CFGFactory(m, PreInitializedClassHierarchy).get)
+  }
+
+  describe("the loop structure of a CFG") {
+
+    it("should identify an irreducible CFG") {
+      loopStructure("irreducibleM").isReducible should be(false)
+    }
+
+    it("should identify a reducible CFG and the nesting depth of its loops") {
+      val loops = loopStructure("nestedLoopsM")
+      loops.isReducible should be(true)
+      loops.maxNestingDepth should be(2)
+    }
+
+    it("should find no loops in a CFG without loops") {
+      val loops = loopStructure("withoutLoopsM")
+      loops.isReducible should be(true)
+      loops.maxNestingDepth should be(0)
+    }
+  }
+}
@@ -4,6 +4,7 @@ package apsa
 import java.net.URL
 
 import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicInteger
 
 import scala.collection.JavaConverters._
 
@@ -16,6 +17,7 @@ import org.opalj.br.MethodDescriptor.NoArgsAndReturnVoid
 import org.opalj.ai.domain.l1.DefaultDomainWithCFGAndDefUse
 import org.opalj.tac.ComputeTACAIKey
 import org.opalj.tac.TACode
+import org.opalj.tac.TACMethodParameter
 import org.opalj.tac.Stmt
 import org.opalj.tac.DUVar
 import org.opalj.tac.VirtualFunctionCall
@@ -40,6 +42,131 @@ object FIO04JChecker extends ProjectAnalysisApplication {
 
   override def description: String = "Finds violations of FIO04-J"
 
+  override def analysisSpecificParametersDescription: String =
+    "[-verbose] Prints the three-address code of the methods with unclosed resources\n"+
+      "[-noPrefilter] Computes the three-address code of all methods (to validate the prefilter)"
+
+  override def checkAnalysisSpecificParameters(parameters: Seq[String]): Traversable[String] =
+    parameters.filterNot(p ⇒ p == "-verbose" || p == "-noPrefilter").map("unknown parameter: "+_)
+
+  /**
+   * A method with resources that are neither closed nor returned; the three-address code is
+   * only rendered when the details are requested.
+   */
+  class UnclosedResources(
+      val method: Method,
+      unclosed: IntTrieSet,
+      tac: Method ⇒ TACode[TACMethodParameter, DUVar[ValueInformation]]
+  ) {
+
+    def message: String = method.toJava(unclosed.mkString("Unclosed resources: {", ", ", "}"))
+
+    def details: String = message + "\n" + ToTxt(tac(method)).mkString("\n")
+  }
+
+  val AutoCloseableType = Type(classOf[AutoCloseable]).asObjectType
+
+  /**
+   * The def-sites of the resources that are initialized by the method, but that are neither
+   * closed on all paths nor returned.
+   */
+  def unclosedResources(
+      taCode: TACode[TACMethodParameter, DUVar[ValueInformation]],
+      ch: ClassHierarchy
+  ): IntTrieSet = {
+    val stmts = taCode.stmts
+    val cfg = taCode.cfg
+    // Fact: The pair consisting of:
+    //       (1) the set of def-sites (the `new` instruction) of initialized resources
+    //           I.e., objects on which an <init> call has happened.
+    //           (Let's ignore that we could have mulitple <init> calls on different paths,
+    //           because such code is not generated by standard compilers.)
+    //       (2) the returned (and not closed) closeables.
+    type Facts = ( /*initialized, but not yet closed*/ IntTrieSet, /*returned*/ IntTrieSet)
+    val seed: Facts = (IntTrieSet.empty, IntTrieSet.empty)
+
+    def transfer(
+        inFacts: Facts,
+        stmt: Stmt[DUVar[ValueInformation]],
+        index: PC,
+        succId: CFG.SuccessorId
+    ): Facts = {
+      stmt match {
+        case NonVirtualMethodCall(_, declaringClass, _, "<init>", _, receiver, _)
+            if (
+              ch.isSubtypeOf(declaringClass, AutoCloseableType) &&
+                // The resources must only be closed if the initializer didn't trow
+                // an exception:
+                succId >= 0 &&
+                // Do not consider calls of the super constructor of a resource or
+                // where the resources was given as a parameter:
+                receiver.asVar.definedBy.forall(_ >= 0)
+            ) ⇒
+          val (notClosed, returned) = inFacts
+          (notClosed ++ receiver.asVar.definedBy, returned)
+
+        // Let's forget about those resources that are stored in fields:
+        case PutField(_, _, _, _, _, DefSites(defSites)) ⇒
+          val (notClosed, returned) = inFacts
+          (notClosed -- defSites, returned)
+
+        case PutStatic(_, _, _, _, DefSites(defSites)) ⇒
+          val (notClosed, returned) = inFacts
+          (notClosed -- defSites, returned)
+
+        // TODO Let's forget resources passed to other methods ...
+
+        // Let's forget about those resources that are returned:
+        case ReturnValue(_, DefSites(defSites)) ⇒
+          val (notClosed, returned) = inFacts
+          (notClosed -- defSites, returned ++ defSites)
+
+        case VirtualMethodCall(_, _, _, "close", NoArgsAndReturnVoid, receiver, _) ⇒
+          val (notClosed, returned) = inFacts
+          (notClosed -- receiver.asVar.definedBy, returned)
+
+        case _ ⇒ inFacts
+      }
+    }
+
+    // Only those resources are closed that are closed on all paths; i.e.,
+    // if a resource is not closed on all paths, we keep it.
+    def join(oldFacts: Facts, newFacts: Facts): Facts = {
+      val (oldNotClosed, oldReturned) = oldFacts
+      val (newNotClosed, newReturned) = newFacts
+      val joinedNotClosed = oldNotClosed ++ newNotClosed
+      val joinedReturned = oldReturned ++ newReturned
+      if (joinedNotClosed.size > oldNotClosed.size || joinedReturned.size > oldReturned.size)
+        (joinedNotClosed, joinedReturned)
+      else
+        oldFacts
+    }
+
+    val (_, unclosedR, unclosedE) = cfg.performForwardDataFlowAnalysis(seed, transfer, join)
+    var allUnclosed = IntTrieSet.empty
+    var allReturned = IntTrieSet.empty
+    if (unclosedR ne null) {
+      val (notClosed, returned) = unclosedR
+      allUnclosed ++= notClosed
+      allReturned ++= returned
+    }
+    if (unclosedE ne null) {
+      val (notClosed, returned) = unclosedE
+      allUnclosed ++= notClosed
+      allReturned ++= returned
+    }
+    allUnclosed -- allReturned
+  }
+
+  /**
+   * Only methods that initialize a resource can leak one; this is checked on the bytecode, i.e.,
+   * without computing the three-address code.
+   */
+  def initializesResource(m: Method, ch: ClassHierarchy): Boolean = m.body.get.instructions.exists {
+    case i: INVOKESPECIAL ⇒ i.name == "<init>" && ch.isSubtypeOf(i.declaringClass, AutoCloseableType)
+    case _                ⇒ false
+  }
+
   def doAnalyze(p: Project[URL], params: Seq[String], isInterrupted: () ⇒ Boolean): BasicReport = {
 
     val ch = p.classHierarchy
@@ -49,103 +176,39 @@ object FIO04JChecker extends ProjectAnalysisApplication {
     }
     val tacaiProvider = p.get(ComputeTACAIKey)
 
-    val bugs = new ConcurrentLinkedQueue[String]()
+    val prefilter = !params.contains("-noPrefilter")
+
+    val bugs = new ConcurrentLinkedQueue[UnclosedResources]()
 
-    val AutoCloseableType = Type(classOf[AutoCloseable]).asObjectType
+    val analyzedMethods = new AtomicInteger(0)
+    val methodsWithTAC = new AtomicInteger(0)
 
     p.parForeachMethodWithBody(isInterrupted) { mi ⇒
       val m = mi.method
-      val taCode = tacaiProvider(m)
-      val stmts = taCode.stmts
-      val cfg = taCode.cfg
-      // Fact: The pair consisting of:
-      //       (1) the set of def-sites (the `new` instruction) of initialized resources
-      //           I.e., objects on which an <init> call has happened.
-      //           (Let's ignore that we could have mulitple <init> calls on different paths,
-      //           because such code is not generated by standard compilers.)
-      //       (2) the returned (and not closed) closeables.
-      type Facts = ( /*initialized, but not yet closed*/ IntTrieSet, /*returned*/ IntTrieSet)
-      val seed: Facts = (IntTrieSet.empty, IntTrieSet.empty)
-
-      def transfer(
-          inFacts: Facts,
-          stmt: Stmt[DUVar[ValueInformation]],
-          index: PC,
-          succId: CFG.SuccessorId
-      ): Facts = {
-        stmt match {
-          case NonVirtualMethodCall(_, declaringClass, _, "<init>", _, receiver, _)
-              if (
-                ch.isSubtypeOf(declaringClass, AutoCloseableType) &&
-                  // The resources must only be closed if the initializer didn't trow
-                  // an exception:
-                  succId >= 0 &&
-                  // Do not consider calls of the super constructor of a resource or
-                  // where the resources was given as a parameter:
-                  receiver.asVar.definedBy.forall(_ >= 0)
-              ) ⇒
-            val (notClosed, returned) = inFacts
-            (notClosed ++ receiver.asVar.definedBy, returned)
-
-          // Let's forget about those resources that are stored in fields:
-          case PutField(_, _, _, _, _, DefSites(defSites)) ⇒
-            val (notClosed, returned) = inFacts
-            (notClosed -- defSites, returned)
-
-          case PutStatic(_, _, _, _, DefSites(defSites)) ⇒
-            val (notClosed, returned) = inFacts
-            (notClosed -- defSites, returned)
-
-          // TODO Let's forget resources passed to other methods ...
-
-          // Let's forget about those resources that are returned:
-          case ReturnValue(_, DefSites(defSites)) ⇒
-            val (notClosed, returned) = inFacts
-            (notClosed -- defSites, returned ++ defSites)
-
-          case VirtualMethodCall(_, _, _, "close", NoArgsAndReturnVoid, receiver, _) ⇒
-            val (notClosed, returned) = inFacts
-            (notClosed -- receiver.asVar.definedBy, returned)
-
-          case _ ⇒ inFacts
+      analyzedMethods.incrementAndGet()
+      // Stage 1: the bytecode based prefilter
+      if (!prefilter || initializesResource(m, ch)) {
+        methodsWithTAC.incrementAndGet()
+        // Stage 2: the data-flow analysis on the three-address code
+        val taCode = tacaiProvider(m)
+        val unclosedAndNotReturned = unclosedResources(taCode, ch)
+        if (unclosedAndNotReturned.nonEmpty) {
+          bugs.add(new UnclosedResources(m, unclosedAndNotReturned, tacaiProvider))
         }
       }
-
-      // Only those resources are closed that are closed on all paths; i.e.,
-      // if a resource is not closed on all paths, we keep it.
-      def join(oldFacts: Facts, newFacts: Facts): Facts = {
-        val (oldNotClosed, oldReturned) = oldFacts
-        val (newNotClosed, newReturned) = newFacts
-        val joinedNotClosed = oldNotClosed ++ newNotClosed
-        val joinedReturned = oldReturned ++ newReturned
-        if (joinedNotClosed.size > oldNotClosed.size || joinedReturned.size > oldReturned.size)
-          (joinedNotClosed, joinedReturned)
-        else
-          oldFacts
-      }
-
-      val (_, unclosedR, unclosedE) = cfg.performForwardDataFlowAnalysis(seed, transfer, join)
-      var allUnclosed = IntTrieSet.empty
-      var allReturned = IntTrieSet.empty
-      if (unclosedR ne null) {
-        val (notClosed, returned) = unclosedR
-        allUnclosed ++= notClosed
-        allReturned ++= returned
-      }
-      if (unclosedE ne null) {
-        val (notClosed, returned) = unclosedE
-        allUnclosed ++= notClosed
-        allReturned ++= returned
-      }
-      var unclosedAndNotReturned = allUnclosed -- allReturned
-      if (unclosedAndNotReturned.nonEmpty) {
-        var msg = m.toJava(unclosedAndNotReturned.mkString("Unclosed resources: {", ", ", "}"))
-        // To get more information:
-        msg += "\n" + ToTxt(taCode).mkString("\n")
-        bugs.add(msg)
-      }
     }
 
-    bugs.asScala.toList.sorted.mkString("\n")
+    // To get more information, the three-address code is printed on request:
+    val render: UnclosedResources ⇒ String =
+      if (params.contains("-verbose")) _.details else _.message
+    val statistics = Seq(
+      s"# methods: ${analyzedMethods.get}",
+      if (prefilter)
+        s"# methods initializing resources (three-address code computed): ${methodsWithTAC.get}"
+      else
+        s"# methods (three-address code computed): ${methodsWithTAC.get}",
+      s"# methods with unclosed resources: ${bugs.size}"
+    )
+    (bugs.asScala.toList.map(render).sorted ++ statistics).mkString("\n")
   }
 }
@@ -0,0 +1,213 @@
+/* BSD 2-Clause License - see OPAL/LICENSE for details. */
+package apsa
+
+import java.net.URL
+
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicInteger
+
+import scala.collection.JavaConverters._
+
+import org.opalj.value.ValueInformation
+import org.opalj.br._
+import org.opalj.br.analyses._
+import org.opalj.br.instructions._
+import org.opalj.br.MethodDescriptor.JustTakes
+import org.opalj.ai.domain.l1.DefaultDomainWithCFGAndDefUse
+import org.opalj.tac.ComputeTACAIKey
+import org.opalj.tac.TACode
+import org.opalj.tac.TACMethodParameter
+import org.opalj.tac.Stmt
+import org.opalj.tac.DUVar
+import org.opalj.tac.VirtualFunctionCall
+import org.opalj.tac.Assignment
+import org.opalj.tac.ExprStmt
+import org.opalj.tac.NonVirtualMethodCall
+import org.opalj.tac.Const
+
+/**
+ * The three-address code of a method with its statements indexed by their AST id; shared by all
+ * rules that check the method.
+ */
+class MethodContext(
+    val method: Method,
+    val taCode: TACode[TACMethodParameter, DUVar[ValueInformation]],
+    val ch: ClassHierarchy
+) {
+
+  def stmts: Array[Stmt[DUVar[ValueInformation]]] = taCode.stmts
+
+  private[this] lazy val indexesByASTID: Map[Int, Array[Int]] =
+    stmts.indices.groupBy(stmts(_).astID).map { case (astID, indexes) ⇒ astID → indexes.toArray }
+
+  /** The statements with the given AST id. */
+  def stmtsWithASTID(astID: Int): Iterator[Stmt[DUVar[ValueInformation]]] =
+    indexesByASTID.getOrElse(astID, Array.empty[Int]).iterator.map(stmts(_))
+
+  def lineNumber(pc: Int): Option[Int] = method.body.get.lineNumber(pc)
+}
+
+/**
+ * A rule of the [[RuleChecker]].
+ */
+trait Rule {
+
+  /** The rule's id, e.g., "EXP02-J". */
+  def id: String
+
+  /**
+   * Checks the method's bytecode; only if a rule accepts the method, the three-address code
+   * is computed.
+   */
+  def mayBeViolatedBy(m: Method, ch: ClassHierarchy): Boolean
+
+  /** Returns a message for each violation of the rule. */
+  def check(context: MethodContext): Iterator[String]
+}
+
+/** EXP02-J: Do not use the Object.equals() method to compare two arrays. */
+object EXP02J extends Rule {
+
+  val id = "EXP02-J"
+
+  val EqualsSignature = MethodDescriptor(ObjectType.Object, BooleanType)
+
+  def mayBeViolatedBy(m: Method, ch: ClassHierarchy): Boolean = m.body.get.instructions.exists {
+    case i: INVOKEVIRTUAL ⇒ i.name == "equals" && i.methodDescriptor == EqualsSignature
+    case _                ⇒ false
+  }
+
+  // Recall that the compiler _may_ replace the call of equals on an Array with a call
+  // of equals on java.lang.Object, hence, we need the receiver's type.
+  def check(context: MethodContext): Iterator[String] = {
+    val calls = context.stmtsWithASTID(Assignment.ASTID).map(_.asAssignment.expr) ++
+      context.stmtsWithASTID(ExprStmt.ASTID).map(_.asExprStmt.expr)
+    for {
+      VirtualFunctionCall(pc, declaringClass, _, "equals", EqualsSignature, receiver, _) ← calls
+      if declaringClass == ObjectType.Object || declaringClass.isArrayType
+      receiverType ← receiver.asVar.value.asReferenceValue.leastUpperType
+      if receiverType.isArrayType
+    } yield {
+      val line = context.lineNumber(pc)
+      context.method.toJava(s"pc=$pc/line=$line: unexpected reference comparison of arrays")
+    }
+  }
+}
+
+/** NUM10-J: Do not construct BigDecimal objects from floating-point literals. */
+object NUM10J extends Rule {
+
+  val id = "NUM10-J"
+
+  val BigDecimalType = ObjectType("java/math/BigDecimal")
+  val JustTakesDoubleSignature = JustTakes(DoubleType)
+
+  def mayBeViolatedBy(m: Method, ch: ClassHierarchy): Boolean = m.body.get.instructions.exists {
+    case i: INVOKESPECIAL ⇒
+      i.declaringClass == BigDecimalType && i.name == "<init>" &&
+        i.methodDescriptor == JustTakesDoubleSignature
+    case _ ⇒ false
+  }
+
+  def check(context: MethodContext): Iterator[String] = {
+    val stmts = context.stmts
+    def initializedWithConstant(index: Int): Boolean = {
+      if (index < 0)
+        return false; // we have the use of a parameter
+
+      stmts(index) match {
+        case Assignment(_, _, _: Const) ⇒ true
+        case _                          ⇒ false
+      }
+    }
+    for {
+      NonVirtualMethodCall(pc, BigDecimalType, _, "<init>", JustTakesDoubleSignature, _, params) ←
+        context.stmtsWithASTID(NonVirtualMethodCall.ASTID)
+      param = params.head
+      if param.isConst || param.asVar.definedBy.forall(initializedWithConstant)
+    } yield {
+      val line = context.lineNumber(pc)
+      context.method.toJava(s"pc=$pc/line=$line: floating-point literal passed to BigDecimal")
+    }
+  }
+}
+
+/** FIO04-J: Release resources when they are no longer needed (see [[FIO04JChecker]]). */
+object FIO04J extends Rule {
+
+  val id = "FIO04-J"
+
+  def mayBeViolatedBy(m: Method, ch: ClassHierarchy): Boolean =
+    FIO04JChecker.initializesResource(m, ch)
+
+  def check(context: MethodContext): Iterator[String] = {
+    val unclosed = FIO04JChecker.unclosedResources(context.taCode, context.ch)
+    if (unclosed.isEmpty) Iterator.empty
+    else Iterator(context.method.toJava(unclosed.mkString("Unclosed resources: {", ", ", "}")))
+  }
+}
+
+/**
+ * Checks several rules in one pass over the project: the three-address code of a method is
+ * computed at most once – if any rule accepts the method's bytecode – and is then shared by all
+ * rules that accepted the method.
+ */
+object RuleChecker extends ProjectAnalysisApplication {
+
+  val AllRules: Seq[Rule] = Seq(EXP02J, NUM10J, FIO04J)
+
+  override def description: String = "Finds violations of EXP02-J, NUM10-J and FIO04-J"
+
+  override def analysisSpecificParametersDescription: String =
+    "[-rules=<Rule>,...] The rules that are checked (default: all)"
+
+  override def checkAnalysisSpecificParameters(parameters: Seq[String]): Traversable[String] = {
+    parameters.flatMap {
+      case p if p.startsWith("-rules=") ⇒
+        p.substring(7).split(',').filterNot(id ⇒ AllRules.exists(_.id == id)).map("unknown rule: "+_)
+      case p ⇒ Seq("unknown parameter: "+p)
+    }
+  }
+
+  def doAnalyze(p: Project[URL], params: Seq[String], isInterrupted: () ⇒ Boolean): BasicReport = {
+
+    val ch = p.classHierarchy
+
+    val rules = params.find(_.startsWith("-rules=")) match {
+      case Some(param) ⇒
+        val ids = param.substring(7).split(',').toSet
+        AllRules.filter(rule ⇒ ids.contains(rule.id))
+      case None ⇒ AllRules
+    }
+
+    p.updateProjectInformationKeyInitializationData(ComputeTACAIKey) { _ ⇒ (m: Method) ⇒
+      new DefaultDomainWithCFGAndDefUse(p, m)
+    }
+    val tacaiProvider = p.get(ComputeTACAIKey)
+
+    val bugs = new ConcurrentLinkedQueue[String]()
+    val methodsWithTAC = new AtomicInteger(0)
+    val violationsPerRule = rules.map(_ → new AtomicInteger(0)).toMap
+
+    p.parForeachMethodWithBody(isInterrupted) { mi ⇒
+      val m = mi.method
+      val applicableRules = rules.filter(_.mayBeViolatedBy(m, ch))
+      if (applicableRules.nonEmpty) {
+        methodsWithTAC.incrementAndGet()
+        val context = new MethodContext(m, tacaiProvider(m), ch)
+        for {
+          rule ← applicableRules
+          violation ← rule.check(context)
+        } {
+          violationsPerRule(rule).incrementAndGet()
+          bugs.add(s"${rule.id}: $violation")
+        }
+      }
+    }
+
+    val statistics =
+      s"# methods with three-address code: ${methodsWithTAC.get}" +:
+        rules.map(rule ⇒ s"# violations of ${rule.id}: ${violationsPerRule(rule).get}")
+    (bugs.asScala.toList.sorted ++ statistics).mkString("\n")
+  }
+}
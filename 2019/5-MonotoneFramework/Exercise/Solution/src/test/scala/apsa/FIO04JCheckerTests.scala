@@ -0,0 +1,52 @@
+/* BSD 2-Clause License - see OPAL/LICENSE for details. */
+package apsa
+
+import java.io.File
+
+import org.scalatest.FunSpec
+import org.scalatest.Matchers
+
+import org.opalj.br.analyses.Project
+
+class FIO04JCheckerTests extends FunSpec with Matchers {
+
+  val classFiles = Array(
+    new File("../Closeables.class"),
+    new File("../../../3-Java-TAC/Exercise/ArraysEquals.class"),
+    new File("../../../3-Java-TAC/Exercise/BigDecimalAndStringLiteral.class")
+  )
+
+  def report(params: String*): List[String] = {
+    val p = Project(classFiles, Array.empty[File])
+    FIO04JChecker.doAnalyze(p, params, () ⇒ false).toConsoleString.split('\n').toList
+  }
+
+  def findings(report: List[String]): List[String] = report.filterNot(_.startsWith("#"))
+
+  def statistic(report: List[String], prefix: String): Int =
+    report.find(_.startsWith(prefix)).get.substring(prefix.length).trim.toInt
+
+  describe("the FIO04JChecker") {
+
+    val prefiltered = report()
+    val unfiltered = report("-noPrefilter")
+
+    it("should report the same unclosed resources with and without the prefilter") {
+      findings(prefiltered) should not be empty
+      findings(prefiltered) should be(findings(unfiltered))
+    }
+
+    it("should compute the three-address code of fewer methods with the prefilter") {
+      val withTAC =
+        statistic(prefiltered, "# methods initializing resources (three-address code computed):")
+      withTAC should be < statistic(unfiltered, "# methods (three-address code computed):")
+    }
+
+    it("should not start the report with an empty line") {
+      val withoutResources = new File("../../../3-Java-TAC/Exercise/ArraysEquals.class")
+      val p = Project(Array(withoutResources), Array.empty[File])
+      val report = FIO04JChecker.doAnalyze(p, Seq.empty, () ⇒ false).toConsoleString
+      report should startWith("# methods: ")
+    }
+  }
+}
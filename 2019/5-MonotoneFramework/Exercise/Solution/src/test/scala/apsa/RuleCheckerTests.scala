@@ -0,0 +1,113 @@
+/* BSD 2-Clause License - see OPAL/LICENSE for details. */
+package apsa
+
+import java.io.File
+import java.net.URL
+
+import org.scalatest.FunSpec
+import org.scalatest.Matchers
+
+import org.opalj.br._
+import org.opalj.br.analyses.Project
+import org.opalj.br.analyses.ProjectAnalysisApplication
+import org.opalj.br.MethodDescriptor.JustTakes
+import org.opalj.ai.domain.l1.DefaultDomainWithCFGAndDefUse
+import org.opalj.tac.ComputeTACAIKey
+import org.opalj.tac.AssignmentLikeStmt
+import org.opalj.tac.VirtualFunctionCall
+import org.opalj.tac.NonVirtualMethodCall
+import org.opalj.tac.Assignment
+import org.opalj.tac.Const
+
+class RuleCheckerTests extends FunSpec with Matchers {
+
+  // the examples of the exercises on EXP02-J, NUM10-J (Java-TAC) and FIO04-J
+  val classFiles = Array(
+    new File("../Closeables.class"),
+    new File("../../../3-Java-TAC/Exercise/ArraysEquals.class"),
+    new File("../../../3-Java-TAC/Exercise/BigDecimalAndStringLiteral.class")
+  )
+
+  // every analysis configures the three-address code; hence, each one gets its own project
+  def project(): Project[URL] = Project(classFiles, Array.empty[File])
+
+  def findings(checker: ProjectAnalysisApplication, params: String*): List[String] = {
+    val report = checker.doAnalyze(project(), params, () ⇒ false).toConsoleString
+    report.split('\n').filter(line ⇒ line.nonEmpty && !line.startsWith("#")).toList.sorted
+  }
+
+  /**
+   * The checks of the original EXP02JAndNUM10JChecker: all statements of all methods are
+   * checked, i.e., there is no bytecode based prefilter.
+   */
+  def exp02JAndNUM10JViolations(p: Project[URL]): List[String] = {
+    val EqualsSignature = MethodDescriptor(ObjectType.Object, BooleanType)
+    val BigDecimalType = ObjectType("java/math/BigDecimal")
+    val JustTakesDoubleSignature = JustTakes(DoubleType)
+
+    p.updateProjectInformationKeyInitializationData(ComputeTACAIKey) { _ ⇒ (m: Method) ⇒
+      new DefaultDomainWithCFGAndDefUse(p, m)
+    }
+    val tacaiProvider = p.get(ComputeTACAIKey)
+
+    p.allMethodsWithBody.toList.flatMap { m ⇒
+      val stmts = tacaiProvider(m).stmts
+      val exp02J = for {
+        AssignmentLikeStmt(
+          _,
+          VirtualFunctionCall(pc, declaringClass, _, "equals", EqualsSignature, receiver, _)
+        ) ← stmts
+        if declaringClass == ObjectType.Object || declaringClass.isArrayType
+        receiverType ← receiver.asVar.value.asReferenceValue.leastUpperType
+        if receiverType.isArrayType
+      } yield {
+        val line = m.body.get.lineNumber(pc)
+        "EXP02-J: "+m.toJava(s"pc=$pc/line=$line: unexpected reference comparison of arrays")
+      }
+
+      def initializedWithConstant(index: Int): Boolean = {
+        if (index < 0)
+          return false; // we have the use of a parameter
+
+        stmts(index) match {
+          case Assignment(_, _, _: Const) ⇒ true
+          case _                          ⇒ false
+        }
+      }
+      val num10J = for {
+        NonVirtualMethodCall(pc, BigDecimalType, _, "<init>", JustTakesDoubleSignature, _, params) ←
+          stmts
+        param = params.head
+        if param.isConst || param.asVar.definedBy.forall(initializedWithConstant)
+      } yield {
+        val line = m.body.get.lineNumber(pc)
+        "NUM10-J: "+m.toJava(s"pc=$pc/line=$line: floating-point literal passed to BigDecimal")
+      }
+
+      exp02J.toList ++ num10J
+    }.sorted
+  }
+
+  describe("the RuleChecker") {
+
+    val ruleCheckerFindings = findings(RuleChecker)
+
+    it("should report the same FIO04-J violations as the FIO04JChecker") {
+      val fio04J = findings(FIO04JChecker).map("FIO04-J: "+_)
+      fio04J should not be empty
+      ruleCheckerFindings.filter(_.startsWith("FIO04-J: ")) should be(fio04J)
+    }
+
+    it("should report the same EXP02-J and NUM10-J violations as the original checks") {
+      val exp02JAndNUM10J = exp02JAndNUM10JViolations(project())
+      exp02JAndNUM10J.exists(_.startsWith("EXP02-J: ")) should be(true)
+      exp02JAndNUM10J.exists(_.startsWith("NUM10-J: ")) should be(true)
+      ruleCheckerFindings.filterNot(_.startsWith("FIO04-J: ")) should be(exp02JAndNUM10J)
+    }
+
+    it("should report the same violations when the rules are checked one at a time") {
+      val oneAtATime = RuleChecker.AllRules.flatMap(rule ⇒ findings(RuleChecker, "-rules="+rule.id))
+      oneAtATime.sorted should be(ruleCheckerFindings)
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package org.opalj.exercise
+
+import java.io.File
+import java.net.URL
+import java.nio.charset.StandardCharsets.UTF_8
+import java.nio.file.Files
+import java.security.MessageDigest
+import java.util.concurrent.ConcurrentHashMap
+
+import scala.collection.JavaConverters._
+
+import org.opalj.br.Method
+import org.opalj.br.ObjectType
+import org.opalj.br.analyses.SomeProject
+import org.opalj.br.instructions.InvocationInstruction
+
+/**
+ * Stores the results of an analysis for the methods of library jars between runs.
+ *
+ * The summaries of a jar are stored in a file named after the SHA-256 hash of the jar's content,
+ * the analysis' name and its version; hence, the summaries are invalidated when the jar or the
+ * analysis changes. A summary maps a key (e.g., a method's `toJava` string) to a value; both must
+ * neither contain tabs nor line breaks.
+ *
+ * The exercises are standalone projects; hence, 10-IFDS has its own copy of this class,
+ * which has to be kept in sync.
+ *
+ * @param directory The directory that contains the summary files.
+ */
+class LibrarySummaryStore(directory: File, analysisName: String, analysisVersion: Int) {
+
+  private[this] val hashes = new ConcurrentHashMap[File, String]()
+
+  /** The jar that contains the class file of the type, if the type belongs to the library. */
+  def jarOf(p: SomeProject, objectType: ObjectType): Option[File] = {
+    if (!p.isLibraryType(objectType))
+      return None;
+
+    p.source(objectType).filter(_.getProtocol == "jar").map { url ⇒
+      val path = url.getPath
+      new File(new URL(path.substring(0, path.indexOf("!/"))).toURI)
+    }
+  }
+
+  private[this] def summaryFile(jar: File): File = {
+    val hash = hashes.computeIfAbsent(jar, _ ⇒ {
+      val digest = MessageDigest.getInstance("SHA-256")
+      digest.digest(Files.readAllBytes(jar.toPath)).map(b ⇒ f"$b%02x").mkString
+    })
+    new File(directory, s"$hash-$analysisName-v$analysisVersion.tsv")
+  }
+
+  /** The summaries of the jar; `None` if the jar was not analyzed before. */
+  def load(jar: File): Option[Map[String, String]] = {
+    val file = summaryFile(jar)
+    if (!file.exists())
+      return None;
+
+    // the values may be empty, e.g., if a method has no results
+    val summaries = Files.readAllLines(file.toPath, UTF_8).asScala.zipWithIndex.map {
+      case (line, index) ⇒
+        line.split("\t", -1) match {
+          case Array(key, value) ⇒ key → value
+          case _                 ⇒ throw new IllegalStateException(s"$file:${index + 1}: corrupt summary: $line")
+        }
+    }
+    Some(summaries.toMap)
+  }
+
+  def save(jar: File, summaries: Map[String, String]): Unit = {
+    directory.mkdirs()
+    val lines = summaries.iterator.map { case (key, value) ⇒ s"$key\t$value" }
+    Files.write(summaryFile(jar).toPath, lines.toIterable.asJava, UTF_8)
+  }
+}
+
+object LibrarySummaryStore {
+
+  /**
+   * Returns true if the method's code does not invoke any method; the results of such methods
+   * do not depend on the call graph and can be stored.
+   */
+  def invokesNoMethod(m: Method): Boolean =
+    m.body.exists(code ⇒ !code.instructions.exists(_.isInstanceOf[InvocationInstruction]))
+}
@@ -1,5 +1,6 @@
 package org.opalj.exercise
 
+import java.io.File
 import java.net.URL
 
 import org.opalj.br.DeclaredMethod
@@ -11,6 +12,7 @@ import org.opalj.br.analyses.SomeProject
 import org.opalj.br.fpcf.BasicFPCFEagerAnalysisScheduler
 import org.opalj.br.fpcf.FPCFAnalysis
 import org.opalj.br.fpcf.FPCFAnalysesManagerKey
+import org.opalj.br.fpcf.PropertyStoreKey
 import org.opalj.br.fpcf.cg.properties.Callees
 import org.opalj.br.fpcf.properties.AllocationFreeMethod
 import org.opalj.br.fpcf.properties.AllocationFreeness
@@ -32,27 +34,135 @@ import org.opalj.tac.New
 import org.opalj.tac.NewArray
 import org.opalj.tac.cg.RTACallGraphKey
 import org.opalj.tac.fpcf.properties.TACAI
+import org.opalj.util.Nanoseconds
+import org.opalj.util.PerformanceEvaluation.time
 
 object Main extends ProjectAnalysisApplication {
 
   override def description: String = "Counts the number of methods with and without allocations"
 
+  override def analysisSpecificParametersDescription: String =
+    "[-scc] Decides the SCCs of the call graph instead of using the property store\n"+
+    "[-compare] Runs both analyses, compares their results and reports their run times\n"+
+    "[-summaries=<Directory>] Stores the results for library methods between runs"
+
+  override def checkAnalysisSpecificParameters(parameters: Seq[String]): Traversable[String] =
+    parameters.filterNot { p ⇒
+      p == "-scc" || p == "-compare" || p.startsWith("-summaries=")
+    }.map("unknown parameter: "+_)
+
   def doAnalyze(p: Project[URL], params: Seq[String], isInterrupted: () ⇒ Boolean): BasicReport = {
 
+    if (params.contains("-compare"))
+      return compare(p);
+
     // compute the call graph and store the *final* result into the property store.
     val callGraph = p.get(RTACallGraphKey)
 
+    val summaries = params.find(_.startsWith("-summaries=")).map { param ⇒
+      new LibrarySummaryStore(new File(param.substring("-summaries=".length)), "allocation-freeness", 1)
+    }
+    val results =
+      if (params.contains("-scc")) new SCCAllocationFreenessAnalysis(p).analyze()
+      else analyzeUsingPropertyStore(p, summaries)
+    val (allocationFreeMethods, methodsWithAllocations) =  results.keys.partition(results(_) == AllocationFreeMethod)
+
+    allocationFreeMethods.mkString("allocation free: ", "\nallocation free: ", "\n")+
+    methodsWithAllocations.mkString("with allocations: ", "\nwith allocations: ", "\n")+
+    s"# methods: ${results.size}\n"+
+     s"# allocation free methods: ${allocationFreeMethods.size}\n"+
+     s"# methods with allocations: ${methodsWithAllocations.size}\n"
+  }
+
+  /**
+   * Runs the [[AllocationFreenessAnalysis]]; if a summary store is given, the stored results of
+   * the library methods are set in the property store beforehand and these methods are not
+   * analyzed again.
+   *
+   * Only the results that do not depend on the call graph are stored: the results of library
+   * methods that allocate themselves or that do not call any method. The callees of all other
+   * methods may change with the analyzed application (e.g., when a library method calls
+   * `toString` on an object that was passed to it).
+   */
+  def analyzeUsingPropertyStore(
+      p: SomeProject,
+      summaries: Option[LibrarySummaryStore] = None
+  ): Map[DeclaredMethod, AllocationFreeness] = {
+    val callGraph = p.get(RTACallGraphKey)
+    val propertyStore = p.get(PropertyStoreKey)
+
+    val libraryMethods = summaries match {
+      case Some(store) ⇒
+        callGraph.reachableMethods().toList.groupBy(m ⇒ store.jarOf(p, m.declaringClassType)).collect {
+          case (Some(jar), methods) ⇒ jar → methods
+        }
+      case None ⇒ Map.empty[File, List[DeclaredMethod]]
+    }
+    val storedSummaries = libraryMethods.keys.map(jar ⇒ jar → summaries.get.load(jar).getOrElse(Map.empty)).toMap
+
+    var precomputed = Set.empty[DeclaredMethod]
+    for {
+      (jar, methods) ← libraryMethods
+      m ← methods
+      summary ← storedSummaries(jar).get(m.toJava)
+    } {
+      propertyStore.set(m, if (summary == "free") AllocationFreeMethod else MethodWithAllocations)
+      precomputed += m
+    }
+
     val analysesManager = p.get(FPCFAnalysesManagerKey)
-    val (propertyStore, _) = analysesManager.runAll(EagerAllocationFreenessAnalysis)
+    analysesManager.runAll(new EagerAllocationFreenessAnalysisScheduler(precomputed))
+
+    val results = propertyStore.entities(AllocationFreeness.key).map { eps ⇒
+      eps.e.asInstanceOf[DeclaredMethod] → eps.asFinal.p
+    }.toMap
+
+    for ((jar, methods) ← libraryMethods) {
+      val newSummaries = methods.collect {
+        case m if !precomputed.contains(m) && AllocationFreenessAnalysis.hasLocalAllocations(m, propertyStore) ⇒
+          m.toJava → "allocations"
+        case m if !precomputed.contains(m) && LibrarySummaryStore.invokesNoMethod(m.definedMethod) ⇒
+          m.toJava → (if (results(m) == AllocationFreeMethod) "free" else "allocations")
+      }
+      if (newSummaries.nonEmpty)
+        summaries.get.save(jar, storedSummaries(jar) ++ newSummaries)
+    }
 
-    val allocationFreenessResults = propertyStore.entities(AllocationFreeness.key).toList
-    val (allocationFreeMethods, methodsWithAllocations) =  allocationFreenessResults.partition(_.asFinal.p == AllocationFreeMethod)
+    results
+  }
 
-    allocationFreeMethods.map(_.e).mkString("allocation free: ", "\nallocation free: ", "\n")+
-    methodsWithAllocations.map(_.e).mkString("with allocations: ", "\nwith allocations: ", "\n")+
-    s"# methods: ${allocationFreenessResults.size}\n"+
-     s"# allocation free methods: ${allocationFreeMethods.size}\n"+
-     s"# methods with allocations: ${methodsWithAllocations.size}\n"
+  /**
+   * Runs both analyses on fresh copies of the project (the call graph is computed beforehand)
+   * and reports the methods for which the results differ.
+   */
+  def compare(p: Project[URL]): BasicReport = {
+    var propertyStoreTime = Nanoseconds.None
+    var sccTime = Nanoseconds.None
+
+    val propertyStoreProject = p.recreate()
+    propertyStoreProject.get(RTACallGraphKey)
+    val propertyStoreResults = time { analyzeUsingPropertyStore(propertyStoreProject) } { t ⇒
+      propertyStoreTime = t
+    }
+
+    val sccProject = p.recreate()
+    sccProject.get(RTACallGraphKey)
+    val sccResults = time { new SCCAllocationFreenessAnalysis(sccProject).analyze() } { t ⇒
+      sccTime = t
+    }
+
+    // the projects have their own declared methods; hence, they are compared by name
+    val byName = (results: Map[DeclaredMethod, AllocationFreeness]) ⇒
+      results.map { case (m, result) ⇒ m.toJava → result }
+    val expected = byName(propertyStoreResults)
+    val actual = byName(sccResults)
+    val differences = (expected.keySet ++ actual.keySet).filter(m ⇒ expected.get(m) != actual.get(m))
+
+    differences.toList.sorted.map(m ⇒ s"different: $m (${expected.get(m)} vs. ${actual.get(m)})\n").mkString+
+    s"# methods: ${expected.size}\n"+
+     s"# differences: ${differences.size}\n"+
+     s"property store: ${propertyStoreTime.toSeconds}\n"+
+     s"SCCs: ${sccTime.toSeconds}\n"
   }
 
 }
@@ -63,31 +173,9 @@ class AllocationFreenessAnalysis private[exercise] (final val project: SomeProje
   private implicit val declaredMethods = project.get(DeclaredMethodsKey)
 
   def analyze(method: DeclaredMethod): PropertyComputationResult = {
-    if (!method.hasSingleDefinedMethod)
-      return Result(method, MethodWithAllocations);
-
-    if (method.definedMethod.isNative)
-      return Result(method, MethodWithAllocations);
-
-    val tacProperty = ps(method.definedMethod, TACAI.key)
-
-    // While computing the call graph, the three-address code gets also computed for all 
-    // non-native methods. Hence, it will be available!
-    assert(tacProperty.isFinal && tacProperty.asFinal.p.tac.isDefined)
-    val tac = tacProperty.asFinal.p.tac.get
-    // For every statement we check whether it performs an allocation (New or NewArray).
     // Allocations within methods called by the current one will be handled afterwards.
-    for (stmt <- tac.stmts) {
-      stmt match {
-        case Assignment(_, _, _: New | _: NewArray[_]) ⇒
-          return Result(method, MethodWithAllocations);
-
-        case ExprStmt(_, _: New | _: NewArray[_]) ⇒
-          return Result(method, MethodWithAllocations);
-
-        case _ ⇒
-      }
-    }
+    if (AllocationFreenessAnalysis.hasLocalAllocations(method, ps))
+      return Result(method, MethodWithAllocations);
 
     // When we reach this point, there are no allocations within this method.
     // However, methods that are called by the current one might still have allocations.
@@ -183,7 +271,36 @@ class AllocationFreenessAnalysis private[exercise] (final val project: SomeProje
 
 }
 
-object EagerAllocationFreenessAnalysis extends BasicFPCFEagerAnalysisScheduler {
+object AllocationFreenessAnalysis {
+
+  /**
+   * Returns true if the method may allocate objects itself, i.e., not considering its callees.
+   * Methods without a unique implementation as well as native methods are assumed to allocate.
+   */
+  def hasLocalAllocations(method: DeclaredMethod, ps: PropertyStore): Boolean = {
+    if (!method.hasSingleDefinedMethod || method.definedMethod.isNative)
+      return true;
+
+    val tacProperty = ps(method.definedMethod, TACAI.key)
+
+    // While computing the call graph, the three-address code gets also computed for all
+    // non-native methods. Hence, it will be available!
+    assert(tacProperty.isFinal && tacProperty.asFinal.p.tac.isDefined)
+    val tac = tacProperty.asFinal.p.tac.get
+    // For every statement we check whether it performs an allocation (New or NewArray).
+    tac.stmts.exists {
+      case Assignment(_, _, _: New | _: NewArray[_]) ⇒ true
+      case ExprStmt(_, _: New | _: NewArray[_])      ⇒ true
+      case _                                          ⇒ false
+    }
+  }
+}
+
+/**
+ * @param precomputed The methods whose allocation freeness is already set in the property store.
+ */
+class EagerAllocationFreenessAnalysisScheduler(precomputed: Set[DeclaredMethod])
+    extends BasicFPCFEagerAnalysisScheduler {
   override def uses: Set[PropertyBounds] = 
     PropertyBounds.finalPs(Callees, TACAI) + PropertyBounds.ub(AllocationFreeness) // todo ub => lb
   
@@ -199,10 +316,14 @@ object EagerAllocationFreenessAnalysis extends BasicFPCFEagerAnalysisScheduler {
     val analysis = new AllocationFreenessAnalysis(project)
 
     // compute the allocation freeness property for all reachable methods
-    propertyStore.scheduleEagerComputationsForEntities(callGraph.reachableMethods())(
+    propertyStore.scheduleEagerComputationsForEntities(
+      callGraph.reachableMethods().filterNot(precomputed.contains)
+    )(
       analysis.analyze
     )
 
     analysis
   }
 }
+
+object EagerAllocationFreenessAnalysis extends EagerAllocationFreenessAnalysisScheduler(Set.empty)
@@ -0,0 +1,150 @@
+package org.opalj.exercise
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.atomic.AtomicIntegerArray
+import java.util.concurrent.atomic.AtomicReference
+
+import scala.collection.mutable
+
+import org.opalj.br.DeclaredMethod
+import org.opalj.br.analyses.SomeProject
+import org.opalj.br.fpcf.PropertyStoreKey
+import org.opalj.br.fpcf.properties.AllocationFreeMethod
+import org.opalj.br.fpcf.properties.AllocationFreeness
+import org.opalj.br.fpcf.properties.MethodWithAllocations
+import org.opalj.tac.cg.RTACallGraphKey
+
+/**
+ * Computes the strongly connected components of a call graph (Tarjan's algorithm; iterative to
+ * support deep call chains).
+ */
+object CallGraphSCCs {
+
+  /**
+   * Returns the SCCs of the methods in reverse topological order, i.e., the SCCs of the callees
+   * precede the SCCs of the callers.
+   */
+  def apply(
+      methods: Iterable[DeclaredMethod],
+      callees: DeclaredMethod ⇒ Iterator[DeclaredMethod]
+  ): IndexedSeq[List[DeclaredMethod]] = {
+    val index = mutable.HashMap.empty[DeclaredMethod, Int]
+    val lowLink = mutable.HashMap.empty[DeclaredMethod, Int]
+    val onStack = mutable.HashSet.empty[DeclaredMethod]
+    val stack = mutable.ArrayStack.empty[DeclaredMethod]
+    val sccs = mutable.ArrayBuffer.empty[List[DeclaredMethod]]
+
+    def visit(m: DeclaredMethod): Unit = {
+      index(m) = index.size
+      lowLink(m) = index(m)
+      stack.push(m)
+      onStack += m
+    }
+
+    for (root ← methods if !index.contains(root)) {
+      visit(root)
+      val frames = mutable.ArrayStack((root, callees(root)))
+      while (frames.nonEmpty) {
+        val (m, it) = frames.top
+        if (it.hasNext) {
+          val callee = it.next()
+          if (!index.contains(callee)) {
+            visit(callee)
+            frames.push((callee, callees(callee)))
+          } else if (onStack.contains(callee)) {
+            lowLink(m) = Math.min(lowLink(m), index(callee))
+          }
+        } else {
+          frames.pop()
+          if (frames.nonEmpty) {
+            val caller = frames.top._1
+            lowLink(caller) = Math.min(lowLink(caller), lowLink(m))
+          }
+          if (lowLink(m) == index(m)) {
+            var scc = List.empty[DeclaredMethod]
+            var member: DeclaredMethod = null
+            do {
+              member = stack.pop()
+              onStack -= member
+              scc ::= member
+            } while (member ne m)
+            sccs += scc
+          }
+        }
+      }
+    }
+
+    sccs
+  }
+}
+
+/**
+ * Computes the allocation freeness of all reachable methods without the property store's
+ * fixed point computation: the SCCs of the RTA call graph are decided one at a time, after the
+ * SCCs of their callees. An SCC is allocation free iff none of its methods allocates and all
+ * callees outside the SCC are allocation free; calls within an SCC are optimistically ignored,
+ * as by the [[AllocationFreenessAnalysis]] which resolves cycles to the upper bound.
+ *
+ * An SCC is processed as soon as all SCCs it calls are decided; hence, independent SCCs are
+ * processed in parallel.
+ */
+class SCCAllocationFreenessAnalysis(project: SomeProject) {
+
+  private[this] val propertyStore = project.get(PropertyStoreKey)
+
+  private[this] val callGraph = project.get(RTACallGraphKey)
+
+  private[this] def callees(m: DeclaredMethod): Iterator[DeclaredMethod] =
+    callGraph.calleesOf(m).flatMap(_._2)
+
+  def analyze(): Map[DeclaredMethod, AllocationFreeness] = {
+    val sccs = CallGraphSCCs(callGraph.reachableMethods().toList, callees)
+
+    val sccOf = mutable.HashMap.empty[DeclaredMethod, Int]
+    for ((scc, id) ← sccs.iterator.zipWithIndex; m ← scc) sccOf(m) = id
+
+    val callers = Array.fill(sccs.size)(mutable.Set.empty[Int])
+    val pendingCallees = new AtomicIntegerArray(sccs.size)
+    for ((scc, id) ← sccs.iterator.zipWithIndex) {
+      val calleeSCCs = scc.iterator.flatMap(callees).map(sccOf).filter(_ != id).toSet
+      calleeSCCs.foreach(callers(_) += id)
+      pendingCallees.set(id, calleeSCCs.size)
+    }
+
+    // written before the SCC's callers are submitted; hence, visible to them
+    val results = new Array[AllocationFreeness](sccs.size)
+    val done = new CountDownLatch(sccs.size)
+    val failure = new AtomicReference[Throwable]()
+    val pool = ForkJoinPool.commonPool()
+
+    def decide(id: Int): Unit = {
+      try {
+        val scc = sccs(id)
+        val isAllocationFree =
+          scc.forall(!AllocationFreenessAnalysis.hasLocalAllocations(_, propertyStore)) &&
+            scc.forall(callees(_).forall { callee ⇒
+              val calleeSCC = sccOf(callee)
+              calleeSCC == id || (results(calleeSCC) eq AllocationFreeMethod)
+            })
+        results(id) = if (isAllocationFree) AllocationFreeMethod else MethodWithAllocations
+        callers(id).foreach { caller ⇒
+          if (pendingCallees.decrementAndGet(caller) == 0) submit(caller)
+        }
+        done.countDown()
+      } catch {
+        case t: Throwable ⇒
+          failure.compareAndSet(null, t)
+          while (done.getCount > 0) done.countDown()
+      }
+    }
+
+    def submit(id: Int): Unit = pool.execute(new Runnable { def run(): Unit = decide(id) })
+
+    (0 until sccs.size).filter(pendingCallees.get(_) == 0).foreach(submit)
+    done.await()
+    if (failure.get ne null) throw failure.get
+
+    sccOf.iterator.map { case (m, id) ⇒ m → results(id) }.toMap
+  }
+}
@@ -0,0 +1,70 @@
+package org.opalj.exercise
+
+import java.io.File
+
+import org.scalatest.FunSpec
+import org.scalatest.Matchers
+
+import org.opalj.br.DeclaredMethod
+import org.opalj.br.analyses.DeclaredMethodsKey
+import org.opalj.br.analyses.Project
+import org.opalj.br.fpcf.properties.AllocationFreeMethod
+import org.opalj.br.fpcf.properties.AllocationFreeness
+import org.opalj.br.fpcf.properties.MethodWithAllocations
+
+class SCCAllocationFreenessAnalysisTests extends FunSpec with Matchers {
+
+  // the test class of the exercise
+  val project = Project(new File("../AllocationFreeness.class"))
+
+  def byName(results: Map[DeclaredMethod, AllocationFreeness]): Map[String, AllocationFreeness] =
+    results.map { case (m, result) ⇒ m.toJava → result }
+
+  describe("the SCCs of a call graph") {
+
+    val declaredMethods = project.get(DeclaredMethodsKey)
+    val methods = project.allMethodsWithBody.toList.sortBy(_.toJava).take(5).map(declaredMethods(_))
+    val List(a, b, c, d, e) = methods
+
+    // a → b ⇄ c → d; e is not connected
+    val callees = Map(a → List(b), b → List(c), c → List(b, d), d → Nil, e → Nil)
+    val sccs = CallGraphSCCs(methods, m ⇒ callees(m).iterator)
+
+    it("should contain each method in exactly one SCC") {
+      sccs.flatten.sortBy(_.toJava) should be(methods.sortBy(_.toJava))
+    }
+
+    it("should find the cycle") {
+      sccs.map(_.toSet) should contain theSameElementsAs Seq(Set(a), Set(b, c), Set(d), Set(e))
+    }
+
+    it("should order the SCCs of the callees before the SCCs of their callers") {
+      val position = sccs.zipWithIndex.flatMap { case (scc, i) ⇒ scc.map(_ → i) }.toMap
+      position(d) should be < position(b)
+      position(b) should be < position(a)
+    }
+  }
+
+  describe("the SCC based allocation freeness analysis") {
+
+    val results = byName(new SCCAllocationFreenessAnalysis(project.recreate()).analyze())
+
+    def resultOf(name: String): AllocationFreeness =
+      results.collectFirst { case (m, result) if m.contains(s" $name(") ⇒ result }.get
+
+    it("should compute the same results as the property store based analysis") {
+      results should be(byName(Main.analyzeUsingPropertyStore(project.recreate())))
+    }
+
+    it("should find the methods without allocations") {
+      resultOf("emptyMethod") should be(AllocationFreeMethod)
+      resultOf("allocationFreeCall") should be(AllocationFreeMethod)
+    }
+
+    it("should find the methods with (indirect) allocations") {
+      resultOf("getNewObject") should be(MethodWithAllocations)
+      resultOf("getNewObjectIndirect") should be(MethodWithAllocations)
+      resultOf("throwsExplicitException") should be(MethodWithAllocations)
+    }
+  }
+}
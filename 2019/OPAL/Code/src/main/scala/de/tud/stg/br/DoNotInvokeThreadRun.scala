@@ -3,7 +3,9 @@ package de.tud.stg
 
 package br
 
+import java.io.File
 import java.net.URL
+
 import scala.collection.JavaConverters._
 
 import org.opalj.util.PerformanceEvaluation
@@ -19,47 +21,88 @@ object DoNotInvokeThreadRun extends ProjectAnalysisApplication {
 
   final val ThreadType = ObjectType("java/lang/Thread")
 
-  def doAnalyze(p: Project[URL], params: Seq[String], isInterrupted: () ⇒ Boolean): BasicReport = {
+  def violationsUsingForComprehension(p: SomeProject): String = {
     val ch = p.classHierarchy
+    val violations =
+      for {
+        m <- p.allMethodsWithBody.par
+        c = m.body.get
+        INVOKEVIRTUAL(declClass, "run", MethodDescriptor.NoArgsAndReturnVoid) <- c.iterator
+        if ch.isSubtypeOf(declClass, ThreadType)
+      } yield {
+        m.toJava(s"call to run method of subtype of Thread: " + declClass.toJava)
+      }
+    violations.mkString("\n")
+  }
 
-    def violationsUsingForComprehension(): String = {
-      val violations =
-        for {
-          m <- p.allMethodsWithBody.par
-          c = m.body.get
-          INVOKEVIRTUAL(declClass, "run", MethodDescriptor.NoArgsAndReturnVoid) <- c.iterator
-          if ch.isSubtypeOf(declClass, ThreadType)
-        } yield {
-          m.toJava(s"call to run method of subtype of Thread: " + declClass.toJava)
-        }
-      violations.mkString("\n")
+  def violationsUsingHigherOrderFunction(p: SomeProject, isInterrupted: () ⇒ Boolean): String = {
+    val ch = p.classHierarchy
+    val violations = new java.util.concurrent.ConcurrentLinkedQueue[String]()
+    p.parForeachMethodWithBody(isInterrupted) { mi ⇒
+      val m = mi.method
+      val violatingCalls = m.body.get.collect {
+        case INVOKEVIRTUAL(declClass, "run", MethodDescriptor.NoArgsAndReturnVoid)
+            if (ch.isSubtypeOf(declClass, ThreadType)) ⇒
+          declClass
+      }
+      violatingCalls.foreach {
+        case PCAndAnyRef(pc, declClass) ⇒
+          val msg = m.toJava(s"$pc: call to run method of subtype of Thread: " + declClass.toJava)
+          violations.add(msg)
+      }
     }
+    violations.asScala.mkString("\n")
+  }
 
-    def violationsUsingHigherOrderFunction(): String = {
-      val violations = new java.util.concurrent.ConcurrentLinkedQueue[String]()
-      p.parForeachMethodWithBody(isInterrupted) { mi ⇒
-        val m = mi.method
-        val violatingCalls = m.body.get.collect {
-          case INVOKEVIRTUAL(declClass, "run", MethodDescriptor.NoArgsAndReturnVoid)
-              if (ch.isSubtypeOf(declClass, ThreadType)) ⇒
-            declClass
-        }
-        violatingCalls.foreach {
-          case PCAndAnyRef(pc, declClass) ⇒
-            val msg = m.toJava(s"$pc: call to run method of subtype of Thread: " + declClass.toJava)
-            violations.add(msg)
-        }
+  def violationsUsingInvocationIndex(p: SomeProject, index: InvocationIndex): String = {
+    val violations =
+      for {
+        (InvokedMethod(declClass, "run", MethodDescriptor.NoArgsAndReturnVoid), sites) ←
+          index.invocationsOnSubtypesOf(ThreadType, p.classHierarchy)
+        site ← sites
+        if site.opcode == INVOKEVIRTUAL.opcode
+      } yield {
+        site.method.toJava(s"${site.pc}: call to run method of subtype of Thread: " + declClass.toJava)
       }
-      violations.asScala.mkString("\n")
+    violations.mkString("\n")
+  }
+
+  def doAnalyze(p: Project[URL], params: Seq[String], isInterrupted: () ⇒ Boolean): BasicReport = {
+    // The index is created once and can then be shared by all checkers that search for calls.
+    val index = PerformanceEvaluation.time {
+      InvocationIndex(p, isInterrupted)
+    } { t ⇒ println(s"creating the invocation index took ${t.toSeconds}") }
+
+    // Later runs on the same version of the project can load the index instead of creating it.
+    val indexFile = File.createTempFile("invocations", ".index")
+    indexFile.deleteOnExit()
+    index.save(indexFile, InvocationIndex.fingerprint(p))
+
+    PerformanceEvaluation.time(3, 15, 8, InvocationIndex.load(p, indexFile).get, true) {
+      (ns, nss) ⇒
+        val considered = nss.map(_.toSeconds).mkString("[", ", ", "]")
+        println(s"loading the invocation index took ${ns.toSeconds} $considered")
+    }
+
+    PerformanceEvaluation.time(3, 15, 8, InvocationIndex(p, isInterrupted), true) {
+      (ns, nss) ⇒
+        val considered = nss.map(_.toSeconds).mkString("[", ", ", "]")
+        println(s"creating the invocation index took ${ns.toSeconds} $considered")
+    }
+
+    val r3 = PerformanceEvaluation.time(3, 15, 8, violationsUsingInvocationIndex(p, index), true) {
+      (ns, nss) ⇒
+        val considered = nss.map(_.toSeconds).mkString("[", ", ", "]")
+        println(s"violationsUsingInvocationIndex took ${ns.toSeconds} $considered")
     }
 
-    val r2 = PerformanceEvaluation.time(3, 15, 8, violationsUsingHigherOrderFunction, true) {
+    val r2 = PerformanceEvaluation.time(3, 15, 8, violationsUsingHigherOrderFunction(p, isInterrupted), true) {
       (ns, nss) ⇒
         val considered = nss.map(_.toSeconds).mkString("[", ", ", "]")
         println(s"violationsUsingHigherOrderFunction took ${ns.toSeconds} $considered")
     }
 
-    val r1 = PerformanceEvaluation.time(3, 15, 8, violationsUsingForComprehension, true) {
+    val r1 = PerformanceEvaluation.time(3, 15, 8, violationsUsingForComprehension(p), true) {
       (ns, nss) ⇒
         val considered = nss.map(_.toSeconds).mkString("[", ", ", "]")
         println(s"violationsUsingForComprehension took ${ns.toSeconds} $considered")
@@ -70,6 +113,7 @@ object DoNotInvokeThreadRun extends ProjectAnalysisApplication {
     //  - the "parForeachMethodWithBody" version is roughly 10 times faster than the seq version
 
     if (r1.lines.size != r2.lines.size) throw new UnknownError(s"$r1 != $r2")
+    if (r2.lines.toList.sorted != r3.lines.toList.sorted) throw new UnknownError(s"$r2 != $r3")
     r1
   }
 }
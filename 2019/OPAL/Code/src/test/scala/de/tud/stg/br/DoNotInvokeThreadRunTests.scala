@@ -0,0 +1,68 @@
+/* BSD 2-Clause License - see OPAL/LICENSE for details. */
+package de.tud.stg
+
+package br
+
+import java.io.File
+import java.nio.file.Files
+
+import org.scalatest.FunSpec
+import org.scalatest.Matchers
+
+import org.opalj.ba.{CLASS, CODE, METHOD, METHODS, PUBLIC}
+import org.opalj.bc.Assembler
+import org.opalj.br.MethodDescriptor
+import org.opalj.br.analyses.Project
+import org.opalj.br.instructions.{RETURN, _}
+
+class DoNotInvokeThreadRunTests extends FunSpec with Matchers {
+
+  import DoNotInvokeThreadRun._
+
+  // none of the test classes of the bytecode exercise calls Thread.run; hence, a class that
+  // does is assembled
+  val runCallerFile: File = {
+    val (runCaller, _) = CLASS(
+      thisType = "RunCaller",
+      methods = METHODS(
+        METHOD(
+          PUBLIC.STATIC,
+          "callRun",
+          MethodDescriptor.JustTakes(ThreadType).toJVMDescriptor,
+          CODE(
+            ALOAD_0,
+            INVOKEVIRTUAL(ThreadType, "run", MethodDescriptor.NoArgsAndReturnVoid),
+            RETURN
+          )
+        )
+      )
+    ).toDA
+    val file = File.createTempFile("RunCaller", ".class")
+    file.deleteOnExit()
+    Files.write(file.toPath, Assembler(runCaller))
+    file
+  }
+
+  val project = Project(
+    Array(runCallerFile, new File("../../2-Java-Bytecode/Exercise/ThreadStop.class")),
+    Array.empty[File])
+
+  describe("the checkers for calls of Thread.run") {
+
+    val usingHigherOrderFunction = violationsUsingHigherOrderFunction(project, () ⇒ false)
+
+    it("should find the call of Thread.run") {
+      usingHigherOrderFunction.lines.toList should have size 1
+      usingHigherOrderFunction should include("callRun")
+    }
+
+    it("should find the same calls using the invocation index") {
+      val usingInvocationIndex = violationsUsingInvocationIndex(project, InvocationIndex(project))
+      usingInvocationIndex.lines.toList.sorted should be(usingHigherOrderFunction.lines.toList.sorted)
+    }
+
+    it("should find the same calls using the for comprehension") {
+      violationsUsingForComprehension(project).lines.size should be(usingHigherOrderFunction.lines.size)
+    }
+  }
+}